@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.erik.git_bro.config.AiProviderProperties;
 
@@ -11,11 +12,12 @@ import com.erik.git_bro.config.AiProviderProperties;
  * The main Spring Boot application class for GitBro.
  * <p>
  * This class bootstraps the application, enabling asynchronous
- * processing and binding configuration properties defined in {@link AiProviderProperties}.
+ * processing and scheduled maintenance, and binding configuration properties defined in {@link AiProviderProperties}.
  * </p>
  */
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 @EnableConfigurationProperties(AiProviderProperties.class)
 public class GitBroApplication {
 
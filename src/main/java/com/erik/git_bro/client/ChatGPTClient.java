@@ -9,12 +9,14 @@ import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.erik.git_bro.util.LatencyHistograms;
 import com.erik.git_bro.util.Prompts;
+import com.erik.git_bro.util.ReviewEvents;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -40,7 +42,6 @@ import okhttp3.ResponseBody;
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class ChatGPTClient {
 
     /**
@@ -53,16 +54,30 @@ public class ChatGPTClient {
      * OkHttpClient instance configured with timeouts for connection, write, and
      * read operations.
      */
-    OkHttpClient okClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(180, TimeUnit.SECONDS)
-            .build();
+    OkHttpClient okClient;
+
+    private final ReviewTracer reviewTracer;
+
+    private final LatencyHistograms latencyHistograms;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // The model name reviews are requested with, which keys its latencies
+    private static final String PROVIDER = "chatgpt";
+
     private static final String API_URL = "https://api.openai.com/v1/chat/completions";
 
+    public ChatGPTClient(ReviewTracer reviewTracer, LatencyHistograms latencyHistograms) {
+        this.reviewTracer = reviewTracer;
+        this.latencyHistograms = latencyHistograms;
+        this.okClient = new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(180, TimeUnit.SECONDS)
+                .addInterceptor(reviewTracer.interceptor("openai"))
+                .build();
+    }
+
     /**
      * Asynchronously analyzes a file diff content using the ChatGPT API.
      * <p>
@@ -87,7 +102,18 @@ public class ChatGPTClient {
     }
 
     public CompletableFuture<?> analyzeFileLineByLine(String filename, String diffContent) {
+        ReviewEvents.PromptBuilt promptBuilt = new ReviewEvents.PromptBuilt();
+        promptBuilt.begin();
+        long started = System.nanoTime();
         final String prompt = Prompts.getAnalysisPrompt(filename, diffContent);
+        latencyHistograms.recordSince(PROVIDER, LatencyHistograms.PROMPT, started);
+        promptBuilt.end();
+        if (promptBuilt.shouldCommit()) {
+            promptBuilt.file = filename;
+            promptBuilt.promptLength = prompt.length();
+            promptBuilt.pullRequest(reviewTracer.pullRequest());
+            promptBuilt.commit();
+        }
         return this.sendPromptToOpenAI(prompt);
     }
 
@@ -105,14 +131,36 @@ public class ChatGPTClient {
                     json,
                     MediaType.parse("application/json"));
 
-            Request request = new Request.Builder()
+            // Enqueued calls run on OkHttp's dispatcher, so the request carries the current observation
+            Request request = reviewTracer.tag(new Request.Builder())
                     .url(API_URL)
                     .header("Authorization", "Bearer " + this.apiKey)
                     .header("Content-Type", "application/json")
                     .post(body)
                     .build();
 
-            this.okClient.newCall(request).enqueue(new Callback() {
+            Call call = this.okClient.newCall(request);
+            ReviewEvents.ModelCall modelCall = new ReviewEvents.ModelCall();
+            modelCall.model = "gpt-4o";
+            if (modelCall.isEnabled()) {
+                modelCall.pullRequest(reviewTracer.pullRequest());
+            }
+            long started = System.nanoTime();
+            // A superseded review cancels the future; stop waiting on the model as well
+            future.whenComplete((content, failure) -> {
+                long elapsed = System.nanoTime() - started;
+                // Calls cut short by the deadline or a newer push are the slow ones; leaving them out hides the tail
+                latencyHistograms.record(PROVIDER, LatencyHistograms.MODEL, elapsed);
+                if (future.isCancelled()) {
+                    latencyHistograms.record(PROVIDER, LatencyHistograms.MODEL_TIMEOUT, elapsed);
+                    call.cancel();
+                }
+                modelCall.succeeded = failure == null;
+                modelCall.commit();
+            });
+            modelCall.begin();
+            // The callback logs on OkHttp's threads; run it in the review's trace
+            call.enqueue(reviewTracer.wrap(new Callback() {
 
                 @Override
                 public void onFailure(Call call, IOException e) {
@@ -121,6 +169,7 @@ public class ChatGPTClient {
 
                 @Override
                 public void onResponse(Call call, Response response) throws IOException {
+                    modelCall.status = response.code();
                     try (ResponseBody responseBody = response.body()) {
                         if (!response.isSuccessful() || responseBody == null) {
                             future.completeExceptionally(
@@ -145,7 +194,7 @@ public class ChatGPTClient {
                                 new RuntimeException("Failed to parse OpenAI response: " + e.getMessage(), e));
                     }
                 }
-            });
+            }));
 
         } catch (JsonProcessingException e) {
             future.completeExceptionally(new RuntimeException("Failed to build request: " + e.getMessage(), e));
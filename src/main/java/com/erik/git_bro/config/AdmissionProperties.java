@@ -0,0 +1,78 @@
+package com.erik.git_bro.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for admission control on the review API.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   review:
+ *     admission:
+ *       mode: adaptive
+ *       limit: 16
+ *       queue-size: 32
+ *       max-wait: 30s
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.review.admission")
+@Component
+public class AdmissionProperties {
+
+    public enum Mode {
+        /** The limit stays at {@link #limit}. */
+        FIXED,
+        /** The limit grows additively while reviews are fast and shrinks multiplicatively on overload. */
+        ADAPTIVE
+    }
+
+    private Mode mode = Mode.FIXED;
+
+    /**
+     * Reviews allowed in flight at once. In adaptive mode this is the starting limit.
+     */
+    private int limit = 16;
+
+    /**
+     * Lower bound for the adaptive limit.
+     */
+    private int minLimit = 2;
+
+    /**
+     * Upper bound for the adaptive limit.
+     */
+    private int maxLimit = 64;
+
+    /**
+     * Requests that may wait for a free slot. Anything beyond is rejected right away.
+     */
+    private int queueSize = 32;
+
+    /**
+     * How long a request waits for a slot before it is rejected.
+     */
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    /**
+     * Reviews slower than this count as an overload signal in adaptive mode.
+     */
+    private Duration targetLatency = Duration.ofSeconds(60);
+
+    /**
+     * Factor the adaptive limit is multiplied by on an overload signal.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Upper bound for the {@code Retry-After} hint given to rejected callers.
+     */
+    private Duration maxRetryAfter = Duration.ofMinutes(5);
+}
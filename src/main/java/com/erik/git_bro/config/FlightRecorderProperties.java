@@ -0,0 +1,62 @@
+package com.erik.git_bro.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the JDK Flight Recorder recordings.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   jfr:
+ *     enabled: true
+ *     max-age: 1h
+ *     max-size: 100MB
+ *     pinned-threshold: 20ms
+ *     default-duration: 60s
+ *     max-duration: 5m
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.jfr")
+@Component
+public class FlightRecorderProperties {
+
+    /**
+     * Whether the always-on recording of the review events runs.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long the always-on recording keeps events on disk.
+     */
+    private Duration maxAge = Duration.ofHours(1);
+
+    /**
+     * How much the always-on recording keeps on disk.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(100);
+
+    /**
+     * Virtual threads pinned to their carrier for longer than this are
+     * recorded.
+     */
+    private Duration pinnedThreshold = Duration.ofMillis(20);
+
+    /**
+     * Length of an on-demand recording when none is asked for.
+     */
+    private Duration defaultDuration = Duration.ofSeconds(60);
+
+    /**
+     * Upper bound for the length of an on-demand recording.
+     */
+    private Duration maxDuration = Duration.ofMinutes(5);
+}
@@ -0,0 +1,48 @@
+package com.erik.git_bro.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the rolling latency histograms.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   latency:
+ *     interval: 10s
+ *     windows: 1m, 5m, 1h
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.latency")
+@Component
+public class LatencyProperties {
+
+    /**
+     * Whether stage latencies are recorded.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the histograms move on to a new interval; the windows are
+     * made of whole intervals.
+     */
+    private Duration interval = Duration.ofSeconds(10);
+
+    /**
+     * The windows percentiles are reported over.
+     */
+    private List<Duration> windows = List.of(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofHours(1));
+
+    /**
+     * Significant decimal digits kept per recorded value.
+     */
+    private int significantDigits = 3;
+}
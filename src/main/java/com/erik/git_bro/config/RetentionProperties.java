@@ -0,0 +1,76 @@
+package com.erik.git_bro.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for review retention and archival.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   retention:
+ *     enabled: true
+ *     default-retention: 365d
+ *     repositories:
+ *       "[owner/noisy-repo]": 90d
+ *     archive-directory: /var/lib/git-bro/archive
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.retention")
+@Component
+public class RetentionProperties {
+
+    /**
+     * Whether expired reviews are archived and removed. Partitions for upcoming
+     * months are created either way.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Cron expression for the maintenance run.
+     */
+    private String cron = "0 30 3 * * *";
+
+    /**
+     * How long reviews are kept for repositories without an override.
+     */
+    private Duration defaultRetention = Duration.ofDays(365);
+
+    /**
+     * Retention per repository, keyed by {@code owner/repo}.
+     */
+    private Map<String, Duration> repositories = new LinkedHashMap<>();
+
+    /**
+     * Directory the gzip-compressed NDJSON archives are written to.
+     */
+    private String archiveDirectory = "archive";
+
+    /**
+     * Number of monthly partitions created ahead of the current month.
+     */
+    private int partitionsAhead = 3;
+
+    /**
+     * Rows deleted and archived per transaction when pruning single repositories.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * The longest configured retention. Whole partitions older than this hold
+     * no row any repository still needs.
+     */
+    public Duration getLongestRetention() {
+        return repositories.values().stream()
+                .reduce(defaultRetention, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+}
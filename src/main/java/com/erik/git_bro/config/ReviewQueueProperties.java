@@ -0,0 +1,85 @@
+package com.erik.git_bro.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the durable review job queue.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   review-queue:
+ *     workers: 4
+ *     lease-duration: 5m
+ *     max-attempts: 5
+ *     shutdown-grace: 30s
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.review-queue")
+@Component
+public class ReviewQueueProperties {
+
+    /**
+     * Whether this node runs queue workers. Nodes can still enqueue jobs when disabled.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of worker loops (virtual threads) claiming jobs on this node.
+     */
+    private int workers = 4;
+
+    /**
+     * How long a worker sleeps when the queue is empty.
+     */
+    private Duration pollInterval = Duration.ofSeconds(2);
+
+    /**
+     * How long a claimed job stays leased without a heartbeat.
+     */
+    private Duration leaseDuration = Duration.ofMinutes(5);
+
+    /**
+     * How often leases of in-flight jobs are renewed and expired leases reclaimed.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+    /**
+     * Attempts before a job is moved to the dead-letter state.
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Delay before the first retry; doubled on each further attempt.
+     */
+    private Duration backoffBase = Duration.ofSeconds(30);
+
+    /**
+     * Upper bound for the retry delay.
+     */
+    private Duration maxBackoff = Duration.ofMinutes(30);
+
+    /**
+     * How long a stopping node lets in-flight jobs finish before it abandons
+     * them. Abandoned jobs are requeued and resume from their checkpoints.
+     * Keep it below {@code spring.lifecycle.timeout-per-shutdown-phase}.
+     */
+    private Duration shutdownGrace = Duration.ofSeconds(30);
+
+    /**
+     * How long checkpoints of reviews that never finished are kept.
+     */
+    private Duration checkpointTtl = Duration.ofDays(7);
+
+    /**
+     * Identifier recorded as the lease owner. Defaults to the host name plus a random suffix.
+     */
+    private String nodeId;
+}
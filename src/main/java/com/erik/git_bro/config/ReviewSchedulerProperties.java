@@ -0,0 +1,47 @@
+package com.erik.git_bro.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the fair review scheduler.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   review:
+ *     scheduler:
+ *       concurrency: 16
+ *       quantum: 400
+ *       weights:
+ *         "[acme]": 2
+ *         "[acme/monorepo]": 1
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.review.scheduler")
+@Component
+public class ReviewSchedulerProperties {
+
+    /**
+     * Units of model and GitHub work running at once across all pull requests.
+     */
+    private int concurrency = 16;
+
+    /**
+     * Diff lines a queue of weight 1 may spend per round.
+     */
+    private int quantum = 400;
+
+    /**
+     * Weights keyed by installation (repository owner) or {@code owner/repo}.
+     * Anything not listed has weight 1.
+     */
+    private Map<String, Integer> weights = new HashMap<>();
+}
@@ -20,6 +20,7 @@ import java.util.concurrent.Executor;
  *   <li>Disabling CSRF protection (useful for non-browser clients or testing environments)</li>
  *   <li>Allowing access to the H2 database console without authentication</li>
  *   <li>Disabling frame options headers to allow the H2 console UI to be embedded</li>
+ *   <li>Allowing GitHub webhooks through; they are authenticated by their HMAC signature instead</li>
  *   <li>Requiring authentication for all other requests</li>
  *   <li>Enabling HTTP Basic authentication for simplicity</li>
  * </ul>
@@ -47,6 +48,7 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/api/github/webhook").permitAll()
                 .anyRequest().authenticated()
             )
             .httpBasic(withDefaults()) // simpler for now
@@ -0,0 +1,50 @@
+package com.erik.git_bro.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the local trace store.
+ * <p>
+ * Example properties in application.yml:
+ * <pre>
+ * app:
+ *   tracing:
+ *     max-traces: 1000
+ *     max-spans-per-trace: 2000
+ *     log-spans: false
+ * </pre>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "app.tracing")
+@Component
+public class TracingProperties {
+
+    /**
+     * Whether finished spans are recorded at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Traces kept in memory; the oldest is dropped first.
+     */
+    private int maxTraces = 1000;
+
+    /**
+     * Spans kept per trace; later spans of a larger trace are dropped.
+     */
+    private int maxSpansPerTrace = 2000;
+
+    /**
+     * Traces remembered per pull request for lookups by PR.
+     */
+    private int tracesPerPullRequest = 20;
+
+    /**
+     * Whether every finished span is also written to the log.
+     */
+    private boolean logSpans = false;
+}
@@ -0,0 +1,59 @@
+package com.erik.git_bro.controller;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.erik.git_bro.dto.RollupSummary;
+import com.erik.git_bro.model.ReviewRollup;
+import com.erik.git_bro.model.RollupDimension;
+import com.erik.git_bro.service.ReviewRollupService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Read-only review analytics served from the {@link ReviewRollup} read model.
+ * <p>
+ * The range defaults to the last 30 days (UTC). Dimensions are the
+ * {@link RollupDimension} names, e.g. {@code /api/analytics/AUTHOR?limit=10}
+ * for the authors with the most findings.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private static final int MAX_LIMIT = 500;
+
+    private final ReviewRollupService reviewRollupService;
+
+    @GetMapping("/{dimension}")
+    public ResponseEntity<List<RollupSummary>> top(@PathVariable RollupDimension dimension,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "20") int limit) {
+        LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate start = from != null ? from : end.minusDays(30);
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return ResponseEntity.ok(reviewRollupService.top(dimension, start, end, pageSize));
+    }
+
+    @GetMapping("/{dimension}/daily")
+    public ResponseEntity<List<ReviewRollup>> daily(@PathVariable RollupDimension dimension,
+            @RequestParam String key,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate start = from != null ? from : end.minusDays(30);
+        return ResponseEntity.ok(reviewRollupService.daily(dimension, key, start, end));
+    }
+}
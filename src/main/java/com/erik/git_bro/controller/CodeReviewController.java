@@ -2,12 +2,12 @@ package com.erik.git_bro.controller;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,14 +18,11 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.erik.git_bro.dto.AnalysisRequest;
 import com.erik.git_bro.dto.ErrorResponse;
-import com.erik.git_bro.dto.GitDiff;
-import com.erik.git_bro.dto.InlineReviewResponse;
-import com.erik.git_bro.dto.Issue;
-import com.erik.git_bro.service.CodeAnalysisService;
-import com.erik.git_bro.service.ParsingService;
-import com.erik.git_bro.service.github.GitHubAppService;
-import com.erik.git_bro.service.github.GitHubAppTokenService;
-import com.erik.git_bro.service.github.GitHubCommentService;
+import com.erik.git_bro.service.InFlightReviews;
+import com.erik.git_bro.service.ReviewDeadline;
+import com.erik.git_bro.service.ReviewOwnership;
+import com.erik.git_bro.service.ReviewPipelineService;
+import com.erik.git_bro.util.AdmissionLimiter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,17 +34,21 @@ import lombok.extern.slf4j.Slf4j;
  * asynchronously using
  * a code analysis service.
  * </p>
+ * <p>
+ * Reviews go through the {@link AdmissionLimiter}; requests it turns away are
+ * answered with {@code 429 Too Many Requests} and a {@code Retry-After} header.
+ * A review cancelled because a newer commit was pushed is answered with
+ * {@code 409 Conflict}.
+ * </p>
  */
 @RestController
 @RequestMapping("/api/review")
 @Slf4j
 @RequiredArgsConstructor
 public class CodeReviewController {
-    private final CodeAnalysisService codeAnalysisService;
-    private final ParsingService parsingService;
-    private final GitHubAppService gitHubAppService;
-    private final GitHubCommentService gitHubCommentService;
-    private final GitHubAppTokenService gitHubAppTokenService;
+    private final ReviewPipelineService reviewPipelineService;
+    private final AdmissionLimiter admissionLimiter;
+    private final InFlightReviews inFlightReviews;
 
     @PostMapping(value = "/analyze-file-by-line", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public CompletableFuture<ResponseEntity<?>> postInlineComment(@RequestParam("file") MultipartFile file,
@@ -59,148 +60,94 @@ public class CodeReviewController {
             @RequestParam() String modelName) {
         try {
             String diff = new String(file.getBytes(), StandardCharsets.UTF_8);
-            String sha = gitHubAppService.getSha(owner, repo, pullNumber);
 
+            // The head SHA is resolved by the pipeline while the model runs
             AnalysisRequest request = new AnalysisRequest(
                     file.getOriginalFilename(),
                     diff,
                     String.valueOf(pullNumber),
-                    sha,
+                    null,
                     prUrl,
                     prAuthor);
 
-            return this.codeAnalysisService.analyzeDiff(request, modelName)
-                    .handle((inlineReviewResponse, throwable) -> {
-                        try {
-                            return processAnalysisResult(inlineReviewResponse, throwable, owner, repo, pullNumber, sha);
-                        } catch (Exception e) {
-                            log.error("Error during analysis result processing", e);
-                            return ResponseEntity.status(500).body("Unexpected error: " + e.getMessage());
-                        }
-                    });
+            return this.admissionLimiter
+                    .submit(() -> this.reviewPipelineService.run(owner, repo, pullNumber, request, modelName))
+                    .handle(this::processAnalysisResult);
 
         } catch (Exception e) {
-            log.error("Failed to get SHA or prepare analysis request", e);
+            log.error("Failed to prepare analysis request", e);
             return CompletableFuture
                     .completedFuture(ResponseEntity.status(500).body("Failed to prepare analysis: " + e.getMessage()));
         }
     }
 
-    private ResponseEntity<?> processAnalysisResult(Object inlineReviewResponseObj, Throwable throwable, String owner,
-            String repo, int pullNumber, String sha) throws Exception {
-        if (throwable != null) {
-            return this.showResponse((String) null, throwable, "Failure to analyze code by line.");
-        }
-
-        if (inlineReviewResponseObj == null) {
-            return ResponseEntity.ok().body("No new feedback generated or duplicate feedback skipped.");
-        }
-
-        try {
-            final InlineReviewResponse inlineReviewResponse = (InlineReviewResponse) inlineReviewResponseObj;
-            final String installationId = gitHubAppTokenService.getInstallationId(owner, repo);
-            final String token = gitHubAppTokenService.getInstallationToken(Long.parseLong(installationId));
-            log.info("The InlineReviewResponse: {}", inlineReviewResponse);
-
-            final List<GitDiff> diffsFromPr = this.gitHubAppService.getDiffs(owner, repo, pullNumber);
-
-            List<Issue> postedIssues = postIndividualComments(inlineReviewResponse.getIssues(), token, owner, repo,
-                    pullNumber, sha, diffsFromPr);
-
-            String markdownSummary = buildReviewSummary(postedIssues, inlineReviewResponse.getRecommendation());
-
-            return ResponseEntity.ok().body(markdownSummary.toString().trim());
+    /**
+     * Reviews a whole pull request. The diff is fetched from GitHub and the
+     * files are analyzed in parallel; each file's comments are posted as soon
+     * as it is done and one summary for the PR is returned.
+     */
+    @PostMapping("/analyze-pr")
+    public CompletableFuture<ResponseEntity<?>> reviewPullRequest(@RequestParam() String owner,
+            @RequestParam() String repo,
+            @RequestParam() int pullNumber,
+            @RequestParam(required = false) String headSha,
+            @RequestParam() String prUrl,
+            @RequestParam() String prAuthor,
+            @RequestParam() String modelName) {
+        return this.admissionLimiter
+                .submit(() -> this.reviewPipelineService
+                        .reviewPullRequest(owner, repo, pullNumber, headSha, prUrl, prAuthor, modelName))
+                .handle(this::processAnalysisResult);
+    }
 
-        } catch (IOException e) {
-            if (e.getMessage() != null && e.getMessage().contains("422")) {
+    private ResponseEntity<?> processAnalysisResult(String markdownSummary, Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            if (cause instanceof CancellationException && inFlightReviews.isAbandoning()) {
+                log.info("Review stopped for shutdown: {}", cause.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(ErrorResponse.builder().message("The server is shutting down, retry the review")
+                                .details(cause.getMessage() != null ? cause.getMessage() : "").build());
+            }
+            if (cause instanceof CancellationException) {
+                log.info("Review superseded: {}", cause.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(ErrorResponse.builder().message("Superseded by a newer commit of the pull request")
+                                .details(cause.getMessage() != null ? cause.getMessage() : "").build());
+            }
+            if (cause instanceof ReviewOwnership.AlreadyOwned alreadyOwned) {
+                log.info("Review not started: {}", alreadyOwned.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(ErrorResponse.builder().message("This commit is already being reviewed")
+                                .details(alreadyOwned.getMessage()).build());
+            }
+            if (cause instanceof ReviewDeadline.Exceeded exceeded) {
+                log.warn("Review timed out: {}", exceeded.getMessage());
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                        .body(ErrorResponse.builder().message("Review deadline reached")
+                                .details(exceeded.getMessage()).build());
+            }
+            if (cause instanceof AdmissionLimiter.Rejected rejected) {
+                log.warn("Review not admitted: {}", rejected.getMessage());
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.retryAfter().toSeconds()))
+                        .body(ErrorResponse.builder().message(rejected.getMessage()).details("").build());
+            }
+            if (cause instanceof IOException && cause.getMessage() != null && cause.getMessage().contains("422")) {
                 // Log the error but don't throw it, so processing continues
-                log.warn("Skipping invalid comment due to GitHub 422 error: {}", e.getMessage());
+                log.warn("Skipping invalid comment due to GitHub 422 error: {}", cause.getMessage());
                 return ResponseEntity.noContent().build();
-            } else {
-                // For other exceptions, you might want to rethrow or handle differently
-                throw e;
             }
+            return this.showResponse((String) null, throwable, "Failure to analyze code by line.");
         }
-    }
 
-    private List<Issue> postIndividualComments(List<Issue> aiIssues, String token, String owner, String repo,
-            int pullNumber, String sha, List<GitDiff> diffsFromPr) throws IOException {
-        List<Issue> postedIssues = new ArrayList<>();
-        for (Issue aiIssue : aiIssues) {
-            String issueFile = aiIssue.getFile();
-            int line = aiIssue.getLine();
-            String comment = aiIssue.getComment();
-
-            Optional<GitDiff> matchingDiff = diffsFromPr.stream()
-                    .filter(d -> {
-                        String diffFilename = normalizePath(d.getFilename());
-                        String issueFilename = normalizePath(issueFile);
-                        boolean matches = diffFilename.equals(issueFilename);
-                        if (!matches) {
-                            log.debug("Skipping mismatch: Issue file '{}' vs. Diff file '{}'", issueFilename,
-                                    diffFilename);
-                        }
-                        if (d.getPatch() == null || d.getPatch().isBlank()) {
-                            log.warn("Skipping file '{}': patch is null or empty.", d.getFilename());
-                            return false;
-                        }
-                        return matches;
-                    })
-                    .findFirst();
-
-            if (matchingDiff.isPresent()) {
-                GitDiff gitDiff = matchingDiff.get();
-                Set<Integer> validLines = this.parsingService.extractCommentableLines(gitDiff.getPatch());
-
-                if (validLines.contains(line)) {
-                    Integer position = this.parsingService.calculatePositionInDiffHunk(gitDiff.getPatch(), line);
-                    String diffHunk = this.parsingService.extractDiffHunkForLine(gitDiff.getPatch(), line);
-
-                    if (position != null && diffHunk != null && !diffHunk.isBlank()) {
-                        gitHubCommentService.postBlockComments(
-                                token,
-                                owner,
-                                repo,
-                                pullNumber,
-                                issueFile,
-                                line,
-                                comment,
-                                sha,
-                                position,
-                                diffHunk);
-                        postedIssues.add(new Issue(issueFile, line, position, comment));
-                    } else {
-                        log.warn(
-                                "Skipping comment: Could not calculate position or extract diff hunk for line {} in {}.",
-                                line, issueFile);
-                    }
-                } else {
-                    log.warn("Skipping comment: line {} in {} is not part of diff.", line, issueFile);
-                }
-            } else {
-                log.warn("No diff found for file: {}", issueFile);
-            }
+        if (markdownSummary == null) {
+            return ResponseEntity.ok().body("No new feedback generated or duplicate feedback skipped.");
         }
-        return postedIssues;
-    }
 
-    private String buildReviewSummary(List<Issue> postedIssues, String recommendation) {
-        StringBuilder markdownSummary = new StringBuilder();
-        markdownSummary.append("### 🤖 AI Review Summary\n");
-        markdownSummary.append("Posted ").append(postedIssues.size()).append(" inline comments.\n\n");
-
-        for (Issue issue : postedIssues) {
-            markdownSummary
-                    .append("- **File**: `").append(issue.getFile()).append("`\n")
-                    .append("  - **Line**: ").append(issue.getLine()).append("\n")
-                    .append("  - **Comment**: ").append(issue.getComment().replaceAll("\n", " ").trim()).append("\n")
-                    .append("  - **Category**: ")
-                    .append(this.parsingService.getIssueCategory(issue.getComment()).name().replaceAll("\n", " ")
-                            .trim())
-                    .append("\n\n");
-        }
-        markdownSummary.append("**Recommendation**: ").append(recommendation).append("\n");
-        return markdownSummary.toString();
+        return ResponseEntity.ok().body(markdownSummary.trim());
     }
 
     private ResponseEntity<?> showResponse(final String feedback, final Throwable throwable, String logMessage) {
@@ -222,15 +169,4 @@ public class CodeReviewController {
 
         return ResponseEntity.status(500).body(error);
     }
-
-    private String normalizePath(String path) {
-        if (path == null)
-            return "";
-
-        return path
-                .trim()
-                .replace("\\", "/") // Normalize Windows paths
-                .replaceFirst("^\\./", "") // Remove leading "./"
-                .toLowerCase(); // Optional: make case-insensitive if needed
-    }
 }
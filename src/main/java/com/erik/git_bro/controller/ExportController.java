@@ -0,0 +1,69 @@
+package com.erik.git_bro.controller;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.erik.git_bro.dto.ExportFilter;
+import com.erik.git_bro.service.ReviewExportService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Streams review history as NDJSON ({@code application/x-ndjson}).
+ * <p>
+ * Both endpoints accept {@code repository} ({@code owner/repo}),
+ * {@code pullRequestId} and an ISO-8601 {@code from}/{@code to} range. To
+ * resume an interrupted export, pass the timestamp and id of the last line
+ * received as {@code after} and {@code afterId}.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ReviewExportService reviewExportService;
+
+    @GetMapping("/reviews")
+    public ResponseEntity<StreamingResponseBody> reviews(@RequestParam(required = false) String repository,
+            @RequestParam(required = false) String pullRequestId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant after,
+            @RequestParam(required = false) UUID afterId) {
+        ExportFilter filter = filter(repository, pullRequestId, from, to, after, afterId);
+        return ResponseEntity.ok().contentType(NDJSON)
+                .body(out -> reviewExportService.exportReviews(filter, out));
+    }
+
+    @GetMapping("/iterations")
+    public ResponseEntity<StreamingResponseBody> iterations(@RequestParam(required = false) String repository,
+            @RequestParam(required = false) String pullRequestId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant after,
+            @RequestParam(required = false) UUID afterId) {
+        ExportFilter filter = filter(repository, pullRequestId, from, to, after, afterId);
+        return ResponseEntity.ok().contentType(NDJSON)
+                .body(out -> reviewExportService.exportIterations(filter, out));
+    }
+
+    private static ExportFilter filter(String repository, String pullRequestId, Instant from, Instant to,
+            Instant after, UUID afterId) {
+        return new ExportFilter(repository, pullRequestId,
+                from != null ? from : Instant.EPOCH,
+                to != null ? to : Instant.now(),
+                after, afterId);
+    }
+}
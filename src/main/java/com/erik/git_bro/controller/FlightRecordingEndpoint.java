@@ -0,0 +1,50 @@
+package com.erik.git_bro.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.FlightRecorderProperties;
+import com.erik.git_bro.util.ReviewFlightRecorder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@code GET /actuator/flightrecording?duration=30s} records JFR events for
+ * the given time and downloads the recording, to be opened in JDK Mission
+ * Control. The request is held open while recording.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+@RequiredArgsConstructor
+@Slf4j
+public class FlightRecordingEndpoint {
+
+    private final ReviewFlightRecorder reviewFlightRecorder;
+    private final FlightRecorderProperties properties;
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> record(@Nullable Duration duration) {
+        try {
+            byte[] recording = reviewFlightRecorder.record(duration != null ? duration
+                    : properties.getDefaultDuration());
+            return new WebEndpointResponse<>(new ByteArrayResource(recording), WebEndpointResponse.STATUS_OK);
+        } catch (ReviewFlightRecorder.RecordingInProgress e) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            log.error("JFR recording failed", e);
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.erik.git_bro.controller;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.erik.git_bro.dto.ErrorResponse;
+import com.erik.git_bro.service.ReviewJobService;
+import com.erik.git_bro.service.github.GitHubWebhookService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Receives GitHub App webhooks.
+ * <p>
+ * {@code pull_request} events are verified, de-duplicated and queued as review
+ * jobs; the endpoint answers {@code 202 Accepted} without waiting for the
+ * review, so GitHub never holds a connection open for the LLM.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/github")
+@Slf4j
+@RequiredArgsConstructor
+public class GitHubWebhookController {
+
+    private final GitHubWebhookService gitHubWebhookService;
+    private final ReviewJobService reviewJobService;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping("/webhook")
+    public ResponseEntity<?> receiveWebhook(
+            @RequestHeader("X-GitHub-Event") String event,
+            @RequestHeader("X-GitHub-Delivery") String deliveryId,
+            @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature,
+            @RequestBody byte[] payload) {
+
+        if (!gitHubWebhookService.isValidSignature(payload, signature)) {
+            log.warn("Rejected webhook delivery {} with invalid signature.", deliveryId);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ErrorResponse("Invalid signature", "X-Hub-Signature-256 did not match the payload."));
+        }
+
+        if (!"pull_request".equals(event)) {
+            log.debug("Ignoring '{}' event (delivery {}).", event, deliveryId);
+            return ResponseEntity.noContent().build();
+        }
+
+        final JsonNode json;
+        try {
+            json = objectMapper.readTree(payload);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Malformed JSON", e.getMessage()));
+        }
+
+        return gitHubWebhookService.toReviewJob(deliveryId, json)
+                .<ResponseEntity<?>>map(job -> {
+                    if (!reviewJobService.enqueue(job)) {
+                        log.info("Duplicate webhook delivery {} ignored.", deliveryId);
+                        return ResponseEntity.ok().body("Duplicate delivery ignored.");
+                    }
+                    return ResponseEntity.accepted().build();
+                })
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+}
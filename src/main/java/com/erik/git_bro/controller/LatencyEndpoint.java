@@ -0,0 +1,31 @@
+package com.erik.git_bro.controller;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.dto.StageLatency;
+import com.erik.git_bro.util.LatencyHistograms;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code GET /actuator/latency?provider=gemini&stage=model} reports p50, p90,
+ * p99, p99.9 and max latencies per provider and pipeline stage over the
+ * configured windows. Both parameters are optional filters.
+ */
+@Component
+@Endpoint(id = "latency")
+@RequiredArgsConstructor
+public class LatencyEndpoint {
+
+    private final LatencyHistograms latencyHistograms;
+
+    @ReadOperation
+    public List<StageLatency> latency(@Nullable String provider, @Nullable String stage) {
+        return latencyHistograms.snapshot(provider, stage);
+    }
+}
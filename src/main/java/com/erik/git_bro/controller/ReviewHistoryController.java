@@ -0,0 +1,35 @@
+package com.erik.git_bro.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.erik.git_bro.dto.ReviewIterationDTO;
+import com.erik.git_bro.service.ReviewHistoryService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Review history of a pull request: every analyzed commit with the reviews
+ * made on it.
+ */
+@RestController
+@RequestMapping("/api/review/history")
+@RequiredArgsConstructor
+public class ReviewHistoryController {
+
+    private final ReviewHistoryService reviewHistoryService;
+
+    @GetMapping("/{pullRequestId}")
+    public ResponseEntity<List<ReviewIterationDTO>> history(@PathVariable String pullRequestId) {
+        List<ReviewIterationDTO> history = reviewHistoryService.getHistory(pullRequestId);
+        if (history.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(history);
+    }
+}
@@ -30,7 +30,6 @@ public class TestController {
                             .prUrl(null)
                             .pullRequestId(null)
                             .issueFlag(null)
-                            .diffContent("+ public static void main")
                             .userId("Erik")
                             // .aiModel(review.setAiModel(aiModelRepository.findById(aiModelId).orElseThrow(()
                             // -> log.err));)
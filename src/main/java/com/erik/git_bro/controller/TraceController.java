@@ -0,0 +1,52 @@
+package com.erik.git_bro.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.erik.git_bro.dto.TraceSpan;
+import com.erik.git_bro.dto.TraceSummary;
+import com.erik.git_bro.util.ReviewTracer;
+import com.erik.git_bro.util.SpanStore;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Recent traces recorded on this node: list them, optionally for one pull
+ * request, and fetch the spans of one to see where a review spent its time.
+ */
+@RestController
+@RequestMapping("/api/traces")
+@RequiredArgsConstructor
+public class TraceController {
+
+    private final SpanStore spanStore;
+
+    @GetMapping
+    public ResponseEntity<List<TraceSummary>> traces(@RequestParam(required = false) String owner,
+            @RequestParam(required = false) String repo,
+            @RequestParam(required = false) Integer pullNumber,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (owner == null && repo == null && pullNumber == null) {
+            return ResponseEntity.ok(spanStore.recent(Math.max(1, limit)));
+        }
+        if (owner == null || repo == null || pullNumber == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(spanStore.forPullRequest(ReviewTracer.pullRequestKey(owner, repo, pullNumber)));
+    }
+
+    @GetMapping("/{traceId}")
+    public ResponseEntity<List<TraceSpan>> trace(@PathVariable String traceId) {
+        List<TraceSpan> spans = spanStore.trace(traceId);
+        if (spans.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(spans);
+    }
+}
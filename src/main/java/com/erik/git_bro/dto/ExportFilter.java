@@ -0,0 +1,25 @@
+package com.erik.git_bro.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Selects the rows of a review history export.
+ *
+ * @param repository    {@code owner/repo}, or null for all repositories.
+ * @param pullRequestId The pull request, or null for all pull requests.
+ * @param from          Inclusive start of the time range.
+ * @param to            Exclusive end of the time range.
+ * @param afterTime     Timestamp of the last row already received, or null to
+ *                      start at {@code from}.
+ * @param afterId       Id of the last row already received; only used
+ *                      together with {@code afterTime}.
+ */
+public record ExportFilter(
+    String repository,
+    String pullRequestId,
+    Instant from,
+    Instant to,
+    Instant afterTime,
+    UUID afterId
+) {}
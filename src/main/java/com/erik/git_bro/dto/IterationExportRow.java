@@ -0,0 +1,18 @@
+package com.erik.git_bro.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One review iteration in a history export.
+ */
+public record IterationExportRow(
+    UUID id,
+    Instant pushAt,
+    String pullRequestId,
+    String commitSha,
+    String aiModel,
+    BigDecimal derivedSeverityScore,
+    String commentSummary
+) {}
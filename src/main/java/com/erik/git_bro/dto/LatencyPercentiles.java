@@ -0,0 +1,15 @@
+package com.erik.git_bro.dto;
+
+/**
+ * Latency percentiles of one stage over one window, in milliseconds.
+ *
+ * @param count Values recorded in the window.
+ */
+public record LatencyPercentiles(
+    long count,
+    double p50,
+    double p90,
+    double p99,
+    double p999,
+    double max
+) {}
@@ -0,0 +1,19 @@
+package com.erik.git_bro.dto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-flight GitHub lookups for a pull request, started before the AI model is
+ * called so they overlap with it instead of adding to its latency.
+ * <p>
+ * The head SHA and review threads come from a single GraphQL query; the files
+ * are fetched over REST because only that API returns their patches.
+ * </p>
+ */
+public record PullRequestPrefetch(
+    CompletableFuture<String> token,
+    CompletableFuture<String> sha,
+    CompletableFuture<List<GitDiff>> files,
+    CompletableFuture<List<ReviewThread>> reviewThreads
+) {}
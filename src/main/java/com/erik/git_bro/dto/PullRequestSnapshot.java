@@ -0,0 +1,12 @@
+package com.erik.git_bro.dto;
+
+import java.util.List;
+
+/**
+ * Head commit and existing review threads of a pull request, fetched together
+ * in one paginated GraphQL query.
+ */
+public record PullRequestSnapshot(
+    String headSha,
+    List<ReviewThread> reviewThreads
+) {}
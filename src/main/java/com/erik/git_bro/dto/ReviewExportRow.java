@@ -0,0 +1,26 @@
+package com.erik.git_bro.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+import com.erik.git_bro.model.Category;
+
+/**
+ * One review in a history export, flattened with the commit it was made on.
+ */
+public record ReviewExportRow(
+    UUID id,
+    Instant createdAt,
+    String pullRequestId,
+    String prUrl,
+    String userId,
+    String fileName,
+    Integer line,
+    Category category,
+    BigDecimal severityScore,
+    String feedback,
+    String feedbackFingerprint,
+    UUID iterationId,
+    String commitSha
+) {}
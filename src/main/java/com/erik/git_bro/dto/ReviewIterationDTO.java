@@ -2,23 +2,36 @@ package com.erik.git_bro.dto;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * One iteration of a pull request's review history with the reviews made on
+ * it.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class ReviewIterationDTO {
-    private Long id;
-    private Long reviewId;
+    private UUID id;
     private String commitSha;
     private Instant pushAt;
     private String aiModel;
-    private BigDecimal aiTemperature;
     private String commentSummary;
-    private String severityScore;
-}
\ No newline at end of file
+    private BigDecimal severityScore;
+    @Builder.Default
+    private List<ReviewSummary> reviews = new ArrayList<>();
+
+    // Used by the JPQL constructor expression in ReviewIterationRepository
+    public ReviewIterationDTO(UUID id, String commitSha, Instant pushAt, String aiModel, String commentSummary,
+            BigDecimal severityScore) {
+        this(id, commitSha, pushAt, aiModel, commentSummary, severityScore, new ArrayList<>());
+    }
+}
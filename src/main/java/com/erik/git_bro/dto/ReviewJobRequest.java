@@ -0,0 +1,13 @@
+package com.erik.git_bro.dto;
+
+public record ReviewJobRequest(
+    String deliveryId,
+    Long installationId,
+    String owner,
+    String repo,
+    int pullNumber,
+    String headSha,
+    String prUrl,
+    String author,
+    String modelName
+) {}
@@ -0,0 +1,25 @@
+package com.erik.git_bro.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+import com.erik.git_bro.model.Category;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A review as listed in a pull request's history.
+ *
+ * @param iterationId The iteration the review belongs to; used to group the
+ *                    reviews and not serialized.
+ */
+public record ReviewSummary(
+    @JsonIgnore UUID iterationId,
+    UUID id,
+    String fileName,
+    Integer line,
+    Category category,
+    BigDecimal severityScore,
+    String feedback,
+    Instant createdAt
+) {}
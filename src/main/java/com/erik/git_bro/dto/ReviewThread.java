@@ -0,0 +1,15 @@
+package com.erik.git_bro.dto;
+
+/**
+ * An existing review thread on a pull request, as returned by the GitHub
+ * GraphQL API. Only the first comment of the thread is kept; it is the one the
+ * thread was opened with.
+ */
+public record ReviewThread(
+    String id,
+    String path,
+    Integer line,
+    boolean resolved,
+    boolean outdated,
+    String body
+) {}
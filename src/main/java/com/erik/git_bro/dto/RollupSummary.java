@@ -0,0 +1,25 @@
+package com.erik.git_bro.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupSummary {
+    private String groupKey;
+    private Long reviewCount;
+    private BigDecimal severitySum;
+    private BigDecimal maxSeverity;
+
+    public BigDecimal getAverageSeverity() {
+        if (reviewCount == null || reviewCount == 0 || severitySum == null) {
+            return BigDecimal.ZERO;
+        }
+        return severitySum.divide(BigDecimal.valueOf(reviewCount), 2, RoundingMode.HALF_UP);
+    }
+}
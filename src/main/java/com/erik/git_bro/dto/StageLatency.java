@@ -0,0 +1,18 @@
+package com.erik.git_bro.dto;
+
+import java.util.Map;
+
+/**
+ * Latencies of a pipeline stage for one provider, as reported by the latency
+ * endpoint.
+ *
+ * @param provider The model, e.g. {@code gemini}, or {@code github} and
+ *                 {@code database} for the stages that call no model.
+ * @param stage    The pipeline stage, e.g. {@code model} or {@code post}.
+ * @param windows  Percentiles per window, keyed like {@code 1m} or {@code 1h}.
+ */
+public record StageLatency(
+    String provider,
+    String stage,
+    Map<String, LatencyPercentiles> windows
+) {}
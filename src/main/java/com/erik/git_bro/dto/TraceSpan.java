@@ -0,0 +1,25 @@
+package com.erik.git_bro.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A finished span of a trace, as recorded by the local trace store.
+ *
+ * @param parentId The span this one ran in, or {@code null} for the root.
+ * @param name     The observation name, e.g. {@code review.file} or
+ *                 {@code http.client.requests}.
+ * @param tags     Low and high cardinality key values of the observation.
+ * @param error    The error the span ended with, if any.
+ */
+public record TraceSpan(
+    String traceId,
+    String spanId,
+    String parentId,
+    String name,
+    Instant start,
+    long durationMillis,
+    String thread,
+    Map<String, String> tags,
+    String error
+) {}
@@ -0,0 +1,20 @@
+package com.erik.git_bro.dto;
+
+import java.time.Instant;
+
+/**
+ * A trace as listed by the trace endpoint.
+ *
+ * @param root           Name of the earliest span recorded for the trace.
+ * @param durationMillis From the first span's start to the last span's end.
+ * @param slowest        Name of the slowest span below the root.
+ */
+public record TraceSummary(
+    String traceId,
+    String root,
+    Instant start,
+    long durationMillis,
+    int spans,
+    int errors,
+    String slowest
+) {}
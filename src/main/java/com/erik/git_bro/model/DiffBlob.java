@@ -0,0 +1,46 @@
+package com.erik.git_bro.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Diff text stored once per distinct content and referenced from every
+ * {@link Review} raised on it. The key is the SHA-256 of the uncompressed
+ * UTF-8 text, so identical diffs share a row.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "diff_blob")
+public class DiffBlob {
+
+    public static final String GZIP = "gzip";
+    public static final String NONE = "none";
+
+    // Hex SHA-256 of the uncompressed content
+    @Id
+    @Column(length = 64, updatable = false, nullable = false)
+    private String sha256;
+
+    @Column(nullable = false, updatable = false)
+    private byte[] content;
+
+    // GZIP for rows written by the application, NONE for rows backfilled in SQL
+    @Column(nullable = false, updatable = false)
+    private String compression;
+
+    private Integer originalSize;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+}
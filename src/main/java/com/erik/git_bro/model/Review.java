@@ -41,14 +41,18 @@ public class Review {
     @Column(nullable = false)
     private String fileName;
 
-    @Column(columnDefinition = "TEXT")
-    private String diffContent;
+    // SHA-256 key of the reviewed diff in diff_blob
+    @Column(length = 64)
+    private String diffBlobId;
 
     @Column(columnDefinition = "TEXT")
     private String feedback;
 
     private Integer line;
 
+    // Commit the line number refers to; carrying lines forward moves it to the new head
+    private String lineSha;
+
     @Column(nullable = false)
     private String pullRequestId;
 
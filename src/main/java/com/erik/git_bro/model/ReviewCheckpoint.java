@@ -0,0 +1,77 @@
+package com.erik.git_bro.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of reviewing one file of a pull request commit. Written after each
+ * completed stage, so a review cut short by a deploy or a crash resumes
+ * without asking the model again for files it already answered. Deleted once
+ * the review of the commit is finished.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "review_checkpoint", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_review_checkpoint_file",
+                columnNames = { "owner", "repo", "pull_number", "head_sha", "file_name" })
+})
+public class ReviewCheckpoint {
+
+    @Id
+    @UuidGenerator
+    @Column(columnDefinition = "UUID", updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private String repo;
+
+    @Column(nullable = false)
+    private Integer pullNumber;
+
+    @Column(nullable = false)
+    private String headSha;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    // SHA-256 of the file's diff; a checkpoint taken for a different diff is not reused
+    @Column(length = 64, nullable = false)
+    private String diffSha256;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReviewCheckpointStage stage;
+
+    // The parsed model answer as JSON
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String response;
+
+    // The issues that were posted as JSON, once the stage is POSTED
+    @Column(columnDefinition = "TEXT")
+    private String postedIssues;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+}
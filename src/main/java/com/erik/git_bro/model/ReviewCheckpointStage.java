@@ -0,0 +1,18 @@
+package com.erik.git_bro.model;
+
+/**
+ * The last completed stage of reviewing one file, as recorded in a
+ * {@link ReviewCheckpoint}.
+ */
+public enum ReviewCheckpointStage {
+    /**
+     * The model answered and the answer was parsed and persisted; its
+     * comments were not posted yet.
+     */
+    ANALYZED,
+
+    /**
+     * The comments of the file were posted.
+     */
+    POSTED
+}
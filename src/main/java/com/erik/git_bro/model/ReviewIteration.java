@@ -13,6 +13,8 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -25,6 +27,9 @@ import lombok.ToString;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(name = "review_iteration", uniqueConstraints = {
+    @UniqueConstraint(name = "uq_review_iteration_pr_commit", columnNames = {"pull_request_id", "commit_sha"})
+})
 public class ReviewIteration {
 
     @Id
@@ -35,6 +40,9 @@ public class ReviewIteration {
     @Column(nullable = false)
     private String pullRequestId;
 
+    // PR numbers repeat across repositories; the URL tells which repository this PR is in
+    private String prUrl;
+
     // The commit SHA this analysis was run against
     @Column(nullable = false)
     private String commitSha;
@@ -52,6 +60,11 @@ public class ReviewIteration {
     @Column(columnDefinition = "TEXT")
     private String commentSummary;
 
+    // Set when a newer push cancelled the review of this commit part way through
+    @Column(nullable = false)
+    @Builder.Default
+    private boolean superseded = false;
+
     // Each iteration can have multiple review comments.
     // 'mappedBy' indicates that the Review entity owns the relationship.
     @OneToMany(mappedBy = "reviewIteration", cascade = CascadeType.ALL, orphanRemoval = true)
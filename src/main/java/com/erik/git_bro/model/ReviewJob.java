@@ -0,0 +1,85 @@
+package com.erik.git_bro.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A webhook-triggered review waiting in, or moving through, the durable job
+ * queue. Workers on any node claim jobs with {@code FOR UPDATE SKIP LOCKED}
+ * and hold a lease on them while the review runs.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "review_job")
+public class ReviewJob {
+
+    @Id
+    @UuidGenerator
+    @Column(columnDefinition = "UUID", updatable = false, nullable = false)
+    private UUID id;
+
+    // X-GitHub-Delivery of the webhook that created the job, unique so redeliveries are dropped
+    @Column(unique = true)
+    private String deliveryId;
+
+    private Long installationId;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private String repo;
+
+    @Column(nullable = false)
+    private Integer pullNumber;
+
+    @Column(nullable = false)
+    private String headSha;
+
+    private String prUrl;
+
+    private String author;
+
+    private String modelName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReviewJobStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // Earliest time the job may be claimed; pushed into the future for retries
+    @Column(nullable = false)
+    private Instant availableAt;
+
+    // Node currently holding the lease
+    private String lockedBy;
+
+    // The lease is renewed by heartbeats; once it lapses the job is reclaimed
+    private Instant leaseExpiresAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,26 @@
+package com.erik.git_bro.model;
+
+/**
+ * Lifecycle states of a queued {@link ReviewJob}.
+ */
+public enum ReviewJobStatus {
+    /**
+     * Waiting to be claimed, either new or scheduled for a retry.
+     */
+    PENDING,
+
+    /**
+     * Leased by a worker node that is currently running the review.
+     */
+    RUNNING,
+
+    /**
+     * The review finished and its comments were posted.
+     */
+    SUCCEEDED,
+
+    /**
+     * Dead-lettered after exhausting all retry attempts.
+     */
+    DEAD
+}
@@ -0,0 +1,53 @@
+package com.erik.git_bro.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pre-aggregated review counts and severities for one group on one day.
+ * <p>
+ * Rows are upserted in the same transaction that inserts the reviews, so
+ * analytics read a handful of rows per group instead of scanning
+ * {@code review}.
+ * </p>
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(ReviewRollupId.class)
+@Table(name = "review_rollup")
+public class ReviewRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private RollupDimension dimension;
+
+    @Id
+    private String groupKey;
+
+    @Id
+    private LocalDate bucketDay;
+
+    @Column(nullable = false)
+    private Long reviewCount;
+
+    @Column(precision = 12, scale = 2, nullable = false)
+    private BigDecimal severitySum;
+
+    @Column(precision = 3, scale = 2)
+    private BigDecimal severityMax;
+}
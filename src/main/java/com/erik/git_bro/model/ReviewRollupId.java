@@ -0,0 +1,27 @@
+package com.erik.git_bro.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewRollupId implements Serializable, Comparable<ReviewRollupId> {
+    private RollupDimension dimension;
+    private String groupKey;
+    private LocalDate bucketDay;
+
+    @Override
+    public int compareTo(ReviewRollupId other) {
+        int byDimension = dimension.compareTo(other.dimension);
+        if (byDimension != 0) {
+            return byDimension;
+        }
+        int byKey = groupKey.compareTo(other.groupKey);
+        return byKey != 0 ? byKey : bucketDay.compareTo(other.bucketDay);
+    }
+}
@@ -0,0 +1,19 @@
+package com.erik.git_bro.model;
+
+/**
+ * The grouping a {@link ReviewRollup} row aggregates reviews by.
+ */
+public enum RollupDimension {
+    /** Keyed by {@code owner/repo#pullRequestId}, the repository parsed from the PR URL. */
+    PULL_REQUEST,
+    /** Keyed by {@code Review.userId}, the PR author. */
+    AUTHOR,
+    /** Keyed by {@link Category} name. */
+    CATEGORY,
+    /** Keyed by {@code owner/repo}, parsed from the PR URL. */
+    REPOSITORY,
+    /** Keyed by {@code owner/repo|CATEGORY}. */
+    REPOSITORY_CATEGORY,
+    /** A single group per day, keyed by {@code all}. */
+    DAY
+}
@@ -0,0 +1,30 @@
+package com.erik.git_bro.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.erik.git_bro.model.DiffBlob;
+
+@Repository
+public interface DiffBlobRepository extends JpaRepository<DiffBlob, String> {
+
+    /**
+     * Inserts a blob unless one with the same hash exists. Content addressing
+     * makes an existing row interchangeable with the new one, so concurrent
+     * writers of the same diff need no coordination.
+     *
+     * @return 1 if the row was inserted, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO diff_blob (sha256, content, compression, original_size, created_at) "
+            + "VALUES (:sha256, :content, :compression, :originalSize, :createdAt) "
+            + "ON CONFLICT (sha256) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("sha256") String sha256, @Param("content") byte[] content,
+            @Param("compression") String compression, @Param("originalSize") int originalSize,
+            @Param("createdAt") Instant createdAt);
+}
@@ -0,0 +1,44 @@
+package com.erik.git_bro.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.erik.git_bro.model.ReviewCheckpoint;
+
+@Repository
+public interface ReviewCheckpointRepository extends JpaRepository<ReviewCheckpoint, UUID> {
+
+    Optional<ReviewCheckpoint> findByOwnerAndRepoAndPullNumberAndHeadShaAndFileName(String owner, String repo,
+            Integer pullNumber, String headSha, String fileName);
+
+    /**
+     * Drops the checkpoints of a finished review.
+     *
+     * @return the number of deleted rows
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from ReviewCheckpoint c where c.owner = :owner and c.repo = :repo "
+            + "and c.pullNumber = :pullNumber and c.headSha = :headSha")
+    int deleteReview(@Param("owner") String owner, @Param("repo") String repo,
+            @Param("pullNumber") Integer pullNumber, @Param("headSha") String headSha);
+
+    /**
+     * Drops checkpoints of reviews that were never finished, e.g. dead-lettered
+     * jobs.
+     *
+     * @return the number of deleted rows
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from ReviewCheckpoint c where coalesce(c.updatedAt, c.createdAt) < :before")
+    int deleteStale(@Param("before") Instant before);
+}
@@ -1,18 +1,131 @@
 package com.erik.git_bro.repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-import org.springframework.data.jpa.repository.EntityGraph;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.erik.git_bro.dto.IterationExportRow;
+import com.erik.git_bro.dto.ReviewIterationDTO;
 import com.erik.git_bro.model.ReviewIteration;
 
+import jakarta.persistence.QueryHint;
+
 public interface ReviewIterationRepository extends JpaRepository<ReviewIteration, UUID>{
-    @EntityGraph(value = "ReviewIteration.all")
-    List<ReviewIteration> findByPullRequestId(String pullRequestId);
+    /**
+     * Lists the iterations of a pull request, oldest first, without their
+     * reviews.
+     *
+     * @see ReviewRepository#findSummariesByPullRequestId
+     */
+    @Query("select new com.erik.git_bro.dto.ReviewIterationDTO(i.id, i.commitSha, i.pushAt, i.aiModel, "
+            + "i.commentSummary, i.derivedSeverityScore) "
+            + "from ReviewIteration i where i.pullRequestId = :pullRequestId order by i.pushAt, i.id")
+    List<ReviewIterationDTO> findHistoryByPullRequestId(@Param("pullRequestId") String pullRequestId);
+
+    /**
+     * Tells whether a pull request of a repository was reviewed before.
+     *
+     * @param repository a LIKE pattern matching the PR URLs of the repository
+     */
+    @Query("select count(i) > 0 from ReviewIteration i "
+            + "where i.pullRequestId = :pullRequestId and lower(i.prUrl) like :repository")
+    boolean existsInRepository(@Param("repository") String repository,
+            @Param("pullRequestId") String pullRequestId);
 
     Optional<ReviewIteration> findByPullRequestIdAndCommitSha(String pullRequestId, String commitSha);
 
+    /**
+     * Inserts the iteration of a commit unless it already exists. Backed by
+     * the unique constraint on (pull_request_id, commit_sha): a concurrent
+     * insert of the same commit waits for the other transaction and then does
+     * nothing, so no application-level locking is needed.
+     *
+     * @return 1 if the row was inserted, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO review_iteration (id, pull_request_id, pr_url, commit_sha, push_at) "
+            + "VALUES (:id, :pullRequestId, :prUrl, :commitSha, :pushAt) "
+            + "ON CONFLICT (pull_request_id, commit_sha) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("pullRequestId") String pullRequestId,
+            @Param("prUrl") String prUrl, @Param("commitSha") String commitSha, @Param("pushAt") Instant pushAt);
+
+    /**
+     * Raises the derived severity of an iteration to {@code severity} if that
+     * is higher, and records the model that produced it, in one statement.
+     * Neither the iteration nor its reviews are loaded, and concurrent
+     * analyses of the same commit cannot overwrite a higher score.
+     *
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE review_iteration SET "
+            + "derived_severity_score = GREATEST(derived_severity_score, :severity), "
+            + "ai_model = COALESCE(:aiModel, ai_model) "
+            + "WHERE id = :id", nativeQuery = true)
+    int raiseSeverity(@Param("id") UUID id, @Param("severity") BigDecimal severity,
+            @Param("aiModel") String aiModel);
+
+    /**
+     * Marks the iteration of a commit as superseded by a newer push. Its
+     * review was cancelled and may cover only part of the diff.
+     *
+     * @return the number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("update ReviewIteration i set i.superseded = true "
+            + "where i.pullRequestId = :pullRequestId and i.commitSha = :commitSha")
+    int markSuperseded(@Param("pullRequestId") String pullRequestId, @Param("commitSha") String commitSha);
+
+    boolean existsByPullRequestIdAndCommitShaAndSupersededTrue(String pullRequestId, String commitSha);
+
+    /**
+     * Finds the most recent fully reviewed iterations of a pull request that
+     * ran against a different commit, i.e. the last reviewed state before
+     * {@code commitSha}. Superseded iterations are skipped, since their review
+     * was cut short.
+     *
+     * @param repository a LIKE pattern matching the PR URLs of the repository
+     */
+    @Query("select i from ReviewIteration i "
+            + "where i.pullRequestId = :pullRequestId and lower(i.prUrl) like :repository "
+            + "and i.commitSha <> :commitSha and i.superseded = false "
+            + "order by i.pushAt desc")
+    List<ReviewIteration> findLastReviewedBefore(@Param("repository") String repository,
+            @Param("pullRequestId") String pullRequestId, @Param("commitSha") String commitSha, Limit limit);
+
+    /**
+     * Streams one keyset page of iterations ordered by {@code (pushAt, id)}.
+     * An iteration matches a repository if any of its reviews links to it.
+     *
+     * @see ReviewRepository#streamForExport
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + ReviewRepository.EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.erik.git_bro.dto.IterationExportRow(i.id, i.pushAt, i.pullRequestId, i.commitSha, "
+            + "i.aiModel, i.derivedSeverityScore, i.commentSummary) "
+            + "from ReviewIteration i "
+            + "where (i.pushAt > :afterTime or (i.pushAt = :afterTime and i.id > :afterId)) "
+            + "and i.pushAt < :to "
+            + "and (:repository is null or exists (select 1 from Review r "
+            + "where r.reviewIteration = i and lower(r.prUrl) like :repository)) "
+            + "and (:pullRequestId is null or i.pullRequestId = :pullRequestId) "
+            + "order by i.pushAt, i.id")
+    Stream<IterationExportRow> streamForExport(@Param("afterTime") Instant afterTime, @Param("afterId") UUID afterId,
+            @Param("to") Instant to, @Param("repository") String repository,
+            @Param("pullRequestId") String pullRequestId, Limit limit);
 }
@@ -0,0 +1,126 @@
+package com.erik.git_bro.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.erik.git_bro.model.ReviewJob;
+import com.erik.git_bro.model.ReviewJobStatus;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface ReviewJobRepository extends JpaRepository<ReviewJob, UUID> {
+
+    boolean existsByDeliveryId(String deliveryId);
+
+    /**
+     * Locks the next claimable jobs, skipping rows another node already holds.
+     * <p>
+     * A lock timeout of {@code -2} is Hibernate's {@code SKIP_LOCKED}; on
+     * PostgreSQL this renders {@code FOR UPDATE SKIP LOCKED}, so concurrent
+     * workers never block on, or double-claim, the same job.
+     * </p>
+     *
+     * @param now      jobs with {@code availableAt} after this are still backing off
+     * @param pageable limits how many jobs are claimed at once
+     * @return the locked jobs, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select j from ReviewJob j where j.status = com.erik.git_bro.model.ReviewJobStatus.PENDING "
+            + "and j.availableAt <= :now order by j.availableAt")
+    List<ReviewJob> findClaimable(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Extends the lease of jobs still owned by the given node.
+     *
+     * @return the number of leases renewed
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.leaseExpiresAt = :leaseExpiresAt, j.updatedAt = :now "
+            + "where j.id in :ids and j.lockedBy = :nodeId "
+            + "and j.status = com.erik.git_bro.model.ReviewJobStatus.RUNNING")
+    int renewLeases(@Param("ids") Collection<UUID> ids, @Param("nodeId") String nodeId,
+            @Param("leaseExpiresAt") Instant leaseExpiresAt, @Param("now") Instant now);
+
+    /**
+     * Marks a job this node still owns as finished.
+     *
+     * @return 0 if the lease lapsed and the job is no longer this node's
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ReviewJob j set j.status = com.erik.git_bro.model.ReviewJobStatus.SUCCEEDED, "
+            + "j.lockedBy = null, j.leaseExpiresAt = null, j.updatedAt = :now "
+            + "where j.id = :id and j.lockedBy = :nodeId "
+            + "and j.status = com.erik.git_bro.model.ReviewJobStatus.RUNNING")
+    int complete(@Param("id") UUID id, @Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    /**
+     * Ends the failed attempt of a job this node still owns, either putting it
+     * back for a retry at {@code availableAt} or, with {@code DEAD}, dead-lettering it.
+     * The attempt count guards against a reclaim between reading the job and
+     * this update.
+     *
+     * @return 0 if the lease lapsed and the job is no longer this node's
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ReviewJob j set j.status = :status, j.lockedBy = null, j.leaseExpiresAt = null, "
+            + "j.availableAt = :availableAt, j.lastError = :error, j.updatedAt = :now "
+            + "where j.id = :id and j.lockedBy = :nodeId and j.attempts = :attempts "
+            + "and j.status = com.erik.git_bro.model.ReviewJobStatus.RUNNING")
+    int fail(@Param("id") UUID id, @Param("nodeId") String nodeId, @Param("attempts") int attempts,
+            @Param("status") ReviewJobStatus status, @Param("availableAt") Instant availableAt,
+            @Param("error") String error, @Param("now") Instant now);
+
+    /**
+     * Returns jobs whose owner stopped heartbeating (crashed or partitioned
+     * node) to the queue so another worker can pick them up.
+     *
+     * @return the number of jobs released
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = com.erik.git_bro.model.ReviewJobStatus.PENDING, "
+            + "j.lockedBy = null, j.leaseExpiresAt = null, j.availableAt = :now, j.updatedAt = :now "
+            + "where j.status = com.erik.git_bro.model.ReviewJobStatus.RUNNING and j.leaseExpiresAt < :now")
+    int releaseExpiredLeases(@Param("now") Instant now);
+
+    /**
+     * Hands jobs this node gave up on while shutting down back to the queue,
+     * without counting the interrupted attempt.
+     *
+     * @return the number of jobs requeued
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = com.erik.git_bro.model.ReviewJobStatus.PENDING, "
+            + "j.lockedBy = null, j.leaseExpiresAt = null, j.availableAt = :now, j.updatedAt = :now, "
+            + "j.attempts = j.attempts - 1 "
+            + "where j.id in :ids and j.lockedBy = :nodeId "
+            + "and j.status = com.erik.git_bro.model.ReviewJobStatus.RUNNING")
+    int requeue(@Param("ids") Collection<UUID> ids, @Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    /**
+     * Tells whether a job for another head of a pull request was queued after
+     * both the latest job for {@code headSha} and {@code since}. Jobs are
+     * ordered by when their webhook arrived, not by when the commit was
+     * pushed, so a match is only a hint to ask GitHub for the head.
+     */
+    @Query("select case when count(j) > 0 then true else false end from ReviewJob j "
+            + "where j.owner = :owner and j.repo = :repo and j.pullNumber = :pullNumber and j.headSha <> :headSha "
+            + "and j.createdAt > :since "
+            + "and not exists (select 1 from ReviewJob m where m.owner = :owner and m.repo = :repo "
+            + "and m.pullNumber = :pullNumber and m.headSha = :headSha and m.createdAt >= j.createdAt)")
+    boolean existsNewerHead(@Param("owner") String owner, @Param("repo") String repo,
+            @Param("pullNumber") int pullNumber, @Param("headSha") String headSha, @Param("since") Instant since);
+}
@@ -1,15 +1,32 @@
 package com.erik.git_bro.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.erik.git_bro.dto.ReviewExportRow;
+import com.erik.git_bro.dto.ReviewSummary;
 import com.erik.git_bro.model.Review;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, UUID> {
 
+    /** Rows fetched per round trip while streaming an export. */
+    int EXPORT_FETCH_SIZE = 500;
+
     /**
      * Checks if a Review entity with the given fingerprint already exists for a specific pull request.
      *
@@ -19,5 +36,66 @@ public interface ReviewRepository extends JpaRepository<Review, UUID> {
      */
     boolean existsByPullRequestIdAndFeedbackFingerprint(String pullRequestId, String feedbackFingerprint);
 
+    /**
+     * Returns which of the given fingerprints already exist for a pull request,
+     * so a whole AI response can be de-duplicated with a single query.
+     *
+     * @param pullRequestId the ID of the pull request
+     * @param fingerprints  the fingerprints to look up
+     * @return the subset of {@code fingerprints} that is already stored
+     */
+    @Query("select r.feedbackFingerprint from Review r "
+            + "where r.pullRequestId = :pullRequestId and r.feedbackFingerprint in :fingerprints")
+    Set<String> findExistingFingerprints(@Param("pullRequestId") String pullRequestId,
+            @Param("fingerprints") Collection<String> fingerprints);
+
     boolean existsByPullRequestId(String pullRequestId);
-}
\ No newline at end of file
+
+    /**
+     * Lists the reviews of all iterations of a pull request in one query,
+     * ordered by creation time.
+     */
+    @Query("select new com.erik.git_bro.dto.ReviewSummary(r.reviewIteration.id, r.id, r.fileName, r.line, "
+            + "r.category, r.severityScore, r.feedback, r.createdAt) "
+            + "from Review r where r.pullRequestId = :pullRequestId and r.reviewIteration is not null "
+            + "order by r.createdAt, r.id")
+    List<ReviewSummary> findSummariesByPullRequestId(@Param("pullRequestId") String pullRequestId);
+
+    /**
+     * Lists the reviews of a pull request of one repository.
+     *
+     * @param repository a LIKE pattern matching the PR URLs of the repository
+     */
+    @Query("select r from Review r "
+            + "where r.pullRequestId = :pullRequestId and lower(r.prUrl) like :repository")
+    List<Review> findInRepository(@Param("repository") String repository,
+            @Param("pullRequestId") String pullRequestId);
+
+    /**
+     * Streams one keyset page of reviews ordered by {@code (createdAt, id)},
+     * starting after the given row. Rows are read as projections with a JDBC
+     * fetch size, so nothing is kept in the persistence context.
+     *
+     * @param afterTime   timestamp of the last row of the previous page
+     * @param afterId     id of the last row of the previous page
+     * @param to          exclusive end of the time range
+     * @param repository  {@code %/owner/repo/pull%} pattern, or null for all repositories
+     * @param pullRequestId the pull request, or null for all pull requests
+     * @param limit       the page size
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.erik.git_bro.dto.ReviewExportRow(r.id, r.createdAt, r.pullRequestId, r.prUrl, r.userId, "
+            + "r.fileName, r.line, r.category, r.severityScore, r.feedback, r.feedbackFingerprint, i.id, i.commitSha) "
+            + "from Review r left join r.reviewIteration i "
+            + "where (r.createdAt > :afterTime or (r.createdAt = :afterTime and r.id > :afterId)) "
+            + "and r.createdAt < :to "
+            + "and (:repository is null or lower(r.prUrl) like :repository) "
+            + "and (:pullRequestId is null or r.pullRequestId = :pullRequestId) "
+            + "order by r.createdAt, r.id")
+    Stream<ReviewExportRow> streamForExport(@Param("afterTime") Instant afterTime, @Param("afterId") UUID afterId,
+            @Param("to") Instant to, @Param("repository") String repository,
+            @Param("pullRequestId") String pullRequestId, Limit limit);
+}
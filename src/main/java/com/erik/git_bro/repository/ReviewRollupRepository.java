@@ -0,0 +1,51 @@
+package com.erik.git_bro.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.erik.git_bro.dto.RollupSummary;
+import com.erik.git_bro.model.ReviewRollup;
+import com.erik.git_bro.model.ReviewRollupId;
+import com.erik.git_bro.model.RollupDimension;
+
+@Repository
+public interface ReviewRollupRepository extends JpaRepository<ReviewRollup, ReviewRollupId> {
+
+    /**
+     * Adds a delta to a rollup row, creating it on first use. The row lock
+     * taken by {@code ON CONFLICT DO UPDATE} serializes concurrent writers of
+     * the same group and day.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO review_rollup "
+            + "(dimension, group_key, bucket_day, review_count, severity_sum, severity_max) "
+            + "VALUES (:dimension, :groupKey, :bucketDay, :reviewCount, :severitySum, :severityMax) "
+            + "ON CONFLICT (dimension, group_key, bucket_day) DO UPDATE SET "
+            + "review_count = review_rollup.review_count + EXCLUDED.review_count, "
+            + "severity_sum = review_rollup.severity_sum + EXCLUDED.severity_sum, "
+            + "severity_max = GREATEST(review_rollup.severity_max, EXCLUDED.severity_max)", nativeQuery = true)
+    int upsert(@Param("dimension") String dimension, @Param("groupKey") String groupKey,
+            @Param("bucketDay") LocalDate bucketDay, @Param("reviewCount") long reviewCount,
+            @Param("severitySum") BigDecimal severitySum, @Param("severityMax") BigDecimal severityMax);
+
+    /**
+     * Totals per group over a date range, largest groups first.
+     */
+    @Query("select new com.erik.git_bro.dto.RollupSummary(r.groupKey, sum(r.reviewCount), sum(r.severitySum), "
+            + "max(r.severityMax)) from ReviewRollup r "
+            + "where r.dimension = :dimension and r.bucketDay between :from and :to "
+            + "group by r.groupKey order by sum(r.reviewCount) desc, r.groupKey")
+    List<RollupSummary> summarize(@Param("dimension") RollupDimension dimension, @Param("from") LocalDate from,
+            @Param("to") LocalDate to, Pageable pageable);
+
+    List<ReviewRollup> findByDimensionAndGroupKeyAndBucketDayBetweenOrderByBucketDay(RollupDimension dimension,
+            String groupKey, LocalDate from, LocalDate to);
+}
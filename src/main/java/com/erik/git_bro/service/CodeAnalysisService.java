@@ -5,7 +5,14 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +26,10 @@ import com.erik.git_bro.model.Category;
 import com.erik.git_bro.model.Review;
 import com.erik.git_bro.model.ReviewIteration;
 import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.util.DbBulkhead;
+import com.erik.git_bro.util.LatencyHistograms;
+import com.erik.git_bro.util.ReviewEvents;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -35,8 +46,14 @@ public class CodeAnalysisService {
 
     private final ReviewRepository reviewRepository;
     private final ReviewIterationService reviewIterationService;
+    private final ReviewWriteBuffer reviewWriteBuffer;
+    private final DiffBlobService diffBlobService;
     private final ParsingService parsingService;
     private final ObjectMapper objectMapper;
+    private final DbBulkhead dbBulkhead;
+    private final ReviewTracer reviewTracer;
+    private final LatencyHistograms latencyHistograms;
+    private final Executor virtualThreadExecutor;
 
     /**
      * Analyzes the provided code difference using the specified AI model.
@@ -51,6 +68,23 @@ public class CodeAnalysisService {
      */
     @Transactional
     public CompletableFuture<InlineReviewResponse> analyzeDiff(AnalysisRequest request, String modelName) {
+        return analyzeDiff(request, modelName, CompletableFuture.completedFuture(request.sha()));
+    }
+
+    /**
+     * Analyzes the provided code difference while the head commit SHA is still
+     * being resolved. The AI model is called right away; the review iteration
+     * is only looked up once both the feedback and the SHA are available.
+     *
+     * @param request   The analysis request; its SHA is ignored in favour of
+     *                  {@code shaFuture}.
+     * @param modelName The name of the AI model to use (e.g., "chatgpt", "gemini").
+     * @param shaFuture A future completing with the head commit SHA.
+     * @return A CompletableFuture that will hold the InlineReviewResponse from the
+     *         AI model.
+     */
+    public CompletableFuture<InlineReviewResponse> analyzeDiff(AnalysisRequest request, String modelName,
+            CompletableFuture<String> shaFuture) {
         CompletableFuture<String> feedbackFuture;
         try {
             feedbackFuture = getAIFeedbackFuture(request, modelName);
@@ -60,17 +94,26 @@ public class CodeAnalysisService {
             return future;
         }
 
-        ReviewIteration iteration = reviewIterationService.findOrCreateIteration(request.pullRequestId(),
-                request.sha());
-
-        return feedbackFuture.thenApplyAsync(rawFeedback -> {
-            try {
-                return processAiFeedback(rawFeedback, request, iteration, modelName);
-            } catch (JsonProcessingException e) {
-                log.error("Error parsing AI feedback: {}", rawFeedback, e);
-                throw new RuntimeException("Failed to parse AI feedback", e);
+        // Blocking JPA work: on a virtual thread, admitted by the bulkhead, never on the common pool
+        CompletableFuture<InlineReviewResponse> analysis = feedbackFuture.thenCombineAsync(shaFuture,
+                reviewTracer.wrap((String rawFeedback, String sha) -> reviewTracer.observation("review.persist")
+                        .observe(() -> dbBulkhead.call(() -> {
+                            ReviewIteration iteration = reviewIterationService
+                                    .findOrCreateIteration(request.pullRequestId(), sha, request.prUrl());
+                            try {
+                                return processAiFeedback(rawFeedback, request, iteration, modelName);
+                            } catch (JsonProcessingException e) {
+                                log.error("Error parsing AI feedback: {}", rawFeedback, e);
+                                throw new RuntimeException("Failed to parse AI feedback", e);
+                            }
+                        }))), virtualThreadExecutor);
+        // Cancelling the analysis cancels the model call, which cancels its HTTP request
+        analysis.whenComplete((response, failure) -> {
+            if (analysis.isCancelled()) {
+                feedbackFuture.cancel(true);
             }
         });
+        return analysis;
     }
 
     /**
@@ -107,64 +150,111 @@ public class CodeAnalysisService {
      */
     private InlineReviewResponse processAiFeedback(String rawFeedback, AnalysisRequest request,
             ReviewIteration iteration, String modelName) throws JsonProcessingException {
-        InlineReviewResponse inlineReviewResponse = parseFeedback(rawFeedback);
+        InlineReviewResponse inlineReviewResponse = parseFeedback(rawFeedback, modelName);
 
-        BigDecimal maxSeverity = inlineReviewResponse.getIssues().stream()
-                .map(issue -> processIssue(issue, request, iteration))
-                .max(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
+        Map<String, Review> candidates = new LinkedHashMap<>();
+        BigDecimal maxSeverity = BigDecimal.ZERO;
+        for (Issue aiIssue : inlineReviewResponse.getIssues()) {
+            Review review = processIssue(aiIssue, request);
+            candidates.putIfAbsent(review.getFeedbackFingerprint(), review);
+            maxSeverity = maxSeverity.max(review.getSeverityScore());
+        }
 
+        List<Review> newReviews = findNewReviews(request.pullRequestId(), candidates);
+        if (!newReviews.isEmpty()) {
+            // Written once and shared by every review raised on this diff
+            String diffBlobId = diffBlobService.store(request.diffContent());
+            newReviews.forEach(review -> {
+                review.setDiffBlobId(diffBlobId);
+                review.setReviewIteration(iteration);
+                review.setLineSha(iteration.getCommitSha());
+            });
+        }
+
+        // Only this analysis' maximum; the stored score is raised to it in SQL, never lowered
         iteration.setDerivedSeverityScore(maxSeverity);
         iteration.setAiModel(modelName);
-        reviewIterationService.save(iteration);
+        reviewWriteBuffer.submit(iteration, newReviews).join();
 
         return inlineReviewResponse;
     }
 
+    /**
+     * Drops the candidates whose fingerprint is already stored for the pull
+     * request, using one query for the whole response.
+     *
+     * @param pullRequestId The ID of the pull request.
+     * @param candidates    The candidate reviews keyed by fingerprint.
+     * @return The reviews that are not duplicates.
+     */
+    private List<Review> findNewReviews(String pullRequestId, Map<String, Review> candidates) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Set<String> existing = reviewRepository.findExistingFingerprints(pullRequestId, candidates.keySet());
+        List<Review> newReviews = new ArrayList<>();
+        candidates.forEach((fingerprint, review) -> {
+            if (existing.contains(fingerprint)) {
+                log.info("Duplicate feedback detected and skipped for file: {}", review.getFileName());
+            } else {
+                newReviews.add(review);
+            }
+        });
+        log.info("{} new unique feedback entries for PR {} ({} duplicates skipped).", newReviews.size(),
+                pullRequestId, candidates.size() - newReviews.size());
+        return newReviews;
+    }
+
     /**
      * Parses the raw AI feedback string into an InlineReviewResponse object.
      *
      * @param rawFeedback The raw feedback string from the AI.
+     * @param modelName   The name of the AI model that gave the feedback.
      * @return The parsed InlineReviewResponse.
      * @throws JsonProcessingException if there's an error parsing the JSON
      *                                 feedback.
      * @throws RuntimeException        if the parsed response is null.
      */
-    private InlineReviewResponse parseFeedback(String rawFeedback) throws JsonProcessingException {
-        String cleanFeedback = parsingService.cleanChunk(rawFeedback);
-        InlineReviewResponse response = objectMapper.readValue(cleanFeedback, InlineReviewResponse.class);
-        if (response == null) {
-            log.error("Parsed inlineReviewResponse is null for feedback: {}", cleanFeedback);
-            throw new RuntimeException("Failed to parse AI feedback: inlineReviewResponse is null");
+    private InlineReviewResponse parseFeedback(String rawFeedback, String modelName)
+            throws JsonProcessingException {
+        ReviewEvents.FeedbackParsed parsed = new ReviewEvents.FeedbackParsed();
+        parsed.begin();
+        long started = System.nanoTime();
+        try {
+            String cleanFeedback = parsingService.cleanChunk(rawFeedback);
+            InlineReviewResponse response = objectMapper.readValue(cleanFeedback, InlineReviewResponse.class);
+            if (response == null) {
+                log.error("Parsed inlineReviewResponse is null for feedback: {}", cleanFeedback);
+                throw new RuntimeException("Failed to parse AI feedback: inlineReviewResponse is null");
+            }
+            parsed.issues = response.getIssues() == null ? 0 : response.getIssues().size();
+            parsed.succeeded = true;
+            return response;
+        } finally {
+            latencyHistograms.recordSince(modelName.toLowerCase(Locale.ROOT), LatencyHistograms.PARSE, started);
+            parsed.end();
+            if (parsed.shouldCommit()) {
+                parsed.feedbackLength = rawFeedback == null ? 0 : rawFeedback.length();
+                parsed.pullRequest(reviewTracer.pullRequest());
+                parsed.commit();
+            }
         }
-        return response;
     }
 
     /**
-     * Processes an individual AI issue, determines its severity, creates a
-     * fingerprint,
-     * and saves it as a new review if it's not a duplicate.
+     * Processes an individual AI issue: determines its severity, creates a
+     * fingerprint and builds the review that would be stored for it.
      *
-     * @param aiIssue   The AI-generated issue.
-     * @param request   The original analysis request.
-     * @param iteration The current review iteration.
-     * @return The severity of the processed issue.
+     * @param aiIssue The AI-generated issue.
+     * @param request The original analysis request.
+     * @return The unsaved review for the issue.
      */
-    private BigDecimal processIssue(Issue aiIssue, AnalysisRequest request, ReviewIteration iteration) {
+    private Review processIssue(Issue aiIssue, AnalysisRequest request) {
         Category issueCategory = parsingService.getIssueCategory(aiIssue.getComment());
         BigDecimal severity = determineSeverity(issueCategory);
         String fingerprint = createFingerprint(request.pullRequestId(), aiIssue.getFile(), aiIssue.getComment(),
                 issueCategory.name());
-
-        if (!reviewRepository.existsByPullRequestIdAndFeedbackFingerprint(request.pullRequestId(), fingerprint)) {
-            Review review = createReview(aiIssue, request, issueCategory, severity, fingerprint);
-            iteration.addReview(review);
-            reviewRepository.save(review);
-            log.info("New unique feedback found and saved for file: {}", aiIssue.getFile());
-        } else {
-            log.info("Duplicate feedback detected and skipped for file: {}", aiIssue.getFile());
-        }
-        return severity;
+        return createReview(aiIssue, request, issueCategory, severity, fingerprint);
     }
 
     /**
@@ -182,7 +272,6 @@ public class CodeAnalysisService {
         return Review.builder()
                 .pullRequestId(request.pullRequestId())
                 .fileName(aiIssue.getFile())
-                .diffContent(request.diffContent())
                 .feedback(aiIssue.getComment())
                 .category(category)
                 .feedbackFingerprint(fingerprint)
@@ -0,0 +1,102 @@
+package com.erik.git_bro.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.erik.git_bro.model.DiffBlob;
+import com.erik.git_bro.repository.DiffBlobRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content-addressed storage for diff text.
+ * <p>
+ * A diff is gzip-compressed and written once, keyed by its SHA-256; reviews
+ * only keep the hash. A response with many issues on the same diff therefore
+ * writes the text a single time instead of once per review row.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DiffBlobService {
+
+    private final DiffBlobRepository diffBlobRepository;
+
+    /**
+     * Stores the diff unless identical content is already stored.
+     *
+     * @param content The diff text, may be {@code null}.
+     * @return The SHA-256 key of the content, or {@code null} for no content.
+     */
+    @Transactional
+    public String store(String content) {
+        if (content == null) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        String sha256 = sha256(raw);
+        int inserted = diffBlobRepository.insertIfAbsent(sha256, gzip(raw), DiffBlob.GZIP, raw.length,
+                Instant.now());
+        if (inserted == 0) {
+            log.debug("Diff blob {} already stored.", sha256);
+        }
+        return sha256;
+    }
+
+    /**
+     * Loads and decompresses a stored diff.
+     *
+     * @param sha256 The key returned by {@link #store(String)}.
+     * @return The diff text, if stored.
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> load(String sha256) {
+        return diffBlobRepository.findById(sha256).map(DiffBlobService::decode);
+    }
+
+    static String decode(DiffBlob blob) {
+        byte[] raw = DiffBlob.GZIP.equals(blob.getCompression()) ? gunzip(blob.getContent()) : blob.getContent();
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    static String sha256(byte[] raw) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] gunzip(byte[] compressed) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
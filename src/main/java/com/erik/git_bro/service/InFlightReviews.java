@@ -0,0 +1,370 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewJobRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of the reviews running on this node, per pull request.
+ * <p>
+ * A review learns the SHA it runs against together with the pull request's
+ * current head on GitHub. If they differ, the review is of an older push and
+ * is superseded: its pending model calls are cancelled (which cancels the
+ * underlying HTTP calls), comments it has not posted yet are dropped, and its
+ * iteration is marked superseded. If they match, every other review of the
+ * pull request on this node is superseded the same way. Only GitHub's head
+ * decides which push is newer: webhooks may be delivered late, twice or out
+ * of order, so a different SHA alone never cancels anything.
+ * </p>
+ * <p>
+ * Reviews of the same pull request may run on other nodes, where this
+ * registry does not reach them. A running review therefore also checks, at
+ * its stage boundaries (before each model call and before posting), whether
+ * a job for another head of its pull request was queued on any node since it
+ * started. If so, and GitHub confirms its SHA is no longer the head, it
+ * supersedes itself. The check queries at most once per
+ * {@link #HEAD_CHECK_INTERVAL}.
+ * </p>
+ * <p>
+ * On shutdown, {@link #abandon} stops the reviews of the jobs still running
+ * on this node the same way, but without marking them superseded: their jobs
+ * are requeued and resume from their checkpoints. Reviews started through the
+ * HTTP endpoints are left to the web server's graceful shutdown.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class InFlightReviews {
+
+    static final Duration HEAD_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final ReviewIterationRepository reviewIterationRepository;
+    private final ReviewJobRepository reviewJobRepository;
+    private final GitHubAppService gitHubAppService;
+    private final Executor virtualThreadExecutor;
+
+    private final Map<String, Set<Handle>> byPullRequest = new ConcurrentHashMap<>();
+    private volatile boolean abandoning;
+
+    /**
+     * One running review. Work started for the review is registered with
+     * {@link #track} so it can be cancelled.
+     */
+    public final class Handle implements AutoCloseable {
+        private final String owner;
+        private final String repo;
+        private final int pullNumber;
+        private final String key;
+        private final String pullRequestId;
+        private Instant since = Instant.now();
+        private final List<CompletableFuture<?>> tracked = new ArrayList<>();
+        private String sha;
+        private boolean cancelled;
+        private boolean superseded;
+        private long nextHeadCheck;
+        private boolean headChecked;
+
+        private Handle(String owner, String repo, int pullNumber) {
+            this.owner = owner;
+            this.repo = repo;
+            this.pullNumber = pullNumber;
+            this.key = key(owner, repo, pullNumber);
+            this.pullRequestId = String.valueOf(pullNumber);
+        }
+
+        /**
+         * Records the SHA of the review and the pull request's current head.
+         * A review of another commit than the head is superseded; a review of
+         * the head supersedes the other reviews of the pull request.
+         *
+         * @param currentHead The head on GitHub, or {@code null} if it could not be looked up.
+         */
+        public void headSha(String sha, String currentHead) {
+            if (sha == null) {
+                return;
+            }
+            synchronized (this) {
+                this.sha = sha;
+            }
+            if (currentHead == null) {
+                // Without the head nothing can be told apart, except a commit already known to be superseded
+                if (reviewIterationRepository.existsByPullRequestIdAndCommitShaAndSupersededTrue(pullRequestId,
+                        sha)) {
+                    log.info("Review of {} at {} was already superseded, cancelling.", key, sha);
+                    cancel(true);
+                }
+                return;
+            }
+            if (!sha.equals(currentHead)) {
+                log.info("Review of {} at {} is not of the head {}, cancelling.", key, sha, currentHead);
+                cancel(true);
+                return;
+            }
+            supersede(key, sha);
+        }
+
+        /**
+         * Registers a future of this review; it is cancelled if the review is
+         * superseded.
+         *
+         * @return {@code future}
+         */
+        public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+            boolean cancelNow;
+            synchronized (this) {
+                cancelNow = cancelled;
+                if (!cancelNow) {
+                    tracked.removeIf(CompletableFuture::isDone);
+                    tracked.add(future);
+                }
+            }
+            if (cancelNow) {
+                future.cancel(true);
+            }
+            return future;
+        }
+
+        /**
+         * Stops this review without superseding it, e.g. because another
+         * review of the same commit owns it.
+         */
+        public void stop() {
+            cancel(false);
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Called at stage boundaries; also supersedes the review if a newer
+         * head of its pull request was queued on any node.
+         *
+         * @throws CancellationException if the review was superseded or abandoned
+         */
+        public void throwIfCancelled() {
+            checkHead();
+            boolean wasSuperseded;
+            synchronized (this) {
+                if (!cancelled) {
+                    return;
+                }
+                wasSuperseded = superseded;
+            }
+            throw new CancellationException("Review of " + key + " at " + sha
+                    + (wasSuperseded ? " was superseded" : " was stopped"));
+        }
+
+        @Override
+        public void close() {
+            byPullRequest.computeIfPresent(key, (k, handles) -> {
+                synchronized (handles) {
+                    handles.remove(this);
+                    return handles.isEmpty() ? null : handles;
+                }
+            });
+            // Analyses that finished while the cancellation was under way may have created the iteration since
+            if (isSuperseded()) {
+                markSuperseded(pullRequestId, sha);
+            }
+        }
+
+        private void checkHead() {
+            String checkedSha;
+            Instant checkedSince;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (cancelled || sha == null || headChecked && now - nextHeadCheck < 0) {
+                    return;
+                }
+                headChecked = true;
+                nextHeadCheck = now + HEAD_CHECK_INTERVAL.toNanos();
+                checkedSha = sha;
+                checkedSince = since;
+            }
+            Instant checkedAt = Instant.now();
+            boolean queued;
+            try {
+                queued = reviewJobRepository.existsNewerHead(owner, repo, pullNumber, checkedSha, checkedSince);
+            } catch (RuntimeException e) {
+                log.warn("Could not check for a newer head of {}: {}", key, e.getMessage());
+                return;
+            }
+            if (!queued) {
+                return;
+            }
+            // The job may be for an older push delivered late; only GitHub knows which is the head
+            String head = currentHead(owner, repo, pullNumber);
+            if (head == null) {
+                return;
+            }
+            if (head.equals(checkedSha)) {
+                synchronized (this) {
+                    since = checkedAt;
+                }
+                return;
+            }
+            log.info("{} moved on to {}, superseding the review at {}.", key, head, checkedSha);
+            cancel(true);
+        }
+
+        private synchronized boolean isFor(String commit) {
+            return commit != null && commit.equals(sha);
+        }
+
+        private synchronized boolean isSuperseded() {
+            return superseded;
+        }
+
+        private synchronized boolean supersededBy(String newSha) {
+            return !cancelled && sha != null && !sha.equals(newSha);
+        }
+
+        private void cancel(boolean supersede) {
+            List<CompletableFuture<?>> toCancel;
+            String cancelledSha;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                superseded = supersede;
+                toCancel = List.copyOf(tracked);
+                tracked.clear();
+                cancelledSha = sha;
+            }
+            log.info("{} review of {} at {}: cancelling {} pending calls.", supersede ? "Superseding" : "Abandoning",
+                    key, cancelledSha, toCancel.size());
+            toCancel.forEach(future -> future.cancel(true));
+            if (supersede) {
+                markSuperseded(pullRequestId, cancelledSha);
+            }
+        }
+    }
+
+    /**
+     * Registers a review that is starting. Close the handle when the review is
+     * over.
+     */
+    public Handle begin(String owner, String repo, int pullNumber) {
+        Handle handle = new Handle(owner, repo, pullNumber);
+        byPullRequest.compute(handle.key, (k, handles) -> {
+            Set<Handle> set = handles != null ? handles : new HashSet<>();
+            synchronized (set) {
+                set.add(handle);
+            }
+            return set;
+        });
+        return handle;
+    }
+
+    /**
+     * Supersedes the running reviews of a pull request that are not for
+     * {@code sha}, e.g. when a push is received before its review starts, once
+     * GitHub confirms {@code sha} is the head. The lookup runs in the
+     * background, and only if another commit of the pull request is being
+     * reviewed on this node.
+     *
+     * @return completes once the running reviews were checked
+     */
+    public CompletableFuture<Void> newHead(String owner, String repo, int pullNumber, String sha) {
+        if (sha == null || !isReviewingOtherThan(key(owner, repo, pullNumber), sha)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            String head = currentHead(owner, repo, pullNumber);
+            if (sha.equals(head)) {
+                supersede(key(owner, repo, pullNumber), sha);
+            } else {
+                log.info("Push of {} to {}/{}#{} is not the head {}; running reviews continue.", sha, owner, repo,
+                        pullNumber, head);
+            }
+        }, virtualThreadExecutor);
+    }
+
+    /**
+     * Stops the reviews of a commit running on this node without superseding
+     * them. Used when the node shuts down and the job of that commit is
+     * resumed elsewhere.
+     *
+     * @return the number of reviews stopped
+     */
+    public int abandon(String owner, String repo, int pullNumber, String sha) {
+        abandoning = true;
+        Set<Handle> handles = byPullRequest.getOrDefault(key(owner, repo, pullNumber), Set.of());
+        List<Handle> running;
+        synchronized (handles) {
+            running = handles.stream().filter(handle -> handle.isFor(sha)).toList();
+        }
+        running.forEach(handle -> handle.cancel(false));
+        return running.size();
+    }
+
+    /**
+     * Tells whether {@link #abandon} was called, i.e. the node is shutting
+     * down and a cancelled review may have been stopped for that rather than
+     * superseded.
+     */
+    public boolean isAbandoning() {
+        return abandoning;
+    }
+
+    private boolean isReviewingOtherThan(String key, String sha) {
+        Set<Handle> handles = byPullRequest.getOrDefault(key, Set.of());
+        synchronized (handles) {
+            return handles.stream().anyMatch(other -> other.supersededBy(sha));
+        }
+    }
+
+    private String currentHead(String owner, String repo, int pullNumber) {
+        try {
+            return gitHubAppService.getSha(owner, repo, pullNumber);
+        } catch (Exception e) {
+            log.warn("Could not look up the head of {}/{}#{}: {}", owner, repo, pullNumber, e.getMessage());
+            return null;
+        }
+    }
+
+    private void supersede(String key, String sha) {
+        Set<Handle> handles = byPullRequest.getOrDefault(key, Set.of());
+        List<Handle> older;
+        synchronized (handles) {
+            older = handles.stream().filter(other -> other.supersededBy(sha)).toList();
+        }
+        older.forEach(handle -> handle.cancel(true));
+    }
+
+    private static String key(String owner, String repo, int pullNumber) {
+        return (owner + "/" + repo + "#" + pullNumber).toLowerCase(Locale.ROOT);
+    }
+
+    private void markSuperseded(String pullRequestId, String sha) {
+        if (sha == null) {
+            return;
+        }
+        try {
+            reviewIterationRepository.markSuperseded(pullRequestId, sha);
+        } catch (RuntimeException e) {
+            log.warn("Could not mark iteration {} of PR {} as superseded: {}", sha, pullRequestId, e.getMessage());
+        }
+    }
+}
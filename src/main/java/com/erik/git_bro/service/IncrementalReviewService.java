@@ -0,0 +1,173 @@
+package com.erik.git_bro.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewIteration;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Narrows a review down to what changed since the last reviewed commit of the
+ * pull request.
+ * <p>
+ * The compare API between the last {@link ReviewIteration#getCommitSha()} and
+ * the new head yields only the hunks that are new or modified; those replace
+ * the full PR diff sent to the model. Existing reviews on changed files have
+ * their line numbers carried forward to the new head, so comments on untouched
+ * code keep pointing at the right line. Each review records the commit its
+ * line refers to, so a retried or repeated review of the same head does not
+ * shift the lines a second time.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IncrementalReviewService {
+
+    private final ReviewIterationRepository reviewIterationRepository;
+    private final ReviewRepository reviewRepository;
+    private final GitHubAppService gitHubAppService;
+    private final ParsingService parsingService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.review.incremental:true}")
+    private boolean incrementalEnabled = true;
+
+    /**
+     * Tells whether {@link #narrowToDelta} could change the request, i.e.
+     * whether the pull request was reviewed before. Callers that do not know
+     * the head SHA yet only need to wait for it when this returns true.
+     *
+     * @param owner         The repository owner.
+     * @param repo          The repository name.
+     * @param pullRequestId The pull request identifier.
+     * @return true if incremental reviews are enabled and an earlier iteration
+     *         of this repository's pull request exists.
+     */
+    public boolean hasPreviousIteration(String owner, String repo, String pullRequestId) {
+        return incrementalEnabled && reviewIterationRepository
+                .existsInRepository(ReviewExportService.repositoryPattern(owner + "/" + repo), pullRequestId);
+    }
+
+    /**
+     * Returns the request to analyze: the incremental delta if a previous
+     * iteration exists and can be compared, otherwise the request unchanged.
+     *
+     * @param owner   The repository owner.
+     * @param repo    The repository name.
+     * @param request The analysis request carrying the full PR diff and head SHA.
+     * @return The request whose diff only contains changes since the last
+     *         reviewed commit; its diff is empty if nothing in the PR changed.
+     */
+    @Transactional
+    public AnalysisRequest narrowToDelta(String owner, String repo, AnalysisRequest request) {
+        if (!incrementalEnabled || request.sha() == null) {
+            return request;
+        }
+
+        // PR numbers repeat across repositories
+        String repository = ReviewExportService.repositoryPattern(owner + "/" + repo);
+        Optional<ReviewIteration> lastIteration = reviewIterationRepository
+                .findLastReviewedBefore(repository, request.pullRequestId(), request.sha(), Limit.of(1))
+                .stream()
+                .findFirst();
+        if (lastIteration.isEmpty()) {
+            return request;
+        }
+
+        String baseSha = lastIteration.get().getCommitSha();
+        final List<GitDiff> changedSinceLastReview;
+        try {
+            changedSinceLastReview = gitHubAppService.compareCommits(owner, repo, baseSha, request.sha());
+        } catch (Exception e) {
+            // Force pushes can make the old commit unreachable; fall back to a full review
+            log.warn("Could not compare {}...{} for PR {}, reviewing the full diff: {}", baseSha, request.sha(),
+                    request.pullRequestId(), e.getMessage());
+            return request;
+        }
+
+        // Files that changed on the base branch (e.g. merged from main) are not part of the PR
+        Set<String> prFiles = parsingService.extractFilePathsFromDiff(request.diffContent());
+        Map<String, GitDiff> delta = changedSinceLastReview.stream()
+                .filter(diff -> diff.getPatch() != null && !diff.getPatch().isBlank())
+                .filter(diff -> prFiles.isEmpty() || prFiles.contains(diff.getFilename()))
+                .collect(Collectors.toMap(GitDiff::getFilename, Function.identity(), (a, b) -> a));
+
+        carryForwardLines(repository, request.pullRequestId(), baseSha, request.sha(), delta);
+
+        log.info("Incremental review of PR {}: {} of {} files changed since {}.", request.pullRequestId(),
+                delta.size(), prFiles.size(), baseSha);
+
+        return new AnalysisRequest(
+                request.filename(),
+                toUnifiedDiff(delta.values()),
+                request.pullRequestId(),
+                request.sha(),
+                request.prUrl(),
+                request.author());
+    }
+
+    /**
+     * Moves the stored line numbers of earlier reviews from {@code baseSha} to
+     * the new head. Lines on changed files are shifted through the patch;
+     * reviews whose line was itself modified keep their old number, the new
+     * hunk is re-reviewed anyway. Reviews already at the head are left alone,
+     * as are reviews at any other commit, which this patch does not start
+     * from, and reviews of the same PR number in other repositories. Reviews
+     * stored before lines were tracked count as at the base.
+     */
+    private void carryForwardLines(String repository, String pullRequestId, String baseSha, String headSha,
+            Map<String, GitDiff> delta) {
+        List<Review> moved = new ArrayList<>();
+        for (Review review : reviewRepository.findInRepository(repository, pullRequestId)) {
+            String lineSha = review.getLineSha() != null ? review.getLineSha() : baseSha;
+            if (!lineSha.equals(baseSha)) {
+                continue;
+            }
+            GitDiff diff = delta.get(review.getFileName());
+            if (diff != null && review.getLine() != null) {
+                Integer newLine = parsingService.mapLineThroughPatch(diff.getPatch(), review.getLine());
+                if (newLine != null) {
+                    review.setLine(newLine);
+                }
+            }
+            review.setLineSha(headSha);
+            moved.add(review);
+        }
+        if (!moved.isEmpty()) {
+            reviewRepository.saveAll(moved);
+            eventPublisher.publishEvent(new ReviewHistoryService.IterationsChanged(Set.of(pullRequestId)));
+        }
+    }
+
+    private String toUnifiedDiff(Iterable<GitDiff> diffs) {
+        StringBuilder unified = new StringBuilder();
+        for (GitDiff diff : diffs) {
+            String path = diff.getFilename();
+            unified.append("diff --git a/").append(path).append(" b/").append(path).append("\n")
+                    .append("--- a/").append(path).append("\n")
+                    .append("+++ b/").append(path).append("\n")
+                    .append(diff.getPatch()).append("\n");
+        }
+        return unified.toString();
+    }
+}
@@ -3,7 +3,10 @@ package com.erik.git_bro.service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,6 +60,12 @@ public class ParsingService {
      */
     private final String MALFORMED_JSON = "Malformed JSON";
 
+    /**
+     * Matches a hunk header such as "@@ -12,7 +12,9 @@", capturing the old and
+     * new start lines.
+     */
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,\\d+)? \\+(\\d+)(?:,\\d+)? @@");
+
     /**
      * Filters the provided diff string and extracts only lines that represent
      * actual code changes.
@@ -134,6 +143,55 @@ public class ParsingService {
         return matcher.find() ? matcher.group(1) : "unknown";
     }
 
+    /**
+     * Extracts every file path touched by a unified diff.
+     * <p>
+     * Collects the paths of all "+++ b/<file_path>" header lines in order of
+     * appearance.
+     * 
+     * @param diffContent the full diff content string
+     * @return the file paths in the diff, empty if none are found
+     */
+    public Set<String> extractFilePathsFromDiff(String diffContent) {
+        Set<String> paths = new LinkedHashSet<>();
+        Matcher matcher = Pattern.compile("^\\+\\+\\+ b/(.+)$", Pattern.MULTILINE).matcher(diffContent);
+        while (matcher.find()) {
+            paths.add(matcher.group(1).trim());
+        }
+        return paths;
+    }
+
+    /**
+     * Splits a unified diff into one diff per file.
+     * <p>
+     * Sections start at "diff --git" headers and are keyed by their "+++ b/"
+     * path, in order of appearance. Deleted and binary files have nothing to
+     * comment on and are left out. A diff without any "diff --git" header is
+     * returned as a single section.
+     *
+     * @param diffContent the full diff content string
+     * @return the diff of each file keyed by its path
+     */
+    public Map<String, String> splitDiffByFile(String diffContent) {
+        Map<String, String> files = new LinkedHashMap<>();
+        if (diffContent == null || diffContent.isBlank()) {
+            return files;
+        }
+        if (!diffContent.contains("diff --git ")) {
+            files.put(extractFilePathFromDiff(diffContent), diffContent);
+            return files;
+        }
+        Pattern newPath = Pattern.compile("^\\+\\+\\+ b/(.+)$", Pattern.MULTILINE);
+        for (String section : diffContent.split("(?m)^(?=diff --git )")) {
+            // Skips a preamble before the first header as well as deleted and binary files
+            Matcher matcher = newPath.matcher(section);
+            if (section.startsWith("diff --git ") && matcher.find()) {
+                files.merge(matcher.group(1).trim(), section, String::concat);
+            }
+        }
+        return files;
+    }
+
     /**
      * Splits a diff string into smaller chunks, each containing up to
      * {@code maxLinesPerChunk} lines.
@@ -353,6 +411,64 @@ public class ParsingService {
         return insideHunk ? hunkBuilder.toString().trim() : null;
     }
 
+    /**
+     * Maps a line number of the old version of a file to its number in the new
+     * version, following the hunks of a patch between the two versions.
+     * <p>
+     * Lines outside every hunk are shifted by the lines added and removed
+     * before them. Lines inside a hunk keep their mapping only if they are
+     * context lines; removed (or modified) lines have no counterpart.
+     *
+     * @param patch   the patch from the old to the new version of the file
+     * @param oldLine the line number in the old version
+     * @return the line number in the new version, or {@code null} if the line
+     *         was removed or modified by the patch
+     */
+    public Integer mapLineThroughPatch(String patch, int oldLine) {
+        int oldCursor = 0;
+        int newCursor = 0;
+        int offset = 0;
+        boolean insideHunk = false;
+
+        for (String line : patch.split("\n")) {
+            if (line.startsWith("@@")) {
+                Matcher matcher = HUNK_HEADER.matcher(line);
+                if (!matcher.find()) {
+                    continue;
+                }
+                int oldStart = Integer.parseInt(matcher.group(1));
+                if (oldLine < oldStart) {
+                    // Target sits between the previous hunk and this one
+                    return oldLine + offset;
+                }
+                oldCursor = oldStart;
+                newCursor = Integer.parseInt(matcher.group(2));
+                insideHunk = true;
+            } else if (insideHunk && !line.isEmpty()) {
+                switch (line.charAt(0)) {
+                    case ' ' -> {
+                        if (oldCursor == oldLine) {
+                            return newCursor;
+                        }
+                        oldCursor++;
+                        newCursor++;
+                    }
+                    case '-' -> {
+                        if (oldCursor == oldLine) {
+                            return null;
+                        }
+                        oldCursor++;
+                    }
+                    case '+' -> newCursor++;
+                    default -> {
+                    }
+                }
+                offset = newCursor - oldCursor;
+            }
+        }
+        return oldLine + offset;
+    }
+
     public Category getIssueCategory(String feedback) {
         if (feedback == null || feedback.isBlank()) {
             return Category.NO_FEEDBACK;
@@ -0,0 +1,180 @@
+package com.erik.git_bro.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.InlineReviewResponse;
+import com.erik.git_bro.dto.Issue;
+import com.erik.git_bro.model.ReviewCheckpoint;
+import com.erik.git_bro.model.ReviewCheckpointStage;
+import com.erik.git_bro.repository.ReviewCheckpointRepository;
+import com.erik.git_bro.util.DbBulkhead;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records how far the review of each file of a commit got, so a review that
+ * was interrupted resumes from its last completed stage.
+ * <p>
+ * A file whose model answer was checkpointed is not sent to the model again;
+ * a file whose comments were posted is not posted again. Checkpoints are best
+ * effort: failing to read or write one only costs the work it would have
+ * saved, never the review.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewCheckpointService {
+
+    /**
+     * What a checkpoint lets a review skip. {@code posted} is {@code null}
+     * while the comments are still to be posted.
+     */
+    public record Resumed(InlineReviewResponse response, List<Issue> posted) {
+    }
+
+    private static final TypeReference<List<Issue>> ISSUES = new TypeReference<>() {
+    };
+
+    private final ReviewCheckpointRepository reviewCheckpointRepository;
+    private final ObjectMapper objectMapper;
+    private final DbBulkhead dbBulkhead;
+    private final ReviewQueueProperties properties;
+
+    /**
+     * Looks up the checkpoint of a file. Checkpoints taken for a different
+     * diff of the file are ignored.
+     */
+    public Optional<Resumed> find(String owner, String repo, int pullNumber, String sha, AnalysisRequest file) {
+        try {
+            return dbBulkhead.call(() -> find(owner, repo, pullNumber, sha, file.filename()))
+                    .filter(checkpoint -> checkpoint.getDiffSha256().equals(diffSha256(file)))
+                    .map(this::decode);
+        } catch (RuntimeException e) {
+            log.warn("Could not read the checkpoint of {} in {}/{}#{}: {}", file.filename(), owner, repo,
+                    pullNumber, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the model answer for a file.
+     */
+    public void analyzed(String owner, String repo, int pullNumber, String sha, AnalysisRequest file,
+            InlineReviewResponse response) {
+        save(owner, repo, pullNumber, sha, file, checkpoint -> {
+            checkpoint.setDiffSha256(diffSha256(file));
+            checkpoint.setStage(ReviewCheckpointStage.ANALYZED);
+            checkpoint.setResponse(objectMapper.writeValueAsString(response));
+            checkpoint.setPostedIssues(null);
+        });
+    }
+
+    /**
+     * Records that the comments of a file were posted.
+     */
+    public void posted(String owner, String repo, int pullNumber, String sha, AnalysisRequest file,
+            InlineReviewResponse response, List<Issue> posted) {
+        save(owner, repo, pullNumber, sha, file, checkpoint -> {
+            checkpoint.setDiffSha256(diffSha256(file));
+            checkpoint.setStage(ReviewCheckpointStage.POSTED);
+            checkpoint.setResponse(objectMapper.writeValueAsString(response));
+            checkpoint.setPostedIssues(objectMapper.writeValueAsString(posted));
+        });
+    }
+
+    /**
+     * Drops the checkpoints of a review that is finished.
+     */
+    public void clear(String owner, String repo, int pullNumber, String sha) {
+        try {
+            int deleted = reviewCheckpointRepository.deleteReview(owner, repo, pullNumber, sha);
+            log.debug("Dropped {} checkpoints of {}/{}#{} at {}.", deleted, owner, repo, pullNumber, sha);
+        } catch (RuntimeException e) {
+            log.warn("Could not drop the checkpoints of {}/{}#{} at {}: {}", owner, repo, pullNumber, sha,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Drops checkpoints of reviews that were not finished within
+     * {@code app.review-queue.checkpoint-ttl}, e.g. dead-lettered jobs.
+     */
+    @Scheduled(fixedDelayString = "${app.review-queue.checkpoint-purge-interval:1h}")
+    public void purgeStale() {
+        try {
+            int deleted = reviewCheckpointRepository.deleteStale(Instant.now().minus(properties.getCheckpointTtl()));
+            if (deleted > 0) {
+                log.info("Dropped {} stale review checkpoints.", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not drop stale review checkpoints: {}", e.getMessage());
+        }
+    }
+
+    private interface Update {
+        void apply(ReviewCheckpoint checkpoint) throws JsonProcessingException;
+    }
+
+    private void save(String owner, String repo, int pullNumber, String sha, AnalysisRequest file, Update update) {
+        try {
+            dbBulkhead.call(() -> {
+                Instant now = Instant.now();
+                ReviewCheckpoint checkpoint = find(owner, repo, pullNumber, sha, file.filename())
+                        .orElseGet(() -> ReviewCheckpoint.builder()
+                                .owner(owner)
+                                .repo(repo)
+                                .pullNumber(pullNumber)
+                                .headSha(sha)
+                                .fileName(file.filename())
+                                .createdAt(now)
+                                .build());
+                try {
+                    update.apply(checkpoint);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Could not serialize the review of " + file.filename(), e);
+                }
+                checkpoint.setUpdatedAt(now);
+                return reviewCheckpointRepository.save(checkpoint);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not checkpoint {} in {}/{}#{}: {}", file.filename(), owner, repo, pullNumber,
+                    e.getMessage());
+        }
+    }
+
+    private Optional<ReviewCheckpoint> find(String owner, String repo, int pullNumber, String sha, String file) {
+        return reviewCheckpointRepository.findByOwnerAndRepoAndPullNumberAndHeadShaAndFileName(owner, repo,
+                pullNumber, sha, file);
+    }
+
+    private Resumed decode(ReviewCheckpoint checkpoint) {
+        try {
+            InlineReviewResponse response = objectMapper.readValue(checkpoint.getResponse(),
+                    InlineReviewResponse.class);
+            List<Issue> posted = checkpoint.getStage() == ReviewCheckpointStage.POSTED
+                    ? objectMapper.readValue(checkpoint.getPostedIssues(), ISSUES)
+                    : null;
+            return new Resumed(response, posted);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable checkpoint " + checkpoint.getId(), e);
+        }
+    }
+
+    private static String diffSha256(AnalysisRequest file) {
+        String diff = file.diffContent() == null ? "" : file.diffContent();
+        return DiffBlobService.sha256(diff.getBytes(StandardCharsets.UTF_8));
+    }
+}
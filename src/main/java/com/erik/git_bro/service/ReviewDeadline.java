@@ -0,0 +1,93 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The end-to-end time budget of one review.
+ * <p>
+ * Created when a review starts and handed to every stage after it. A stage
+ * waits at most for the budget that is left ({@link #bound}), so the client
+ * timeouts no longer add up: a review ends at its deadline however many
+ * lookups, model calls and retries it went through.
+ * </p>
+ */
+public final class ReviewDeadline {
+
+    /**
+     * Raised when a stage is still running at the deadline.
+     */
+    public static class Exceeded extends TimeoutException {
+        private final String stage;
+
+        Exceeded(String stage, Duration budget) {
+            super("Review deadline of " + budget + " reached during " + stage);
+            this.stage = stage;
+        }
+
+        public String stage() {
+            return stage;
+        }
+    }
+
+    private final Duration budget;
+    private final long deadlineNanos;
+
+    private ReviewDeadline(Duration budget) {
+        this.budget = budget;
+        this.deadlineNanos = System.nanoTime() + budget.toNanos();
+    }
+
+    /**
+     * Starts the clock for a review.
+     */
+    public static ReviewDeadline in(Duration budget) {
+        return new ReviewDeadline(budget);
+    }
+
+    public Duration budget() {
+        return budget;
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public Exceeded exceeded(String stage) {
+        return new Exceeded(stage, budget);
+    }
+
+    /**
+     * Gives {@code future} the remaining budget. If it is not done by the
+     * deadline, the returned future fails with {@link Exceeded} and
+     * {@code future} is cancelled, which cancels the HTTP call behind it.
+     *
+     * @param future The stage to wait for.
+     * @param stage  What the stage does, for the error message.
+     * @return a future completing like {@code future}, or failing at the deadline
+     */
+    public <T> CompletableFuture<T> bound(CompletableFuture<T> future, String stage) {
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> {
+            if (failure == null) {
+                bounded.complete(value);
+            } else {
+                // Cancelled by the timer below: the stage is only done once the call behind it is cancelled
+                bounded.completeExceptionally(future.isCancelled() && isExpired() ? exceeded(stage) : failure);
+            }
+        });
+        if (!bounded.isDone()) {
+            CompletableFuture.delayedExecutor(remaining().toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                future.cancel(true);
+                bounded.completeExceptionally(exceeded(stage));
+            });
+        }
+        return bounded;
+    }
+}
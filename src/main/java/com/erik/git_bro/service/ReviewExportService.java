@@ -0,0 +1,139 @@
+package com.erik.git_bro.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.erik.git_bro.dto.ExportFilter;
+import com.erik.git_bro.dto.IterationExportRow;
+import com.erik.git_bro.dto.ReviewExportRow;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.util.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exports review history as NDJSON.
+ * <p>
+ * Rows are read in keyset pages ordered by timestamp and id. Each page is a
+ * short read-only transaction that streams projections with a JDBC fetch size
+ * and writes them straight to the output, so memory use does not depend on the
+ * size of the export and no connection is held while the client reads. The
+ * last row of a page is the cursor of the next one; clients can resume an
+ * interrupted export the same way by passing the timestamp and id of the last
+ * line they received.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReviewExportService {
+
+    // Lower bound for the keyset when an export starts at `from`: no generated id sorts before it
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private final ReviewRepository reviewRepository;
+    private final ReviewIterationRepository reviewIterationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.export.page-size:5000}")
+    private int pageSize = 5000;
+
+    public ReviewExportService(ReviewRepository reviewRepository,
+            ReviewIterationRepository reviewIterationRepository, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper) {
+        this.reviewRepository = reviewRepository;
+        this.reviewIterationRepository = reviewIterationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes every review matching the filter to {@code out}, one JSON object
+     * per line, oldest first.
+     *
+     * @return the number of rows written
+     */
+    public long exportReviews(ExportFilter filter, OutputStream out) throws IOException {
+        return export(filter, out, cursor -> reviewRepository.streamForExport(cursor.time(), cursor.id(),
+                filter.to(), repositoryPattern(filter.repository()), filter.pullRequestId(), Limit.of(pageSize)),
+                row -> new Cursor(row.createdAt(), row.id()));
+    }
+
+    /**
+     * Writes every review iteration matching the filter to {@code out}, one
+     * JSON object per line, oldest first.
+     *
+     * @return the number of rows written
+     */
+    public long exportIterations(ExportFilter filter, OutputStream out) throws IOException {
+        return export(filter, out, cursor -> reviewIterationRepository.streamForExport(cursor.time(), cursor.id(),
+                filter.to(), repositoryPattern(filter.repository()), filter.pullRequestId(), Limit.of(pageSize)),
+                row -> new Cursor(row.pushAt(), row.id()));
+    }
+
+    private record Cursor(Instant time, UUID id) {
+    }
+
+    private <T> long export(ExportFilter filter, OutputStream out, Function<Cursor, Stream<T>> page,
+            Function<T, Cursor> cursorOf) throws IOException {
+        Cursor start = filter.afterTime() != null
+                ? new Cursor(filter.afterTime(), filter.afterId() != null ? filter.afterId() : MIN_ID)
+                : new Cursor(filter.from(), MIN_ID);
+        Cursor[] cursor = { start };
+        long total = 0;
+        try (NdjsonWriter writer = new NdjsonWriter(out, objectMapper)) {
+            while (true) {
+                long written = transactionTemplate.execute(status -> {
+                    long count = 0;
+                    try (Stream<T> rows = page.apply(cursor[0])) {
+                        for (T row : (Iterable<T>) rows::iterator) {
+                            writer.write(row);
+                            cursor[0] = cursorOf.apply(row);
+                            count++;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return count;
+                });
+                total += written;
+                writer.flush();
+                if (written < pageSize) {
+                    break;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("Exported {} rows.", total);
+        return total;
+    }
+
+    /**
+     * Turns {@code owner/repo} into a LIKE pattern matching both web and API
+     * pull request URLs of that repository.
+     */
+    static String repositoryPattern(String repository) {
+        if (repository == null || repository.isBlank()) {
+            return null;
+        }
+        String escaped = repository.trim().toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%/" + escaped + "/pull%";
+    }
+}
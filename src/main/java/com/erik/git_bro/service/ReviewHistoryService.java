@@ -0,0 +1,120 @@
+package com.erik.git_bro.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.erik.git_bro.dto.ReviewIterationDTO;
+import com.erik.git_bro.dto.ReviewSummary;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the review history of a pull request: its iterations, oldest first,
+ * each with the reviews made on it.
+ * <p>
+ * The history is read with two set-based queries that project straight into
+ * DTOs, one for the iterations and one for all their reviews, so no entity or
+ * lazy collection is loaded. Results are cached for a short time and evicted
+ * once a transaction that wrote iterations or reviews of the PR commits. Each
+ * eviction bumps the PR's version; a read only caches its result if the
+ * version did not change while it ran, so a read that started before the
+ * commit cannot put the old history back.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReviewHistoryService {
+
+    /**
+     * Published when iterations or reviews of the given pull requests were
+     * written.
+     */
+    public record IterationsChanged(Collection<String> pullRequestIds) {
+    }
+
+    private record CachedHistory(List<ReviewIterationDTO> iterations, Instant loadedAt) {
+    }
+
+    private final ReviewIterationRepository reviewIterationRepository;
+    private final ReviewRepository reviewRepository;
+    private final Clock clock;
+    private final Map<String, CachedHistory> cache = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @Value("${app.review.history-cache-ttl:30s}")
+    private Duration ttl = Duration.ofSeconds(30);
+
+    @Autowired
+    public ReviewHistoryService(ReviewIterationRepository reviewIterationRepository,
+            ReviewRepository reviewRepository) {
+        this(reviewIterationRepository, reviewRepository, Clock.systemUTC());
+    }
+
+    ReviewHistoryService(ReviewIterationRepository reviewIterationRepository, ReviewRepository reviewRepository,
+            Clock clock) {
+        this.reviewIterationRepository = reviewIterationRepository;
+        this.reviewRepository = reviewRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the iterations of a pull request with their reviews.
+     *
+     * @param pullRequestId The pull request.
+     * @return the iterations, oldest first; empty if the PR was never reviewed
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewIterationDTO> getHistory(String pullRequestId) {
+        Instant now = clock.instant();
+        CachedHistory cached = cache.get(pullRequestId);
+        if (cached != null && cached.loadedAt().plus(ttl).isAfter(now)) {
+            return cached.iterations();
+        }
+        cache.values().removeIf(entry -> !entry.loadedAt().plus(ttl).isAfter(now));
+
+        long version = versions.getOrDefault(pullRequestId, 0L);
+        List<ReviewIterationDTO> iterations = reviewIterationRepository.findHistoryByPullRequestId(pullRequestId);
+        if (!iterations.isEmpty()) {
+            Map<UUID, ReviewIterationDTO> byId = iterations.stream()
+                    .collect(Collectors.toMap(ReviewIterationDTO::getId, Function.identity()));
+            for (ReviewSummary review : reviewRepository.findSummariesByPullRequestId(pullRequestId)) {
+                ReviewIterationDTO iteration = byId.get(review.iterationId());
+                if (iteration != null) {
+                    iteration.getReviews().add(review);
+                }
+            }
+        }
+        List<ReviewIterationDTO> history = List.copyOf(iterations);
+        // Under the map's lock for the key, so an eviction cannot slip in between the check and the put
+        cache.compute(pullRequestId, (key, current) -> versions.getOrDefault(key, 0L) == version
+                ? new CachedHistory(history, now)
+                : current);
+        return history;
+    }
+
+    // After commit, so a read started from now on sees the write; reads already running are not cached
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onIterationsChanged(IterationsChanged event) {
+        event.pullRequestIds().forEach(pullRequestId -> {
+            versions.merge(pullRequestId, 1L, Long::sum);
+            cache.remove(pullRequestId);
+        });
+        log.debug("Evicted review history of {}.", event.pullRequestIds());
+    }
+}
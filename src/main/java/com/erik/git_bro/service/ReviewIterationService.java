@@ -1,13 +1,23 @@
 package com.erik.git_bro.service;
 
+import com.erik.git_bro.model.Review;
 import com.erik.git_bro.model.ReviewIteration;
 import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -15,31 +25,89 @@ import java.time.Instant;
 public class ReviewIterationService {
 
     private final ReviewIterationRepository reviewIterationRepository;
+    private final ReviewRepository reviewRepository;
+    private final ReviewRollupService reviewRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Finds an existing ReviewIteration for the given commit SHA or creates a new one if not found.
-     * This method is transactional to ensure atomic read-and-write operations.
+     * Creation is an {@code INSERT ... ON CONFLICT DO NOTHING} followed by a read, so concurrent
+     * callers for the same push all end up with the same row.
      *
      * @param commitSha The commit SHA to search for.
+     * @param prUrl     The URL of the pull request, recorded on a new iteration.
      * @return A managed ReviewIteration entity.
      */
     @Transactional
-    public ReviewIteration findOrCreateIteration(String pullRequestId, String commitSha) {
-        return reviewIterationRepository
-            .findByPullRequestIdAndCommitSha(pullRequestId, commitSha)
-            .orElseGet(() -> {
-                log.info("No iteration found for PR: {} and commit SHA: {}. Creating a new one.", pullRequestId, commitSha);
-                ReviewIteration newIteration = ReviewIteration.builder()
-                    .pullRequestId(pullRequestId)
-                    .commitSha(commitSha)
-                    .pushAt(Instant.now())
-                    .build();
-                return reviewIterationRepository.save(newIteration);
-            });
+    public ReviewIteration findOrCreateIteration(String pullRequestId, String commitSha, String prUrl) {
+        Optional<ReviewIteration> existing = reviewIterationRepository
+            .findByPullRequestIdAndCommitSha(pullRequestId, commitSha);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        int inserted = reviewIterationRepository.insertIfAbsent(UUID.randomUUID(), pullRequestId, prUrl, commitSha,
+            Instant.now());
+        if (inserted > 0) {
+            log.info("No iteration found for PR: {} and commit SHA: {}. Created a new one.", pullRequestId, commitSha);
+            eventPublisher.publishEvent(new ReviewHistoryService.IterationsChanged(Set.of(pullRequestId)));
+        }
+        return reviewIterationRepository.findByPullRequestIdAndCommitSha(pullRequestId, commitSha)
+            .orElseThrow(() -> new IllegalStateException(
+                "Iteration for PR " + pullRequestId + " and commit " + commitSha + " vanished after insert"));
     }
 
     @Transactional
     public void save(ReviewIteration iteration) {
         this.reviewIterationRepository.save(iteration);
+        this.eventPublisher.publishEvent(new ReviewHistoryService.IterationsChanged(Set.of(iteration.getPullRequestId())));
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves new reviews together with the severity of their iterations in one
+     * transaction.
+     * <p>
+     * The iterations are not merged: each carries the maximum severity and the
+     * model of the analysis that produced the reviews, and is updated with a
+     * single {@code GREATEST} statement, so its review collection is never
+     * loaded. The reviews are inserted with {@code saveAll}, so Hibernate can
+     * send them as JDBC batches instead of one statement per row. The analytics
+     * rollups are updated in the same transaction; cached review histories of
+     * the PRs are evicted once it commits.
+     * </p>
+     *
+     * @param iterations The iterations the reviews belong to.
+     * @param reviews    The new reviews, each referencing its iteration.
+     */
+    @Transactional
+    public void saveWithReviews(List<ReviewIteration> iterations, List<Review> reviews) {
+        // Sorted so concurrent transactions lock iteration rows in the same order
+        Map<UUID, ReviewIteration> byId = new TreeMap<>();
+        for (ReviewIteration iteration : iterations) {
+            byId.merge(iteration.getId(), iteration, ReviewIterationService::moreSevere);
+        }
+        byId.forEach((id, iteration) -> this.reviewIterationRepository.raiseSeverity(id,
+            iteration.getDerivedSeverityScore(), iteration.getAiModel()));
+
+        for (Review review : reviews) {
+            ReviewIteration iteration = review.getReviewIteration();
+            if (iteration != null) {
+                review.setReviewIteration(this.reviewIterationRepository.getReferenceById(iteration.getId()));
+            }
+        }
+        this.reviewRepository.saveAll(reviews);
+        this.reviewRollupService.record(reviews);
+        Set<String> pullRequestIds = iterations.stream().map(ReviewIteration::getPullRequestId)
+            .collect(Collectors.toSet());
+        this.eventPublisher.publishEvent(new ReviewHistoryService.IterationsChanged(pullRequestIds));
+    }
+
+    private static ReviewIteration moreSevere(ReviewIteration a, ReviewIteration b) {
+        if (a.getDerivedSeverityScore() == null) {
+            return b;
+        }
+        if (b.getDerivedSeverityScore() == null) {
+            return a;
+        }
+        return b.getDerivedSeverityScore().compareTo(a.getDerivedSeverityScore()) > 0 ? b : a;
+    }
+}
@@ -0,0 +1,210 @@
+package com.erik.git_bro.service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.dto.ReviewJobRequest;
+import com.erik.git_bro.model.ReviewJob;
+import com.erik.git_bro.model.ReviewJobStatus;
+import com.erik.git_bro.repository.ReviewJobRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable, database-backed queue of review jobs shared by all nodes.
+ * <p>
+ * Jobs are claimed with {@code SELECT ... FOR UPDATE SKIP LOCKED}, leased to
+ * the claiming node, retried with exponential backoff on failure and
+ * dead-lettered after {@code app.review-queue.max-attempts}.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReviewJobQueue {
+
+    private final ReviewJobRepository reviewJobRepository;
+    private final ReviewQueueProperties properties;
+    private final String nodeId;
+
+    public ReviewJobQueue(ReviewJobRepository reviewJobRepository, ReviewQueueProperties properties) {
+        this.reviewJobRepository = reviewJobRepository;
+        this.properties = properties;
+        this.nodeId = properties.getNodeId() != null && !properties.getNodeId().isBlank()
+                ? properties.getNodeId()
+                : defaultNodeId();
+    }
+
+    /**
+     * Persists a new pending job.
+     *
+     * @param request the job to queue
+     * @return false if a job for the same webhook delivery already exists
+     */
+    @Transactional
+    public boolean enqueue(ReviewJobRequest request) {
+        if (request.deliveryId() != null && reviewJobRepository.existsByDeliveryId(request.deliveryId())) {
+            return false;
+        }
+        Instant now = Instant.now();
+        ReviewJob job = ReviewJob.builder()
+                .deliveryId(request.deliveryId())
+                .installationId(request.installationId())
+                .owner(request.owner())
+                .repo(request.repo())
+                .pullNumber(request.pullNumber())
+                .headSha(request.headSha())
+                .prUrl(request.prUrl())
+                .author(request.author())
+                .modelName(request.modelName())
+                .status(ReviewJobStatus.PENDING)
+                .attempts(0)
+                .availableAt(now)
+                .createdAt(now)
+                .build();
+        try {
+            reviewJobRepository.saveAndFlush(job);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Another node stored the same delivery between the check and the insert
+            log.info("Delivery {} was queued concurrently, skipping.", request.deliveryId());
+            return false;
+        }
+    }
+
+    /**
+     * Claims the oldest available job and leases it to this node.
+     *
+     * @return the claimed job, or empty if nothing is ready to run
+     */
+    @Transactional
+    public Optional<ReviewJob> claimNext() {
+        Instant now = Instant.now();
+        return reviewJobRepository.findClaimable(now, PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .map(job -> {
+                    job.setStatus(ReviewJobStatus.RUNNING);
+                    job.setLockedBy(nodeId);
+                    job.setLeaseExpiresAt(now.plus(properties.getLeaseDuration()));
+                    job.setAttempts(job.getAttempts() + 1);
+                    job.setUpdatedAt(now);
+                    return job;
+                });
+    }
+
+    /**
+     * Marks a job as finished, unless its lease lapsed and another node may
+     * have reclaimed it.
+     */
+    @Transactional
+    public void complete(UUID jobId) {
+        if (reviewJobRepository.complete(jobId, nodeId, Instant.now()) == 0) {
+            log.warn("Review job {} is no longer leased to {}, not marking it completed.", jobId, nodeId);
+        }
+    }
+
+    /**
+     * Records a failed attempt. The job is scheduled for a retry with
+     * exponential backoff, or dead-lettered once it ran out of attempts. A
+     * job whose lease lapsed is left to the node that reclaimed it.
+     */
+    @Transactional
+    public void fail(UUID jobId, Throwable error) {
+        reviewJobRepository.findById(jobId).ifPresent(job -> {
+            Instant now = Instant.now();
+            boolean dead = job.getAttempts() >= properties.getMaxAttempts();
+            Duration delay = backoff(job.getAttempts());
+            int updated = reviewJobRepository.fail(jobId, nodeId, job.getAttempts(),
+                    dead ? ReviewJobStatus.DEAD : ReviewJobStatus.PENDING,
+                    dead ? job.getAvailableAt() : now.plus(delay), error.getMessage(), now);
+            if (updated == 0) {
+                log.warn("Review job {} is no longer leased to {}, not recording its failure.", jobId, nodeId);
+            } else if (dead) {
+                log.error("Review job {} for {}/{}#{} dead-lettered after {} attempts.", jobId, job.getOwner(),
+                        job.getRepo(), job.getPullNumber(), job.getAttempts());
+            } else {
+                log.warn("Review job {} failed (attempt {}), retrying in {}.", jobId, job.getAttempts(), delay);
+            }
+        });
+    }
+
+    /**
+     * Renews the leases of jobs this node is still working on.
+     */
+    @Transactional
+    public int renewLeases(Collection<UUID> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        return reviewJobRepository.renewLeases(jobIds, nodeId, now.plus(properties.getLeaseDuration()), now);
+    }
+
+    /**
+     * Puts jobs this node is abandoning on shutdown back into the queue, ready
+     * to be claimed right away. The interrupted attempt does not count
+     * towards {@code max-attempts}.
+     */
+    @Transactional
+    public int requeue(Collection<UUID> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        return reviewJobRepository.requeue(jobIds, nodeId, Instant.now());
+    }
+
+    /**
+     * Puts jobs whose lease lapsed back into the queue.
+     */
+    @Transactional
+    public int releaseExpiredLeases() {
+        return reviewJobRepository.releaseExpiredLeases(Instant.now());
+    }
+
+    /**
+     * Builds the retry delay for the given attempt: base * 2^(attempt - 1), capped.
+     */
+    Duration backoff(int attempt) {
+        Duration delay = properties.getBackoffBase().multipliedBy(1L << Math.min(Math.max(attempt - 1, 0), 20));
+        return delay.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : delay;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Converts a stored job back into the request the pipeline runs.
+     */
+    public ReviewJobRequest toRequest(ReviewJob job) {
+        return new ReviewJobRequest(
+                job.getDeliveryId(),
+                job.getInstallationId(),
+                job.getOwner(),
+                job.getRepo(),
+                job.getPullNumber(),
+                job.getHeadSha(),
+                job.getPrUrl(),
+                job.getAuthor(),
+                job.getModelName());
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
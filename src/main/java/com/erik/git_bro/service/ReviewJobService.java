@@ -0,0 +1,119 @@
+package com.erik.git_bro.service;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.dto.ReviewJobRequest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs webhook-triggered reviews in the background so the webhook can be
+ * acknowledged immediately.
+ * <p>
+ * Jobs are persisted in the {@link ReviewJobQueue} and executed by the
+ * {@link ReviewJobWorker}s of any node. The diff is fetched server-side, the
+ * files are reviewed in parallel and the review summary is posted as a PR comment, so no GitHub Action has to stay
+ * connected while the model works.
+ * </p>
+ * <p>
+ * A job only runs on the node that owns its PR commit through
+ * {@link ReviewOwnership}, so duplicate deliveries picked up by different
+ * nodes do not review the same commit twice. The lease is taken before the
+ * review starts and handed to the pipeline, so it is still held while the
+ * summary is posted.
+ * </p>
+ * <p>
+ * A rerun of a job, after a failure or a shutdown, resumes from the
+ * checkpoints of its files; they are dropped once the summary is posted.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewJobService {
+
+    private final ReviewPipelineService reviewPipelineService;
+    private final ReviewJobQueue reviewJobQueue;
+    private final ReviewOwnership reviewOwnership;
+    private final InFlightReviews inFlightReviews;
+    private final ReviewCheckpointService reviewCheckpointService;
+
+    /**
+     * Queues a review job durably and returns without waiting for it.
+     *
+     * @param job the review job to run
+     * @return false if the webhook delivery was already queued
+     */
+    public boolean enqueue(ReviewJobRequest job) {
+        boolean queued = reviewJobQueue.enqueue(job);
+        if (queued) {
+            // Reviews of older pushes stop now rather than when this job gets a worker
+            inFlightReviews.newHead(job.owner(), job.repo(), job.pullNumber(), job.headSha());
+            log.info("Queued review for {}/{}#{} at {} (delivery {})", job.owner(), job.repo(), job.pullNumber(),
+                    job.headSha(), job.deliveryId());
+        }
+        return queued;
+    }
+
+    /**
+     * Reviews the whole PR file by file and posts the summary. Does nothing if
+     * another review of the same commit is already running on any node.
+     *
+     * @param job the review job to run
+     */
+    public void process(ReviewJobRequest job) {
+        Optional<ReviewOwnership.Lease> lease = reviewOwnership.tryAcquire(job.owner(), job.repo(), job.pullNumber(),
+                job.headSha());
+        if (lease.isEmpty()) {
+            log.info("Skipping review of {}/{}#{} at {}: already in progress.", job.owner(), job.repo(),
+                    job.pullNumber(), job.headSha());
+            return;
+        }
+        try (ReviewOwnership.Lease owned = lease.get()) {
+            String summary = reviewPipelineService
+                    .reviewPullRequest(job.owner(), job.repo(), job.pullNumber(), job.headSha(), job.prUrl(),
+                            job.author(), job.modelName(), owned)
+                    .join();
+            if (!owned.confirm()) {
+                throw new ReviewOwnership.Lost(owned);
+            }
+            reviewPipelineService.publishSummary(job.owner(), job.repo(), job.pullNumber(), summary);
+            reviewCheckpointService.clear(job.owner(), job.repo(), job.pullNumber(), job.headSha());
+            log.info("✅ Finished review for {}/{}#{} at {}", job.owner(), job.repo(), job.pullNumber(),
+                    job.headSha());
+        } catch (RuntimeException e) {
+            if (isLost(e) && !lease.get().isHeld()) {
+                // Not a failure either: the node that took the commit over posts the review. Losing
+                // the database instead fails the attempt, so the job is retried.
+                log.warn("Stopped the review of {}/{}#{} at {}: another node took it over.", job.owner(),
+                        job.repo(), job.pullNumber(), job.headSha());
+                return;
+            }
+            // A review stopped for shutdown fails the attempt, and the worker requeues the job
+            if (isSuperseded(e) && !inFlightReviews.isAbandoning()) {
+                // Not a failure: the job for the newer push reviews the PR
+                log.info("Review of {}/{}#{} at {} was superseded by a newer push.", job.owner(), job.repo(),
+                        job.pullNumber(), job.headSha());
+                return;
+            }
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Review job failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isLost(RuntimeException e) {
+        return e instanceof ReviewOwnership.Lost
+                || e instanceof CompletionException && e.getCause() instanceof ReviewOwnership.Lost;
+    }
+
+    private static boolean isSuperseded(RuntimeException e) {
+        return e instanceof CancellationException
+                || e instanceof CompletionException && e.getCause() instanceof CancellationException;
+    }
+}
@@ -0,0 +1,242 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.model.ReviewJob;
+import com.erik.git_bro.util.ReviewTracer;
+
+import io.micrometer.observation.Observation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs queued review jobs on this node.
+ * <p>
+ * Each worker is a virtual thread that claims one job at a time from the
+ * {@link ReviewJobQueue}. A heartbeat renews the leases of in-flight jobs and
+ * releases jobs abandoned by nodes that stopped heartbeating. Throughput scales
+ * with the number of nodes because claims never block on each other.
+ * </p>
+ * <p>
+ * Stopping drains the node: workers stop claiming, and jobs in flight get
+ * {@code app.review-queue.shutdown-grace} to finish. Reviews still running
+ * after that are abandoned through {@link InFlightReviews} and their jobs
+ * requeued right away, without counting the attempt, so another node resumes
+ * them from their checkpoints instead of waiting for the lease to lapse.
+ * </p>
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewJobWorker implements SmartLifecycle {
+
+    // How long abandoned reviews get to unwind before their jobs are left to lease expiry
+    private static final Duration ABANDON_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ReviewJobQueue reviewJobQueue;
+    private final ReviewJobService reviewJobService;
+    private final ReviewQueueProperties properties;
+    private final InFlightReviews inFlightReviews;
+    private final ReviewTracer reviewTracer;
+
+    private final Map<UUID, ReviewJob> inFlightJobs = new ConcurrentHashMap<>();
+    private final Set<UUID> abandonedJobs = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private ScheduledExecutorService heartbeat;
+    private volatile boolean running;
+
+    @Override
+    public synchronized void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            workers.add(Thread.ofVirtual().name("review-worker-" + i).start(this::pollLoop));
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("review-heartbeat").factory());
+        long interval = properties.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Started {} review workers on node {}.", properties.getWorkers(), reviewJobQueue.getNodeId());
+    }
+
+    @Override
+    public void stop() {
+        List<Thread> stopping = stopClaiming();
+        if (stopping != null) {
+            drain(stopping);
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        List<Thread> stopping = stopClaiming();
+        if (stopping == null) {
+            callback.run();
+            return;
+        }
+        // Other beans of the phase stop while this one drains
+        Thread.ofVirtual().name("review-drain").start(() -> {
+            try {
+                drain(stopping);
+            } finally {
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                Optional<ReviewJob> job = reviewJobQueue.claimNext();
+                if (job.isPresent()) {
+                    runJob(job.get());
+                } else {
+                    Thread.sleep(properties.getPollInterval().toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Review worker failed to poll the queue", e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    void runJob(ReviewJob job) {
+        inFlightJobs.put(job.getId(), job);
+        // Root of the review's trace: the job runs on a worker thread, outside of any request
+        Observation observation = reviewTracer
+                .review("review.job", job.getOwner(), job.getRepo(), job.getPullNumber())
+                .highCardinalityKeyValue("review.job", String.valueOf(job.getId()))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            log.info("Running review job {} for {}/{}#{} (attempt {}).", job.getId(), job.getOwner(), job.getRepo(),
+                    job.getPullNumber(), job.getAttempts());
+            reviewJobService.process(reviewJobQueue.toRequest(job));
+            // Finished just before it would have been abandoned
+            abandonedJobs.remove(job.getId());
+            reviewJobQueue.complete(job.getId());
+        } catch (Exception e) {
+            observation.error(e);
+            if (!requeueIfAbandoned(job)) {
+                log.error("Review job {} failed", job.getId(), e);
+                reviewJobQueue.fail(job.getId(), e);
+            }
+        } finally {
+            observation.stop();
+            inFlightJobs.remove(job.getId());
+        }
+    }
+
+    private boolean requeueIfAbandoned(ReviewJob job) {
+        if (!abandonedJobs.remove(job.getId())) {
+            return false;
+        }
+        log.info("Requeued review job {} for {}/{}#{}, stopped for shutdown.", job.getId(), job.getOwner(),
+                job.getRepo(), job.getPullNumber());
+        reviewJobQueue.requeue(Set.of(job.getId()));
+        return true;
+    }
+
+    /**
+     * Stops claiming jobs.
+     *
+     * @return the workers to wait for, or {@code null} if already stopped
+     */
+    private synchronized List<Thread> stopClaiming() {
+        if (!running) {
+            return null;
+        }
+        running = false;
+        List<Thread> stopping = List.copyOf(workers);
+        workers.clear();
+        return stopping;
+    }
+
+    void drain(List<Thread> stopping) {
+        long deadline = System.nanoTime() + properties.getShutdownGrace().toNanos();
+        if (!inFlightJobs.isEmpty()) {
+            log.info("Draining {} in-flight review jobs for up to {}.", inFlightJobs.size(),
+                    properties.getShutdownGrace());
+        }
+        // Idle workers leave their loop after the current poll, busy ones after their job
+        awaitWorkers(stopping, deadline);
+        List<ReviewJob> unfinished = List.copyOf(inFlightJobs.values());
+        if (!unfinished.isEmpty()) {
+            unfinished.forEach(job -> abandonedJobs.add(job.getId()));
+            // Only the reviews of these jobs: HTTP reviews are drained by the web server
+            int reviews = unfinished.stream()
+                    .mapToInt(job -> inFlightReviews.abandon(job.getOwner(), job.getRepo(), job.getPullNumber(),
+                            job.getHeadSha()))
+                    .sum();
+            log.warn("Abandoning {} review jobs ({} reviews) after the shutdown grace period.", unfinished.size(),
+                    reviews);
+            // Cancelled reviews unwind quickly; their workers requeue the jobs
+            awaitWorkers(stopping, System.nanoTime() + ABANDON_TIMEOUT.toNanos());
+            if (!inFlightJobs.isEmpty()) {
+                log.warn("{} review jobs did not stop in time; they are reclaimed when their lease lapses.",
+                        inFlightJobs.size());
+            }
+        }
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        stopping.forEach(Thread::interrupt);
+    }
+
+    private static void awaitWorkers(List<Thread> stopping, long deadlineNanos) {
+        try {
+            for (Thread worker : stopping) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                worker.join(Duration.ofNanos(remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void heartbeat() {
+        try {
+            reviewJobQueue.renewLeases(Set.copyOf(inFlightJobs.keySet()));
+            int released = reviewJobQueue.releaseExpiredLeases();
+            if (released > 0) {
+                log.warn("Released {} review jobs with expired leases.", released);
+            }
+        } catch (Exception e) {
+            log.error("Review job heartbeat failed", e);
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(properties.getPollInterval().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
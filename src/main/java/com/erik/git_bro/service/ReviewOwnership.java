@@ -0,0 +1,341 @@
+package com.erik.git_bro.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Makes sure only one node reviews a given pull request commit at a time.
+ * <p>
+ * Ownership of (repository, PR, head SHA) is a Postgres session-level
+ * advisory lock ({@code pg_try_advisory_lock}) on a hash of the three. All
+ * locks of a node live on one dedicated connection outside the Hikari pool,
+ * so holding them for the length of a review does not take pool connections
+ * away, and a node that dies releases everything it owned when the database
+ * drops its connection. A heartbeat pings that connection; if it broke, a new
+ * one is opened and the locks of running reviews are taken again, and a
+ * review whose lock was grabbed by another node in the meantime is marked as
+ * lost. Before posting, a review calls {@link Lease#confirm()}, which takes a
+ * lock that was released with its connection right away instead of waiting
+ * for the heartbeat.
+ * </p>
+ * <p>
+ * Advisory locks are reentrant per session, so reviews on the same node are
+ * kept apart by an in-memory registry. The registry alone is used when the
+ * database is not Postgres, which still prevents duplicate work within the
+ * node. If the database is Postgres but cannot be reached, no review is
+ * owned: another node may hold the lock, and owning the review on this node
+ * only could post its comments twice.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReviewOwnership {
+
+    interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Ownership of one review; closing it gives the review up.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String name;
+        private final long key;
+        private volatile boolean locked;
+        private volatile boolean held = true;
+
+        private Lease(String name, long key) {
+            this.name = name;
+            this.key = key;
+        }
+
+        /**
+         * Tells whether this node still owns the review. False once another
+         * node took the lock while this node's connection was down.
+         */
+        public boolean isHeld() {
+            return held;
+        }
+
+        /**
+         * Makes sure this node still holds the lock, e.g. before posting. A
+         * lock released with a broken connection is taken again now.
+         *
+         * @return false if another node took the review or the database
+         *         cannot confirm the lock
+         */
+        public boolean confirm() {
+            if (!held) {
+                return false;
+            }
+            if (connectionSource == null) {
+                return true;
+            }
+            connectionLock.lock();
+            try {
+                ping();
+                if (lock(this)) {
+                    return true;
+                }
+                held = false;
+                log.warn("Lost ownership of review {} to another node.", name);
+                return false;
+            } catch (SQLException e) {
+                log.warn("Could not confirm ownership of review {}: {}", name, e.getMessage());
+                dropConnection();
+                return false;
+            } finally {
+                connectionLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Thrown when a review stops because this node can no longer confirm it
+     * owns the commit; see {@link Lease#isHeld()} for whether another node
+     * took it over.
+     */
+    public static final class Lost extends IllegalStateException {
+        public Lost(Lease lease) {
+            super("Review of " + lease + " is no longer owned by this node");
+        }
+    }
+
+    /**
+     * Thrown when a review cannot start because this or another node already
+     * reviews the same commit.
+     */
+    public static final class AlreadyOwned extends IllegalStateException {
+        public AlreadyOwned(String review) {
+            super("Review of " + review + " is already in progress");
+        }
+    }
+
+    private final ConnectionSource connectionSource;
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    // Not synchronized: the JDBC calls below block, and reviews run on virtual threads that must not pin
+    private final ReentrantLock connectionLock = new ReentrantLock();
+    private Connection connection;
+
+    @Autowired
+    public ReviewOwnership(DataSourceProperties dataSourceProperties) {
+        this(postgres(dataSourceProperties));
+    }
+
+    ReviewOwnership(ConnectionSource connectionSource) {
+        this.connectionSource = connectionSource;
+        if (connectionSource == null) {
+            log.warn("Review ownership is not coordinated across nodes: the database is not Postgres.");
+        }
+    }
+
+    /**
+     * Takes ownership of reviewing {@code sha} of a pull request.
+     *
+     * @return the lease, or empty if this or another node already owns the review
+     * @throws IllegalStateException if the database cannot be reached to lock the review
+     */
+    public Optional<Lease> tryAcquire(String owner, String repo, int pullNumber, String sha) {
+        String name = name(owner, repo, pullNumber, sha);
+        Lease lease = new Lease(name, key(name));
+        if (leases.putIfAbsent(lease.key, lease) != null) {
+            return Optional.empty();
+        }
+        if (connectionSource == null) {
+            return Optional.of(lease);
+        }
+        try {
+            if (!lock(lease)) {
+                leases.remove(lease.key, lease);
+                log.info("Review of {} is owned by another node.", name);
+                return Optional.empty();
+            }
+        } catch (SQLException e) {
+            leases.remove(lease.key, lease);
+            // The connection is likely broken; running reviews relock through confirm() or the heartbeat
+            dropConnection();
+            throw new IllegalStateException("Could not lock review " + name + " in the database", e);
+        }
+        return Optional.of(lease);
+    }
+
+    /**
+     * Checks the lock connection and takes the locks of reviews that lost
+     * theirs when it broke.
+     */
+    @Scheduled(fixedDelayString = "${app.review.ownership.heartbeat-interval:15s}")
+    public void heartbeat() {
+        if (connectionSource == null || leases.isEmpty()) {
+            return;
+        }
+        connectionLock.lock();
+        try {
+            try (Statement ping = connection().createStatement()) {
+                ping.execute("SELECT 1");
+            }
+            for (Lease lease : leases.values()) {
+                if (lease.held && !lease.locked && !lock(lease)) {
+                    lease.held = false;
+                    log.warn("Lost ownership of review {} to another node.", lease);
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Review ownership connection failed, reconnecting on the next heartbeat: {}", e.getMessage());
+            dropConnection();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dropConnection();
+    }
+
+    private void release(Lease lease) {
+        if (!leases.remove(lease.key, lease)) {
+            return;
+        }
+        connectionLock.lock();
+        try {
+            if (!lease.locked) {
+                return;
+            }
+            lease.locked = false;
+            try (PreparedStatement unlock = connection().prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                unlock.setLong(1, lease.key);
+                unlock.execute();
+            } catch (SQLException e) {
+                // Closing the session releases the lock as well; the heartbeat relocks the others
+                log.warn("Could not unlock review {}: {}", lease, e.getMessage());
+                dropConnection();
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private boolean lock(Lease lease) throws SQLException {
+        connectionLock.lock();
+        try {
+            if (lease.locked) {
+                // Relocked by the heartbeat meanwhile; a second lock would outlive the unlock
+                return true;
+            }
+            try (PreparedStatement tryLock = connection().prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                tryLock.setLong(1, lease.key);
+                try (ResultSet rs = tryLock.executeQuery()) {
+                    rs.next();
+                    lease.locked = rs.getBoolean(1);
+                    return lease.locked;
+                }
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure the lock connection is alive, reconnecting once if it broke.
+     * Locks lost with a broken connection are marked as no longer locked.
+     */
+    private void ping() throws SQLException {
+        connectionLock.lock();
+        try {
+            try (Statement ping = connection().createStatement()) {
+                ping.execute("SELECT 1");
+            } catch (SQLException e) {
+                dropConnection();
+                try (Statement ping = connection().createStatement()) {
+                    ping.execute("SELECT 1");
+                }
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        connectionLock.lock();
+        try {
+            if (connection == null || connection.isClosed()) {
+                connection = connectionSource.open();
+                connection.setAutoCommit(true);
+            }
+            return connection;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private void dropConnection() {
+        connectionLock.lock();
+        try {
+            leases.values().forEach(lease -> lease.locked = false);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("Closing the review ownership connection failed: {}", e.getMessage());
+                }
+                connection = null;
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    static String name(String owner, String repo, int pullNumber, String sha) {
+        return (owner + "/" + repo + "#" + pullNumber + "@" + sha).toLowerCase(Locale.ROOT);
+    }
+
+    private static ConnectionSource postgres(DataSourceProperties properties) {
+        String url = properties.determineUrl();
+        if (url == null || !url.startsWith("jdbc:postgresql:")) {
+            return null;
+        }
+        String username = properties.determineUsername();
+        String password = properties.determinePassword();
+        return () -> DriverManager.getConnection(url, username, password);
+    }
+
+    static long key(String name) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package com.erik.git_bro.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.dto.InlineReviewResponse;
+import com.erik.git_bro.dto.Issue;
+import com.erik.git_bro.dto.PullRequestPrefetch;
+import com.erik.git_bro.service.github.GitHubAppService;
+import com.erik.git_bro.service.github.GitHubAppTokenService;
+import com.erik.git_bro.service.github.GitHubCommentService;
+import com.erik.git_bro.service.github.ReviewThreadIndex;
+import com.erik.git_bro.util.ReviewTracer;
+
+import io.micrometer.observation.Observation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Orchestrates a complete review of a pull request: AI analysis of the diff,
+ * followed by posting the resulting inline comments back to GitHub.
+ * <p>
+ * Shared by the synchronous upload endpoint and the webhook-driven review jobs
+ * so that both paths post comments in exactly the same way.
+ * </p>
+ * <p>
+ * Every review is registered with {@link InFlightReviews}. Once a newer head
+ * SHA of the same pull request is being reviewed, the older review's model
+ * calls are cancelled, its remaining comments are not posted and its future
+ * fails with a {@link java.util.concurrent.CancellationException}.
+ * </p>
+ * <p>
+ * A review only posts once this node owns its head commit through
+ * {@link ReviewOwnership}, so the same commit is never reviewed by two nodes
+ * at once, whichever endpoint or job started it. The lease is taken as soon as
+ * the head SHA is known, in parallel with the model call; a review that does
+ * not get it stops and fails with {@link ReviewOwnership.AlreadyOwned}.
+ * </p>
+ * <p>
+ * Every review also gets a {@link ReviewDeadline} ({@code app.review.deadline})
+ * that bounds each stage after it: the GitHub lookups, the wait for a model
+ * slot and the model call, including parsing and persisting its answer.
+ * A whole-PR review still posts the files that were validated before the
+ * deadline and lists the rest as not reviewed. A single-diff review has one
+ * model answer, which cannot be posted without the token, files and existing
+ * threads: if those GitHub lookups are still running at the deadline, it
+ * fails with {@link ReviewDeadline.Exceeded} and posts nothing.
+ * </p>
+ * <p>
+ * Whole-PR reviews checkpoint each file through the
+ * {@link ReviewCheckpointService} once its model answer is stored and once its
+ * comments are posted, and a rerun of the same commit picks up from there.
+ * </p>
+ * <p>
+ * Each review is observed as one trace through the {@link ReviewTracer}, with
+ * a span per file, model call and posting, and the GitHub and model HTTP
+ * calls below them. Work handed to the scheduler or the virtual threads is
+ * wrapped so it stays in the trace of the review it belongs to.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewPipelineService {
+
+    private final CodeAnalysisService codeAnalysisService;
+    private final ParsingService parsingService;
+    private final GitHubAppService gitHubAppService;
+    private final GitHubCommentService gitHubCommentService;
+    private final GitHubAppTokenService gitHubAppTokenService;
+    private final IncrementalReviewService incrementalReviewService;
+    private final ReviewThreadIndex reviewThreadIndex;
+    private final ReviewScheduler reviewScheduler;
+    private final InFlightReviews inFlightReviews;
+    private final ReviewOwnership reviewOwnership;
+    private final ReviewCheckpointService reviewCheckpointService;
+    private final ReviewTracer reviewTracer;
+    private final Executor virtualThreadExecutor;
+
+    @Value("${app.review.file-concurrency:8}")
+    private int fileConcurrency = 8;
+
+    @Value("${app.review.deadline:10m}")
+    private Duration reviewDeadline = Duration.ofMinutes(10);
+
+    /**
+     * Runs the AI analysis for the request and posts the resulting inline
+     * comments to the pull request.
+     * <p>
+     * The installation token, head SHA and PR files are fetched in parallel
+     * with the model call and only joined before posting. If the pull request
+     * was reviewed before, only the changes since the last reviewed commit are
+     * sent to the model; in that case the head SHA is awaited first. Comments
+     * that already exist on the PR are skipped via the {@link ReviewThreadIndex}.
+     * </p>
+     *
+     * @param owner      The repository owner.
+     * @param repo       The repository name.
+     * @param pullNumber The pull request number.
+     * @param request    The analysis request. If its SHA is {@code null} the
+     *                   head commit SHA is looked up on GitHub.
+     * @param modelName  The AI model to use (e.g., "chatgpt", "gemini").
+     * @return A CompletableFuture holding the markdown review summary, or
+     *         {@code null} if the model produced no response or nothing changed
+     *         since the last review.
+     */
+    public CompletableFuture<String> run(String owner, String repo, int pullNumber, AnalysisRequest request,
+            String modelName) {
+        return reviewTracer.observeAsync(reviewTracer.review("review.diff", owner, repo, pullNumber),
+                () -> reviewDiff(owner, repo, pullNumber, request, modelName));
+    }
+
+    private CompletableFuture<String> reviewDiff(String owner, String repo, int pullNumber, AnalysisRequest request,
+            String modelName) {
+        final PullRequestPrefetch prefetch;
+        try {
+            prefetch = gitHubAppService.prefetch(owner, repo, pullNumber);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final CompletableFuture<String> shaFuture = request.sha() != null
+                ? CompletableFuture.completedFuture(request.sha())
+                : prefetch.sha();
+        final InFlightReviews.Handle review = begin(owner, repo, pullNumber, shaFuture, prefetch.sha());
+        final CompletableFuture<ReviewOwnership.Lease> lease = own(owner, repo, pullNumber, shaFuture, null, review);
+        final ReviewDeadline deadline = ReviewDeadline.in(reviewDeadline);
+
+        final CompletableFuture<AnalysisRequest> toAnalyze = deadline.bound(
+                narrow(owner, repo, request, shaFuture, lease), "incremental diff");
+
+        return finish(toAnalyze.thenCompose(reviewTracer.wrap(delta -> {
+            if (delta.diffContent() == null || delta.diffContent().isBlank()) {
+                log.info("No changes in PR {} since the last reviewed commit, skipping analysis.",
+                        request.pullRequestId());
+                return CompletableFuture.completedFuture(null);
+            }
+            return schedule(owner, repo, ReviewScheduler.cost(delta.diffContent()), deadline,
+                    () -> analyze(delta, modelName, shaFuture, review, deadline)
+                    .thenCompose(inlineReviewResponse -> {
+                        if (inlineReviewResponse == null) {
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        return deadline.bound(CompletableFuture
+                                .allOf(shaFuture, prefetch.token(), prefetch.files(), prefetch.reviewThreads(),
+                                        lease),
+                                "GitHub lookups")
+                                .thenApply(reviewTracer.wrap(ignored -> {
+                                    reviewThreadIndex.load(owner, repo, pullNumber, prefetch.reviewThreads().join());
+                                    review.throwIfCancelled();
+                                    throwIfNotOwned(lease, review);
+                                    try {
+                                        return publish(inlineReviewResponse, owner, repo, pullNumber,
+                                                shaFuture.join(), prefetch.token().join(), prefetch.files().join(),
+                                                review);
+                                    } catch (Exception e) {
+                                        throw new CompletionException(e);
+                                    }
+                                }));
+                    }));
+        })), lease, true, review);
+    }
+
+    /**
+     * Reviews a whole pull request: fetches its diff, splits it into one unit
+     * per file and reviews the files concurrently on virtual threads.
+     *
+     * @param owner      The repository owner.
+     * @param repo       The repository name.
+     * @param pullNumber The pull request number.
+     * @param headSha    The head commit SHA, or {@code null} to resolve it.
+     * @param prUrl      The pull request URL.
+     * @param author     The pull request author.
+     * @param modelName  The AI model to use.
+     * @return a future completing with the aggregated summary, or {@code null}
+     *         if nothing changed since the last review
+     * @see #runPerFile
+     */
+    public CompletableFuture<String> reviewPullRequest(String owner, String repo, int pullNumber, String headSha,
+            String prUrl, String author, String modelName) {
+        return reviewPullRequest(owner, repo, pullNumber, headSha, prUrl, author, modelName, null);
+    }
+
+    /**
+     * Like {@link #reviewPullRequest(String, String, int, String, String, String, String)},
+     * for a caller that already owns {@code headSha} and keeps the lease after
+     * the review, e.g. to post the summary under it.
+     *
+     * @param lease The caller's lease of {@code headSha}, or {@code null} to
+     *              take one for the length of the review.
+     */
+    public CompletableFuture<String> reviewPullRequest(String owner, String repo, int pullNumber, String headSha,
+            String prUrl, String author, String modelName, ReviewOwnership.Lease lease) {
+        return reviewTracer.observeAsync(reviewTracer.review("review.pull-request", owner, repo, pullNumber),
+                () -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return gitHubAppService.getPullRequestDiff(owner, repo, pullNumber);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, reviewTracer.wrapExecutor(virtualThreadExecutor)).thenCompose(reviewTracer.wrap(diff -> runPerFile(owner,
+                        repo, pullNumber, new AnalysisRequest("pr-" + pullNumber + ".diff", diff,
+                                String.valueOf(pullNumber), headSha, prUrl, author),
+                        modelName, lease))));
+    }
+
+    /**
+     * Like {@link #run}, but analyzes every file of the diff as its own unit.
+     * <p>
+     * Each file gets a virtual thread; at most {@code app.review.file-concurrency}
+     * of them are queued with the {@link ReviewScheduler} at a time, which
+     * decides when they reach the model. A file's comments are posted as soon
+     * as that file is done, and one summary covering all files is returned at
+     * the end, so the wall-clock time is roughly that of the slowest file
+     * rather than the sum of all of them. A file that fails is listed in the
+     * summary; the review only fails if every file did.
+     * </p>
+     *
+     * @param owner      The repository owner.
+     * @param repo       The repository name.
+     * @param pullNumber The pull request number.
+     * @param request    The analysis request holding the diff of the whole PR.
+     * @param modelName  The AI model to use.
+     * @return a future completing with the aggregated summary, or {@code null}
+     *         if nothing changed since the last review
+     */
+    public CompletableFuture<String> runPerFile(String owner, String repo, int pullNumber, AnalysisRequest request,
+            String modelName) {
+        return runPerFile(owner, repo, pullNumber, request, modelName, null);
+    }
+
+    private CompletableFuture<String> runPerFile(String owner, String repo, int pullNumber, AnalysisRequest request,
+            String modelName, ReviewOwnership.Lease held) {
+        return reviewTracer.observeAsync(reviewTracer.review("review.files", owner, repo, pullNumber),
+                () -> reviewFiles(owner, repo, pullNumber, request, modelName, held));
+    }
+
+    private CompletableFuture<String> reviewFiles(String owner, String repo, int pullNumber, AnalysisRequest request,
+            String modelName, ReviewOwnership.Lease held) {
+        final PullRequestPrefetch prefetch;
+        try {
+            prefetch = gitHubAppService.prefetch(owner, repo, pullNumber);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final CompletableFuture<String> shaFuture = request.sha() != null
+                ? CompletableFuture.completedFuture(request.sha())
+                : prefetch.sha();
+        final InFlightReviews.Handle review = begin(owner, repo, pullNumber, shaFuture, prefetch.sha());
+        final CompletableFuture<ReviewOwnership.Lease> lease = own(owner, repo, pullNumber, shaFuture, held, review);
+        final ReviewDeadline deadline = ReviewDeadline.in(reviewDeadline);
+        // Comments of the first finished file must not be posted before the existing threads are known
+        final CompletableFuture<Void> github = deadline.bound(CompletableFuture
+                .allOf(shaFuture, prefetch.token(), prefetch.files(), prefetch.reviewThreads(), lease)
+                .thenRun(() -> reviewThreadIndex.load(owner, repo, pullNumber, prefetch.reviewThreads().join())),
+                "GitHub lookups");
+
+        return finish(deadline.bound(narrow(owner, repo, request, shaFuture, lease), "incremental diff")
+                .thenCompose(reviewTracer.wrap(delta -> {
+                    Map<String, String> files = parsingService.splitDiffByFile(delta.diffContent());
+                    if (files.isEmpty()) {
+                        log.info("No changes in PR {} since the last reviewed commit, skipping analysis.",
+                                request.pullRequestId());
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    PerFile context = new PerFile(owner, repo, pullNumber, modelName, shaFuture, prefetch, github,
+                            lease, new Semaphore(Math.max(1, fileConcurrency)), review, deadline);
+                    List<CompletableFuture<FileReview>> reviews = files.entrySet().stream()
+                            .map(file -> CompletableFuture.supplyAsync(
+                                    () -> reviewFile(context, withDiff(delta, file.getKey(), file.getValue())),
+                                    reviewTracer.wrapExecutor(virtualThreadExecutor)))
+                            .toList();
+                    log.info("Reviewing {} files of PR {} with up to {} in parallel.", files.size(),
+                            request.pullRequestId(), context.slots().availablePermits());
+
+                    return CompletableFuture.allOf(reviews.toArray(CompletableFuture[]::new))
+                            .thenApply(ignored -> {
+                                // A partial summary of a superseded commit is of no use to anyone
+                                throwIfNotOwned(lease, review);
+                                review.throwIfCancelled();
+                                return summarize(reviews.stream().map(CompletableFuture::join).toList(), deadline);
+                            });
+                })), lease, held == null, review);
+    }
+
+    /**
+     * The outcome of reviewing one file; {@code failure} is set if it could not
+     * be reviewed.
+     */
+    private record FileReview(String path, List<Issue> posted, String recommendation, Throwable failure) {
+    }
+
+    /**
+     * What the files of one per-file review share.
+     */
+    private record PerFile(String owner, String repo, int pullNumber, String modelName,
+            CompletableFuture<String> sha, PullRequestPrefetch prefetch, CompletableFuture<Void> github,
+            CompletableFuture<ReviewOwnership.Lease> lease, Semaphore slots, InFlightReviews.Handle review,
+            ReviewDeadline deadline) {
+    }
+
+    private FileReview reviewFile(PerFile context, AnalysisRequest request) {
+        Observation observation = reviewTracer.observation("review.file")
+                .highCardinalityKeyValue("review.file", request.filename())
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            FileReview review = awaitSlotAndReview(context, request);
+            if (review.failure() != null) {
+                observation.error(review.failure());
+            }
+            return review;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private FileReview awaitSlotAndReview(PerFile context, AnalysisRequest request) {
+        try {
+            if (!context.slots().tryAcquire(context.deadline().remaining().toNanos(), TimeUnit.NANOSECONDS)) {
+                return new FileReview(request.filename(), List.of(), null,
+                        context.deadline().exceeded("waiting for a file slot"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FileReview(request.filename(), List.of(), null, e);
+        }
+        try {
+            Optional<ReviewCheckpointService.Resumed> resumed = resume(context, request);
+            if (resumed.isPresent()) {
+                ReviewCheckpointService.Resumed checkpoint = resumed.get();
+                log.info("Resuming {} in PR {} from its checkpoint.", request.filename(), request.pullRequestId());
+                return checkpoint.posted() != null
+                        ? new FileReview(request.filename(), checkpoint.posted(),
+                                checkpoint.response().getRecommendation(), null)
+                        : post(context, request, checkpoint.response());
+            }
+            return schedule(context.owner(), context.repo(), ReviewScheduler.cost(request.diffContent()),
+                    context.deadline(),
+                    () -> CompletableFuture.supplyAsync(() -> analyzeAndPost(context, request),
+                            reviewTracer.wrapExecutor(virtualThreadExecutor)))
+                    .join();
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("Review of {} in PR {} failed: {}", request.filename(), request.pullRequestId(),
+                    cause.getMessage());
+            return new FileReview(request.filename(), List.of(), null, cause);
+        } finally {
+            context.slots().release();
+        }
+    }
+
+    private FileReview analyzeAndPost(PerFile context, AnalysisRequest request) {
+        // Still queued when a newer push came in: the model is never called
+        context.review().throwIfCancelled();
+        InlineReviewResponse response = analyze(request, context.modelName(), context.sha(), context.review(),
+                context.deadline()).join();
+        if (response == null) {
+            return new FileReview(request.filename(), List.of(), null, null);
+        }
+        reviewCheckpointService.analyzed(context.owner(), context.repo(), context.pullNumber(), context.sha().join(),
+                request, response);
+        return post(context, request, response);
+    }
+
+    private FileReview post(PerFile context, AnalysisRequest request, InlineReviewResponse response) {
+        return reviewTracer.observation("review.post").observe(() -> postFile(context, request, response));
+    }
+
+    private FileReview postFile(PerFile context, AnalysisRequest request, InlineReviewResponse response) {
+        context.github().join();
+        context.review().throwIfCancelled();
+        throwIfNotOwned(context.lease(), context.review());
+        try {
+            PullRequestPrefetch prefetch = context.prefetch();
+            List<Issue> posted = postIndividualComments(response.getIssues(), prefetch.token().join(),
+                    context.owner(), context.repo(), context.pullNumber(), context.sha().join(),
+                    prefetch.files().join(), context.review());
+            log.debug("Reviewed {}: posted {} comments.", request.filename(), posted.size());
+            reviewCheckpointService.posted(context.owner(), context.repo(), context.pullNumber(),
+                    context.sha().join(), request, response, posted);
+            return new FileReview(request.filename(), posted, response.getRecommendation(), null);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Looks up where an interrupted review of the file left off. Only done
+     * when the head SHA is already known, so resolving it never delays the
+     * model call.
+     */
+    private Optional<ReviewCheckpointService.Resumed> resume(PerFile context, AnalysisRequest request) {
+        String sha = context.sha().getNow(null);
+        if (sha == null) {
+            return Optional.empty();
+        }
+        return reviewCheckpointService.find(context.owner(), context.repo(), context.pullNumber(), sha, request);
+    }
+
+    /**
+     * Queues work with the {@link ReviewScheduler}. Only the wait for a slot
+     * is bounded here; the work bounds its own stages.
+     */
+    private <T> CompletableFuture<T> schedule(String owner, String repo, long cost, ReviewDeadline deadline,
+            Supplier<CompletableFuture<T>> work) {
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Supplier<CompletableFuture<T>> traced = reviewTracer.wrap(work);
+        CompletableFuture<T> unit = reviewScheduler.submit(owner, repo, cost, () -> started.complete(null)
+                ? traced.get()
+                : CompletableFuture.failedFuture(deadline.exceeded("waiting for a model slot")));
+        return deadline.bound(started, "waiting for a model slot").thenCompose(ignored -> unit);
+    }
+
+    private CompletableFuture<InlineReviewResponse> analyze(AnalysisRequest request, String modelName,
+            CompletableFuture<String> shaFuture, InFlightReviews.Handle review, ReviewDeadline deadline) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(deadline.exceeded("model call"));
+        }
+        return reviewTracer.observeAsync(
+                reviewTracer.observation("review.model").lowCardinalityKeyValue("model", modelName),
+                () -> deadline.bound(review.track(codeAnalysisService.analyzeDiff(request, modelName, shaFuture)),
+                        "model call"));
+    }
+
+    private String summarize(List<FileReview> reviews, ReviewDeadline deadline) {
+        List<FileReview> failed = reviews.stream().filter(review -> review.failure() != null).toList();
+        if (failed.size() == reviews.size()) {
+            throw new CompletionException(failed.get(0).failure());
+        }
+        List<Issue> posted = reviews.stream().flatMap(review -> review.posted().stream()).toList();
+        // One file the model would not merge is enough to hold the whole PR
+        String recommendation = reviews.stream()
+                .map(FileReview::recommendation)
+                .filter(r -> r != null && !r.isBlank())
+                .filter(r -> !"merge".equalsIgnoreCase(r.trim()))
+                .findFirst()
+                .orElse("merge");
+
+        StringBuilder summary = new StringBuilder(buildReviewSummary(posted, recommendation));
+        List<FileReview> timedOut = failed.stream()
+                .filter(review -> review.failure() instanceof ReviewDeadline.Exceeded)
+                .toList();
+        if (!timedOut.isEmpty()) {
+            summary.append("\n**Partial review**: the review deadline of ")
+                    .append(deadline.budget().toSeconds()).append("s was reached. The comments above cover the ")
+                    .append(reviews.size() - timedOut.size()).append(" of ").append(reviews.size())
+                    .append(" files reviewed in time; these were not reviewed:\n");
+            timedOut.forEach(review -> summary.append("- `").append(review.path()).append("`\n"));
+        }
+        if (failed.size() > timedOut.size()) {
+            summary.append("\n**Not reviewed** (analysis failed):\n");
+            failed.stream()
+                    .filter(review -> !(review.failure() instanceof ReviewDeadline.Exceeded))
+                    .forEach(review -> summary.append("- `").append(review.path()).append("`\n"));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Registers a review. {@code head} is the pull request's head on GitHub,
+     * which tells whether the review's commit is still the one to review.
+     */
+    private InFlightReviews.Handle begin(String owner, String repo, int pullNumber,
+            CompletableFuture<String> shaFuture, CompletableFuture<String> head) {
+        InFlightReviews.Handle review = inFlightReviews.begin(owner, repo, pullNumber);
+        // Looks the SHA up in the database, so not on the thread completing the GitHub call
+        shaFuture.thenAcceptBothAsync(head.exceptionally(failure -> null), review::headSha, virtualThreadExecutor);
+        return review;
+    }
+
+    /**
+     * Takes ownership of the head commit once its SHA is known. A lease the
+     * caller already holds is used as is. If another review owns the commit,
+     * this review is stopped, so the model call that is already running does
+     * not go on for nothing.
+     */
+    private CompletableFuture<ReviewOwnership.Lease> own(String owner, String repo, int pullNumber,
+            CompletableFuture<String> shaFuture, ReviewOwnership.Lease held, InFlightReviews.Handle review) {
+        if (held != null) {
+            return CompletableFuture.completedFuture(held);
+        }
+        // Locks in the database, so not on the thread completing the GitHub call
+        CompletableFuture<ReviewOwnership.Lease> lease = shaFuture.thenApplyAsync(sha -> reviewOwnership
+                .tryAcquire(owner, repo, pullNumber, sha)
+                .orElseThrow(() -> new ReviewOwnership.AlreadyOwned(
+                        ReviewOwnership.name(owner, repo, pullNumber, sha))),
+                virtualThreadExecutor);
+        lease.whenComplete((owned, failure) -> {
+            if (failure != null) {
+                review.stop();
+            }
+        });
+        return lease;
+    }
+
+    /**
+     * Makes sure this node still owns the commit before posting for it. A
+     * review that lost its lease is stopped, so none of its other files are
+     * posted either.
+     *
+     * @throws ReviewOwnership.Lost if the lease cannot be confirmed
+     */
+    private static void throwIfNotOwned(CompletableFuture<ReviewOwnership.Lease> lease,
+            InFlightReviews.Handle review) {
+        ReviewOwnership.Lease owned = lease.join();
+        if (!owned.confirm()) {
+            review.stop();
+            throw new ReviewOwnership.Lost(owned);
+        }
+    }
+
+    /**
+     * Ends a review: unregisters it, gives up a lease it took itself and, if
+     * it did not get the lease, fails it with that reason rather than with
+     * the cancellation of its stages.
+     */
+    private <T> CompletableFuture<T> finish(CompletableFuture<T> result,
+            CompletableFuture<ReviewOwnership.Lease> lease, boolean release, InFlightReviews.Handle review) {
+        return result.handle((value, failure) -> {
+            review.close();
+            if (release) {
+                lease.thenAccept(ReviewOwnership.Lease::close);
+            }
+            if (lease.isCompletedExceptionally()) {
+                throw new CompletionException(lease.exceptionNow());
+            }
+            if (failure != null) {
+                throw failure instanceof CompletionException completion ? completion
+                        : new CompletionException(failure);
+            }
+            return value;
+        });
+    }
+
+    // First reviews go straight to the model; incremental ones need the head SHA to compare against
+    private CompletableFuture<AnalysisRequest> narrow(String owner, String repo, AnalysisRequest request,
+            CompletableFuture<String> shaFuture, CompletableFuture<ReviewOwnership.Lease> lease) {
+        if (!incrementalReviewService.hasPreviousIteration(owner, repo, request.pullRequestId())) {
+            return CompletableFuture.completedFuture(request);
+        }
+        // Carrying review lines forward writes to the database, so only the owner of the commit does it
+        return lease.thenCombineAsync(shaFuture, reviewTracer.wrap((owned, sha) -> incrementalReviewService
+                .narrowToDelta(owner, repo, withSha(request, sha))), virtualThreadExecutor);
+    }
+
+    /**
+     * Posts the issues of an analysis result as inline comments and builds the
+     * markdown summary of what was posted.
+     *
+     * @param inlineReviewResponse The parsed AI response, may be {@code null}.
+     * @param owner                The repository owner.
+     * @param repo                 The repository name.
+     * @param pullNumber           The pull request number.
+     * @param sha                  The head commit SHA the comments are attached to.
+     * @param token                The installation access token.
+     * @param diffsFromPr          The changed files of the pull request.
+     * @return The markdown summary, or {@code null} if there was nothing to post.
+     * @throws Exception if a comment could not be posted.
+     */
+    public String publish(InlineReviewResponse inlineReviewResponse, String owner, String repo, int pullNumber,
+            String sha, String token, List<GitDiff> diffsFromPr) throws Exception {
+        return publish(inlineReviewResponse, owner, repo, pullNumber, sha, token, diffsFromPr, null);
+    }
+
+    private String publish(InlineReviewResponse inlineReviewResponse, String owner, String repo, int pullNumber,
+            String sha, String token, List<GitDiff> diffsFromPr, InFlightReviews.Handle review) throws Exception {
+        if (inlineReviewResponse == null) {
+            return null;
+        }
+        log.info("The InlineReviewResponse: {}", inlineReviewResponse);
+
+        Observation observation = reviewTracer.observation("review.post").start();
+        try (Observation.Scope scope = observation.openScope()) {
+            List<Issue> postedIssues = postIndividualComments(inlineReviewResponse.getIssues(), token, owner, repo,
+                    pullNumber, sha, diffsFromPr, review);
+            return buildReviewSummary(postedIssues, inlineReviewResponse.getRecommendation());
+        } catch (Exception e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Posts a review summary as a regular conversation comment on the pull
+     * request. Used when no GitHub Action is around to post the summary itself.
+     *
+     * @param owner      The repository owner.
+     * @param repo       The repository name.
+     * @param pullNumber The pull request number.
+     * @param summary    The markdown summary to post.
+     * @throws Exception if the installation token could not be fetched or the
+     *                   comment could not be posted.
+     */
+    public void publishSummary(String owner, String repo, int pullNumber, String summary) throws Exception {
+        if (summary == null || summary.isBlank()) {
+            return;
+        }
+        final String installationId = gitHubAppTokenService.getInstallationId(owner, repo);
+        final String token = gitHubAppTokenService.getInstallationToken(Long.parseLong(installationId));
+        gitHubCommentService.postIssueComment(token, owner, repo, pullNumber, summary.trim());
+    }
+
+    private List<Issue> postIndividualComments(List<Issue> aiIssues, String token, String owner, String repo,
+            int pullNumber, String sha, List<GitDiff> diffsFromPr, InFlightReviews.Handle review) throws IOException {
+        List<Issue> postedIssues = new ArrayList<>();
+        for (Issue aiIssue : aiIssues) {
+            if (review != null && review.isCancelled()) {
+                log.info("Dropping the remaining comments for PR {}: a newer commit is being reviewed.", pullNumber);
+                break;
+            }
+            String issueFile = aiIssue.getFile();
+            int line = aiIssue.getLine();
+            String comment = aiIssue.getComment();
+
+            Optional<GitDiff> matchingDiff = diffsFromPr.stream()
+                    .filter(d -> {
+                        String diffFilename = normalizePath(d.getFilename());
+                        String issueFilename = normalizePath(issueFile);
+                        boolean matches = diffFilename.equals(issueFilename);
+                        if (!matches) {
+                            log.debug("Skipping mismatch: Issue file '{}' vs. Diff file '{}'", issueFilename,
+                                    diffFilename);
+                        }
+                        if (d.getPatch() == null || d.getPatch().isBlank()) {
+                            log.warn("Skipping file '{}': patch is null or empty.", d.getFilename());
+                            return false;
+                        }
+                        return matches;
+                    })
+                    .findFirst();
+
+            if (matchingDiff.isPresent()) {
+                GitDiff gitDiff = matchingDiff.get();
+                Set<Integer> validLines = this.parsingService.extractCommentableLines(gitDiff.getPatch());
+
+                if (validLines.contains(line)) {
+                    Integer position = this.parsingService.calculatePositionInDiffHunk(gitDiff.getPatch(), line);
+                    String diffHunk = this.parsingService.extractDiffHunkForLine(gitDiff.getPatch(), line);
+
+                    if (reviewThreadIndex.contains(owner, repo, pullNumber, issueFile, line, comment)) {
+                        log.info("Skipping comment: an equivalent comment already exists on {}:{}.", issueFile,
+                                line);
+                    } else if (position != null && diffHunk != null && !diffHunk.isBlank()) {
+                        gitHubCommentService.postBlockComments(
+                                token,
+                                owner,
+                                repo,
+                                pullNumber,
+                                issueFile,
+                                line,
+                                comment,
+                                sha,
+                                position,
+                                diffHunk);
+                        reviewThreadIndex.record(owner, repo, pullNumber, issueFile, line, comment);
+                        postedIssues.add(new Issue(issueFile, line, position, comment));
+                    } else {
+                        log.warn(
+                                "Skipping comment: Could not calculate position or extract diff hunk for line {} in {}.",
+                                line, issueFile);
+                    }
+                } else {
+                    log.warn("Skipping comment: line {} in {} is not part of diff.", line, issueFile);
+                }
+            } else {
+                log.warn("No diff found for file: {}", issueFile);
+            }
+        }
+        return postedIssues;
+    }
+
+    private String buildReviewSummary(List<Issue> postedIssues, String recommendation) {
+        StringBuilder markdownSummary = new StringBuilder();
+        markdownSummary.append("### 🤖 AI Review Summary\n");
+        markdownSummary.append("Posted ").append(postedIssues.size()).append(" inline comments.\n\n");
+
+        for (Issue issue : postedIssues) {
+            markdownSummary
+                    .append("- **File**: `").append(issue.getFile()).append("`\n")
+                    .append("  - **Line**: ").append(issue.getLine()).append("\n")
+                    .append("  - **Comment**: ").append(issue.getComment().replaceAll("\n", " ").trim()).append("\n")
+                    .append("  - **Category**: ")
+                    .append(this.parsingService.getIssueCategory(issue.getComment()).name().replaceAll("\n", " ")
+                            .trim())
+                    .append("\n\n");
+        }
+        markdownSummary.append("**Recommendation**: ").append(recommendation).append("\n");
+        return markdownSummary.toString();
+    }
+
+    private AnalysisRequest withDiff(AnalysisRequest request, String filename, String diff) {
+        return new AnalysisRequest(filename, diff, request.pullRequestId(), request.sha(), request.prUrl(),
+                request.author());
+    }
+
+    private AnalysisRequest withSha(AnalysisRequest request, String sha) {
+        return new AnalysisRequest(request.filename(), request.diffContent(), request.pullRequestId(), sha,
+                request.prUrl(), request.author());
+    }
+
+    private String normalizePath(String path) {
+        if (path == null)
+            return "";
+
+        return path
+                .trim()
+                .replace("\\", "/") // Normalize Windows paths
+                .replaceFirst("^\\./", "") // Remove leading "./"
+                .toLowerCase(); // Optional: make case-insensitive if needed
+    }
+}
@@ -0,0 +1,409 @@
+package com.erik.git_bro.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.erik.git_bro.config.RetentionProperties;
+import com.erik.git_bro.util.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the partitioned {@code review} table small.
+ * <p>
+ * {@code review} is range-partitioned by month on {@code created_at}. Every
+ * run makes sure partitions exist for the coming months. With retention
+ * enabled it then:
+ * <ul>
+ *   <li>detaches partitions that are entirely older than the longest retention,
+ *       writes them to a gzip-compressed NDJSON file and drops them;</li>
+ *   <li>for repositories with a shorter retention, deletes and archives their
+ *       expired rows from the partitions that are still attached;</li>
+ *   <li>removes iterations older than the longest retention that no longer have
+ *       reviews. {@code review_iteration} is not partitioned because the
+ *       foreign key from {@code review} would have to include its partition
+ *       key.</li>
+ * </ul>
+ * An archive file is always complete on disk before the rows it holds are
+ * deleted. A partition that was detached but not yet dropped, e.g. because the
+ * node stopped, is picked up again on the next run.
+ * </p>
+ * <p>
+ * Only one node runs the job at a time; the others skip the run. Only
+ * PostgreSQL is supported; on other databases the job does nothing.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReviewRetentionService {
+
+    // Advisory lock key shared by every node running the job
+    static final long RUN_LOCK = ReviewOwnership.key("review-retention");
+
+    static final Pattern PARTITION_NAME = Pattern.compile("review_p(\\d{4})_(\\d{2})");
+
+    // Same shape as ReviewRollupService: https://github.com/owner/repo/pull/1 or the API URL
+    private static final String REPOSITORY_REGEX = "github\\.com/(?:repos/)?([^/]+/[^/]+)/pulls?/";
+
+    private static final DateTimeFormatter ARCHIVE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RetentionProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    private Boolean partitioned;
+
+    @Autowired
+    public ReviewRetentionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            RetentionProperties properties, ObjectMapper objectMapper) {
+        this(jdbcTemplate, transactionTemplate, properties, objectMapper, Clock.systemUTC());
+    }
+
+    ReviewRetentionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            RetentionProperties properties, ObjectMapper objectMapper, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            runExclusively(this::ensurePartitions);
+        } catch (RuntimeException e) {
+            log.warn("Could not create upcoming review partitions: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        try {
+            boolean ran = runExclusively(() -> {
+                ensurePartitions();
+                if (properties.isEnabled()) {
+                    archiveExpired();
+                }
+            });
+            if (!ran) {
+                log.info("Review retention is running on another node, skipping this run.");
+            }
+        } catch (RuntimeException e) {
+            log.error("Review retention run failed", e);
+        }
+    }
+
+    /**
+     * Runs {@code work} while holding a session-level advisory lock, so the
+     * nodes that all fire the same cron do not race on detaching, archiving
+     * and dropping partitions. The lock is held on one pooled connection for
+     * the whole run and released on it afterwards.
+     *
+     * @return false if another node holds the lock and {@code work} was skipped
+     */
+    private boolean runExclusively(Runnable work) {
+        if (!isPartitioned()) {
+            return true;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (PreparedStatement tryLock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                tryLock.setLong(1, RUN_LOCK);
+                try (ResultSet rs = tryLock.executeQuery()) {
+                    if (!rs.next() || !rs.getBoolean(1)) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                work.run();
+                return true;
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, RUN_LOCK);
+                    unlock.execute();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Creates the partitions for the current month and the configured number
+     * of months ahead, so new rows never land in the default partition.
+     */
+    public void ensurePartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+        YearMonth current = YearMonth.now(clock);
+        for (int i = 0; i <= properties.getPartitionsAhead(); i++) {
+            LocalDate monthStart = current.plusMonths(i).atDay(1);
+            jdbcTemplate.queryForObject("SELECT ensure_review_partition(?)", String.class, monthStart);
+        }
+    }
+
+    /**
+     * Archives and removes everything past its retention.
+     */
+    public void archiveExpired() {
+        if (!isPartitioned()) {
+            return;
+        }
+        Instant now = clock.instant();
+        Instant partitionCutoff = now.minus(properties.getLongestRetention());
+
+        for (String partition : expiredPartitions(listPartitions(), partitionCutoff)) {
+            archivePartition(partition);
+        }
+        for (Map.Entry<String, Duration> override : properties.getRepositories().entrySet()) {
+            Instant cutoff = now.minus(override.getValue());
+            if (cutoff.isAfter(partitionCutoff)) {
+                archiveRepositoryRows(override.getKey().toLowerCase(Locale.ROOT), cutoff);
+            }
+        }
+        Instant defaultCutoff = now.minus(properties.getDefaultRetention());
+        if (defaultCutoff.isAfter(partitionCutoff)) {
+            archiveRepositoryRows(null, defaultCutoff);
+        }
+        archiveOrphanedIterations(partitionCutoff);
+    }
+
+    /**
+     * Returns the partitions whose whole month lies before the cutoff, oldest
+     * first.
+     */
+    static List<String> expiredPartitions(List<String> partitionNames, Instant cutoff) {
+        List<String> expired = new ArrayList<>();
+        for (String name : partitionNames) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            Instant end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            if (!end.isAfter(cutoff)) {
+                expired.add(name);
+            }
+        }
+        expired.sort(String::compareTo);
+        return expired;
+    }
+
+    private List<String> listPartitions() {
+        // Attached monthly partitions plus ones a previous run detached but did not drop
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_class c "
+                + "WHERE c.relkind = 'r' AND c.relname ~ '^review_p[0-9]{4}_[0-9]{2}$' "
+                + "AND (NOT c.relispartition OR EXISTS (SELECT 1 FROM pg_inherits i "
+                + "WHERE i.inhrelid = c.oid AND i.inhparent = 'review'::regclass))", String.class);
+    }
+
+    private void archivePartition(String partition) {
+        if (!PARTITION_NAME.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Not a review partition: " + partition);
+        }
+        Boolean attached = jdbcTemplate.queryForObject(
+                "SELECT relispartition FROM pg_class WHERE relname = ? AND relkind = 'r'", Boolean.class, partition);
+        if (Boolean.TRUE.equals(attached)) {
+            jdbcTemplate.execute("ALTER TABLE review DETACH PARTITION " + partition);
+        }
+
+        Path file = archiveDirectory().resolve(partition + ".ndjson.gz");
+        // Postgres only streams with a fetch size inside a transaction
+        long rows = writeArchive(file, writer -> transactionTemplate.executeWithoutResult(status ->
+                streamRows("SELECT * FROM " + partition + " ORDER BY created_at, id", List.of(), writer)));
+
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        log.info("Archived partition {} ({} rows) to {}.", partition, rows, file);
+    }
+
+    /**
+     * Deletes and archives expired rows in batches. With {@code repository}
+     * null, rows of all repositories without an override are pruned.
+     */
+    private void archiveRepositoryRows(String repository, Instant cutoff) {
+        String label = repository == null ? "default" : repository.replace('/', '_');
+        Path file = archiveDirectory().resolve("review-" + label + "-" + ARCHIVE_TIMESTAMP.format(clock.instant())
+                + ".ndjson.gz");
+
+        StringBuilder filter = new StringBuilder("created_at < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.from(cutoff));
+        if (repository != null) {
+            filter.append(" AND lower(substring(pr_url FROM ?)) = ?");
+            args.add(REPOSITORY_REGEX);
+            args.add(repository);
+        } else if (!properties.getRepositories().isEmpty()) {
+            filter.append(" AND COALESCE(lower(substring(pr_url FROM ?)), '') <> ALL (?)");
+            args.add(REPOSITORY_REGEX);
+            args.add(properties.getRepositories().keySet().stream().map(r -> r.toLowerCase(Locale.ROOT))
+                    .toArray(String[]::new));
+        }
+        args.add(properties.getBatchSize());
+        String sql = "DELETE FROM review WHERE (id, created_at) IN (SELECT id, created_at FROM review WHERE "
+                + filter + " LIMIT ?) RETURNING *";
+
+        long rows = writeArchive(file, writer -> {
+            int deleted;
+            do {
+                // Each batch is written to the archive before its delete commits
+                deleted = transactionTemplate.execute(status -> {
+                    long written = streamRows(sql, args, writer);
+                    try {
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return (int) written;
+                });
+            } while (deleted >= properties.getBatchSize());
+        });
+        if (rows > 0) {
+            log.info("Archived {} expired reviews of {} to {}.", rows, repository == null ? "other repositories"
+                    : repository, file);
+        }
+    }
+
+    private void archiveOrphanedIterations(Instant cutoff) {
+        Path file = archiveDirectory().resolve("review_iteration-" + ARCHIVE_TIMESTAMP.format(clock.instant())
+                + ".ndjson.gz");
+        long rows = writeArchive(file, writer -> transactionTemplate.executeWithoutResult(status ->
+                streamRows("DELETE FROM review_iteration ri WHERE ri.push_at < ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM review r WHERE r.review_iteration_id = ri.id) RETURNING *",
+                        List.of(Timestamp.from(cutoff)), writer)));
+        if (rows > 0) {
+            log.info("Archived {} review iterations without reviews to {}.", rows, file);
+        }
+    }
+
+    /**
+     * Runs a query and writes every returned row to the archive as it is read.
+     *
+     * @return the number of rows written
+     */
+    private long streamRows(String sql, List<Object> args, NdjsonWriter writer) {
+        long[] count = { 0 };
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(properties.getBatchSize());
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof String[] values) {
+                    statement.setArray(i + 1, connection.createArrayOf("text", values));
+                } else {
+                    statement.setObject(i + 1, arg);
+                }
+            }
+            return statement;
+        }, resultSet -> {
+            try {
+                writer.writeRow(resultSet);
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return count[0];
+    }
+
+    @FunctionalInterface
+    private interface ArchiveBody {
+        void write(CountingNdjsonWriter writer);
+    }
+
+    private static final class CountingNdjsonWriter extends NdjsonWriter {
+        private long rows;
+
+        private CountingNdjsonWriter(OutputStream out, ObjectMapper objectMapper) {
+            super(out, objectMapper);
+        }
+
+        @Override
+        public void writeRow(ResultSet resultSet) throws IOException, SQLException {
+            super.writeRow(resultSet);
+            rows++;
+        }
+    }
+
+    /**
+     * Writes an archive to a temporary file and moves it into place once it is
+     * complete. Empty archives are discarded.
+     *
+     * @return the number of rows written
+     */
+    private long writeArchive(Path file, ArchiveBody body) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (CountingNdjsonWriter writer = new CountingNdjsonWriter(new GZIPOutputStream(Files.newOutputStream(temp)),
+                objectMapper)) {
+            body.write(writer);
+            rows = writer.rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive " + file, e);
+        }
+        try {
+            if (rows == 0) {
+                Files.deleteIfExists(temp);
+            } else {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not move archive " + file, e);
+        }
+        return rows;
+    }
+
+    private Path archiveDirectory() {
+        Path directory = Path.of(properties.getArchiveDirectory());
+        try {
+            return Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create archive directory " + directory, e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            partitioned = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()))
+                    && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('review'))",
+                            Boolean.class));
+        }
+        return partitioned;
+    }
+}
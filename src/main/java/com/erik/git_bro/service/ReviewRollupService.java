@@ -0,0 +1,130 @@
+package com.erik.git_bro.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.erik.git_bro.dto.RollupSummary;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewRollup;
+import com.erik.git_bro.model.ReviewRollupId;
+import com.erik.git_bro.model.RollupDimension;
+import com.erik.git_bro.repository.ReviewRollupRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains and reads the {@link ReviewRollup} read model.
+ * <p>
+ * New reviews are folded into per-group, per-day deltas in memory and applied
+ * with one upsert per touched row, inside the transaction that inserts the
+ * reviews. Reads only touch the rollup rows, so their cost grows with the
+ * number of groups and days rather than with the number of reviews.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewRollupService {
+
+    static final String ALL = "all";
+    static final String UNKNOWN = "unknown";
+
+    // https://github.com/owner/repo/pull/1 or https://api.github.com/repos/owner/repo/pulls/1
+    private static final Pattern REPOSITORY = Pattern.compile("(?:github\\.com/(?:repos/)?)([^/]+/[^/]+)/pulls?/");
+
+    private final ReviewRollupRepository reviewRollupRepository;
+
+    private static final class Delta {
+        private long count;
+        private BigDecimal severitySum = BigDecimal.ZERO;
+        private BigDecimal severityMax;
+
+        private void add(BigDecimal severity) {
+            count++;
+            if (severity != null) {
+                severitySum = severitySum.add(severity);
+                severityMax = severityMax == null ? severity : severityMax.max(severity);
+            }
+        }
+    }
+
+    /**
+     * Adds newly inserted reviews to the rollups. Must run in the transaction
+     * that inserts them so the read model never drifts from {@code review}.
+     *
+     * @param reviews The reviews that were just inserted.
+     */
+    @Transactional
+    public void record(Collection<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        // Sorted so concurrent transactions lock rollup rows in the same order
+        Map<ReviewRollupId, Delta> deltas = new TreeMap<>();
+        for (Review review : reviews) {
+            LocalDate day = review.getCreatedAt().atZone(ZoneOffset.UTC).toLocalDate();
+            String repository = repositoryOf(review.getPrUrl());
+            String category = review.getCategory() == null ? UNKNOWN : review.getCategory().name();
+
+            add(deltas, RollupDimension.PULL_REQUEST, pullRequestKey(repository, review.getPullRequestId()), day,
+                    review);
+            add(deltas, RollupDimension.AUTHOR, review.getUserId(), day, review);
+            add(deltas, RollupDimension.CATEGORY, category, day, review);
+            add(deltas, RollupDimension.REPOSITORY, repository, day, review);
+            add(deltas, RollupDimension.REPOSITORY_CATEGORY, repository + "|" + category, day, review);
+            add(deltas, RollupDimension.DAY, ALL, day, review);
+        }
+        deltas.forEach((id, delta) -> reviewRollupRepository.upsert(id.getDimension().name(), id.getGroupKey(),
+                id.getBucketDay(), delta.count, delta.severitySum, delta.severityMax));
+        log.debug("Applied {} reviews to {} rollup rows.", reviews.size(), deltas.size());
+    }
+
+    /**
+     * Returns the largest groups of a dimension over a date range.
+     */
+    @Transactional(readOnly = true)
+    public List<RollupSummary> top(RollupDimension dimension, LocalDate from, LocalDate to, int limit) {
+        return reviewRollupRepository.summarize(dimension, from, to, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Returns the per-day rollups of one group over a date range.
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewRollup> daily(RollupDimension dimension, String groupKey, LocalDate from, LocalDate to) {
+        return reviewRollupRepository.findByDimensionAndGroupKeyAndBucketDayBetweenOrderByBucketDay(dimension,
+                groupKey, from, to);
+    }
+
+    static String repositoryOf(String prUrl) {
+        if (prUrl == null) {
+            return UNKNOWN;
+        }
+        Matcher matcher = REPOSITORY.matcher(prUrl);
+        return matcher.find() ? matcher.group(1).toLowerCase() : UNKNOWN;
+    }
+
+    // PR numbers repeat across repositories
+    static String pullRequestKey(String repository, String pullRequestId) {
+        return repository + "#" + (pullRequestId == null || pullRequestId.isBlank() ? UNKNOWN : pullRequestId);
+    }
+
+    private void add(Map<ReviewRollupId, Delta> deltas, RollupDimension dimension, String groupKey, LocalDate day,
+            Review review) {
+        String key = groupKey == null || groupKey.isBlank() ? UNKNOWN : groupKey;
+        deltas.computeIfAbsent(new ReviewRollupId(dimension, key, day), id -> new Delta())
+                .add(review.getSeverityScore());
+    }
+}
@@ -0,0 +1,240 @@
+package com.erik.git_bro.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.ReviewSchedulerProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shares model and GitHub capacity fairly between installations and
+ * repositories.
+ * <p>
+ * Work units (one file of a PR, or one uploaded diff) are queued per
+ * repository, and repositories are grouped per installation (the repository
+ * owner). Free slots are handed out by deficit round robin on both levels:
+ * each round a queue is credited {@code quantum × weight} diff lines and may
+ * start units as long as their size fits its credit. A 500-file refactor
+ * therefore advances one round's worth of lines at a time while a two-file PR
+ * from another repository starts within the same round, instead of waiting
+ * behind the whole refactor in arrival order. Within a repository, units run
+ * in arrival order.
+ * </p>
+ * <p>
+ * Metrics: {@code review.scheduler.running}, {@code review.scheduler.queued}
+ * and {@code review.scheduler.wait}.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ReviewScheduler {
+
+    private record Task(String owner, String repo, long cost, CompletableFuture<Void> start) {
+    }
+
+    /**
+     * A queue in the scheduling tree: a repository's FIFO or a round robin
+     * over child queues.
+     */
+    private interface Node {
+        /** The task this node would start next, crediting children as needed. */
+        Task peek();
+
+        /** Removes the task returned by the preceding {@link #peek()}. */
+        Task poll();
+
+        boolean isEmpty();
+    }
+
+    private static final class Fifo implements Node {
+        private final Deque<Task> tasks = new ArrayDeque<>();
+
+        @Override
+        public Task peek() {
+            return tasks.peekFirst();
+        }
+
+        @Override
+        public Task poll() {
+            return tasks.pollFirst();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return tasks.isEmpty();
+        }
+    }
+
+    private static final class Flow {
+        private final String key;
+        private final int weight;
+        private final Node node;
+        private long deficit;
+        private boolean credited;
+
+        private Flow(String key, int weight, Node node) {
+            this.key = key;
+            this.weight = weight;
+            this.node = node;
+        }
+    }
+
+    private final class RoundRobin implements Node {
+        private final Map<String, Flow> flows = new HashMap<>();
+        private final Deque<Flow> active = new ArrayDeque<>();
+
+        Flow flow(String key, Supplier<Node> node) {
+            return flows.computeIfAbsent(key, k -> {
+                Flow flow = new Flow(k, weight(k), node.get());
+                active.addLast(flow);
+                return flow;
+            });
+        }
+
+        @Override
+        public Task peek() {
+            while (true) {
+                Flow flow = active.peekFirst();
+                if (!flow.credited) {
+                    flow.deficit += (long) quantum * flow.weight;
+                    flow.credited = true;
+                }
+                Task next = flow.node.peek();
+                if (next.cost() <= flow.deficit) {
+                    return next;
+                }
+                // Out of credit for this round: the next queue gets its turn
+                flow.credited = false;
+                active.addLast(active.pollFirst());
+            }
+        }
+
+        @Override
+        public Task poll() {
+            Flow flow = active.peekFirst();
+            Task task = flow.node.poll();
+            flow.deficit -= task.cost();
+            if (flow.node.isEmpty()) {
+                // An idle queue does not bank credit
+                active.pollFirst();
+                flows.remove(flow.key);
+            }
+            return task;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return active.isEmpty();
+        }
+    }
+
+    private final RoundRobin installations = new RoundRobin();
+    private final int concurrency;
+    private final int quantum;
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final Timer waitTimer;
+
+    private int running;
+    private int queued;
+
+    public ReviewScheduler(ReviewSchedulerProperties properties, MeterRegistry meterRegistry) {
+        this.concurrency = Math.max(1, properties.getConcurrency());
+        this.quantum = Math.max(1, properties.getQuantum());
+        properties.getWeights().forEach((key, weight) -> weights.put(key.toLowerCase(Locale.ROOT), weight));
+        this.waitTimer = Timer.builder("review.scheduler.wait")
+                .description("Time a review unit waited for its turn")
+                .register(meterRegistry);
+        Gauge.builder("review.scheduler.running", this, ReviewScheduler::running).register(meterRegistry);
+        Gauge.builder("review.scheduler.queued", this, ReviewScheduler::queued).register(meterRegistry);
+    }
+
+    /**
+     * Queues a unit of review work and starts it when its repository's turn
+     * comes. The slot is held until the returned future completes.
+     *
+     * @param owner The repository owner, i.e. the installation.
+     * @param repo  The repository name.
+     * @param cost  The size of the unit, in diff lines.
+     * @param work  Starts the work.
+     * @return the work's future
+     */
+    public <T> CompletableFuture<T> submit(String owner, String repo, long cost, Supplier<CompletableFuture<T>> work) {
+        String installation = owner.toLowerCase(Locale.ROOT);
+        String repository = installation + "/" + repo.toLowerCase(Locale.ROOT);
+        Task task = new Task(installation, repository, Math.max(1, cost), new CompletableFuture<>());
+        synchronized (this) {
+            RoundRobin repositories = (RoundRobin) installations.flow(installation, RoundRobin::new).node;
+            ((Fifo) repositories.flow(repository, Fifo::new).node).tasks.addLast(task);
+            queued++;
+        }
+        long queuedAt = System.nanoTime();
+        dispatch();
+        return task.start().thenCompose(ignored -> {
+            waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            CompletableFuture<T> result;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, failure) -> release());
+        });
+    }
+
+    /**
+     * The size of a diff in lines, used as the cost of reviewing it.
+     */
+    public static long cost(String diff) {
+        return diff == null ? 1 : diff.lines().count();
+    }
+
+    public synchronized int running() {
+        return running;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    private void release() {
+        synchronized (this) {
+            running--;
+        }
+        dispatch();
+    }
+
+    // Tasks are started outside the lock, since starting one runs its work on this thread
+    private void dispatch() {
+        while (true) {
+            Task next;
+            synchronized (this) {
+                if (running >= concurrency || installations.isEmpty()) {
+                    return;
+                }
+                installations.peek();
+                next = installations.poll();
+                queued--;
+                running++;
+            }
+            log.debug("Starting {} lines of {} ({} running, {} queued).", next.cost(), next.repo(), running(),
+                    queued());
+            next.start().complete(null);
+        }
+    }
+
+    private int weight(String key) {
+        return Math.max(1, weights.getOrDefault(key, 1));
+    }
+}
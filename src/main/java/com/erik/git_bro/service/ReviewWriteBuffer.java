@@ -0,0 +1,183 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewIteration;
+import com.erik.git_bro.util.LatencyHistograms;
+import com.erik.git_bro.util.ReviewEvents;
+import com.erik.git_bro.util.ReviewTracer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists review results, optionally grouping the writes of concurrent
+ * analyses into a single transaction.
+ * <p>
+ * With write-behind disabled (the default) every submission is saved right
+ * away. When enabled, a virtual thread drains whatever accumulated while the
+ * previous flush was running and commits it in one go, so under load many
+ * analyses share one commit and one set of JDBC batches. Either way the
+ * returned future only completes once the rows are committed; callers join it
+ * before answering, so nothing is acknowledged that is not durable.
+ * </p>
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewWriteBuffer implements SmartLifecycle {
+
+    private record PendingWrite(ReviewIteration iteration, List<Review> reviews, String pullRequest,
+            CompletableFuture<Void> done) {
+    }
+
+    private final ReviewIterationService reviewIterationService;
+    private final ReviewTracer reviewTracer;
+    private final LatencyHistograms latencyHistograms;
+
+    private final BlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    @Value("${app.review.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.review.write-behind.poll-interval:100ms}")
+    private Duration pollInterval = Duration.ofMillis(100);
+
+    @Value("${app.review.write-behind.max-batch:200}")
+    private int maxBatch = 200;
+
+    /**
+     * Saves the iteration and its new reviews.
+     *
+     * @param iteration The iteration the reviews belong to.
+     * @param reviews   The new reviews, each referencing {@code iteration}.
+     * @return a future that completes once the write is committed
+     */
+    public CompletableFuture<Void> submit(ReviewIteration iteration, List<Review> reviews) {
+        PendingWrite write = new PendingWrite(iteration, reviews, reviewTracer.pullRequest(),
+                new CompletableFuture<>());
+        if (!running) {
+            flush(List.of(write));
+            return write.done();
+        }
+        pending.add(write);
+        // Stopped between the check and the add: the flusher may already be gone
+        if (!running && pending.remove(write)) {
+            flush(List.of(write));
+        }
+        return write.done();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofVirtual().name("review-write-behind").start(this::flushLoop);
+        log.info("Review write-behind enabled, up to {} writes per flush.", maxBatch);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingWrite> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                PendingWrite first = pending.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingWrite> batch = new ArrayList<>();
+                batch.add(first);
+                pending.drainTo(batch, maxBatch - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        try {
+            commit(batch);
+            batch.forEach(write -> write.done().complete(null));
+            log.debug("Flushed {} review writes.", batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).done().completeExceptionally(e);
+                return;
+            }
+            // One bad write (e.g. a fingerprint raced in by another node) must not fail the others
+            log.warn("Batched flush of {} review writes failed, retrying one by one: {}", batch.size(),
+                    e.getMessage());
+            batch.forEach(write -> {
+                // Ids assigned by the rolled-back persist would turn the retry into a merge
+                write.reviews().forEach(review -> review.setId(null));
+                flush(List.of(write));
+            });
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        ReviewEvents.ReviewFlush flush = new ReviewEvents.ReviewFlush();
+        flush.begin();
+        long started = System.nanoTime();
+        List<ReviewIteration> iterations = new ArrayList<>();
+        List<Review> reviews = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            iterations.add(write.iteration());
+            reviews.addAll(write.reviews());
+        }
+        try {
+            reviewIterationService.saveWithReviews(iterations, reviews);
+            flush.succeeded = true;
+        } finally {
+            latencyHistograms.recordSince(LatencyHistograms.DATABASE, LatencyHistograms.FLUSH, started);
+            flush.end();
+            if (flush.shouldCommit()) {
+                flush.writes = batch.size();
+                flush.reviews = reviews.size();
+                // A batch of several reviews belongs to no single pull request
+                if (batch.size() == 1) {
+                    flush.pullRequest(batch.get(0).pullRequest());
+                }
+                flush.commit();
+            }
+        }
+    }
+}
@@ -4,13 +4,24 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.springframework.stereotype.Service;
 
 import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.dto.PullRequestPrefetch;
+import com.erik.git_bro.dto.PullRequestSnapshot;
+import com.erik.git_bro.dto.ReviewThread;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.erik.git_bro.util.ApiUrlProvider;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.AllArgsConstructor;
@@ -21,8 +32,17 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class GitHubAppService {
 
+    /** GitHub stops listing the files of a pull request after this many. */
+    static final int MAX_PULL_REQUEST_FILES = 3000;
+
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"next\"");
+
     private final GitHubAppTokenService gitHubAppTokenService;
+    private final GitHubGraphQlService gitHubGraphQlService;
+    private final ReviewTracer reviewTracer;
+    private final ApiUrlProvider apiUrlProvider;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
 
     /**
      * List repositories accessible to the GitHub App Installation.
@@ -39,7 +59,7 @@ public class GitHubAppService {
                 .header("Accept", "application/vnd.github+json")
                 .GET()
                 .build();
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        final HttpResponse<String> response = reviewTracer.send(client, request, HttpResponse.BodyHandlers.ofString(), "github");
 
         if (response.statusCode() != 200) {
             throw new RuntimeException("Failed to receive installation repos: " + response.body());
@@ -62,7 +82,7 @@ public class GitHubAppService {
                 .GET()
                 .build();
 
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        final HttpResponse<String> response = reviewTracer.send(client, request, HttpResponse.BodyHandlers.ofString(), "github");
         if (response.statusCode() != 200) {
             throw new RuntimeException("Failed to get SHA: " + response.body());
         }
@@ -75,25 +95,126 @@ public class GitHubAppService {
         final String installationId = this.gitHubAppTokenService.getInstallationId(owner, repo);
         final String token = this.gitHubAppTokenService.getInstallationToken(Long.parseLong(installationId));
         log.info("installationId: {}", installationId);
+        try {
+            return getDiffsAsync(token, owner, repo, pullNumber).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Fetches the unified diff of a pull request, the same content the GitHub
+     * Action used to upload, so reviews can be started from a webhook alone.
+     */
+    public String getPullRequestDiff(final String owner, final String repo, final int pullNumber) throws Exception {
+        final String installationId = this.gitHubAppTokenService.getInstallationId(owner, repo);
+        final String token = this.gitHubAppTokenService.getInstallationToken(Long.parseLong(installationId));
+        final HttpClient client = HttpClient.newHttpClient();
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("https://api.github.com/repos/" + owner + "/" + repo + "/pulls/" + pullNumber))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/vnd.github.v3.diff")
+                .GET()
+                .build();
+
+        final HttpResponse<String> response = reviewTracer.send(client, request, HttpResponse.BodyHandlers.ofString(), "github");
+        if (response.statusCode() != 200) {
+            throw new RuntimeException("Failed to get PR diff: " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * Lists the files changed between two commits, with their patches, using
+     * the compare API. Used to find what changed since the last reviewed commit.
+     */
+    public List<GitDiff> compareCommits(final String owner, final String repo, final String baseSha,
+            final String headSha) throws Exception {
+        final String installationId = this.gitHubAppTokenService.getInstallationId(owner, repo);
+        final String token = this.gitHubAppTokenService.getInstallationToken(Long.parseLong(installationId));
         final HttpClient client = HttpClient.newHttpClient();
         final HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(
-                        "https://api.github.com/repos/" + owner + "/" + repo + "/pulls/" + pullNumber + "/files"))
+                .uri(URI.create("https://api.github.com/repos/" + owner + "/" + repo + "/compare/" + baseSha + "..."
+                        + headSha))
                 .header("Authorization", "Bearer " + token)
                 .header("Accept", "application/vnd.github+json")
                 .GET()
                 .build();
 
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        final HttpResponse<String> response = reviewTracer.send(client, request, HttpResponse.BodyHandlers.ofString(), "github");
         if (response.statusCode() != 200) {
-            throw new RuntimeException("Failed to get Diff: " + response.body());
+            throw new RuntimeException("Failed to compare commits: " + response.body());
         }
-        log.info("REPONSE: {}", response.body());
 
-        final List<GitDiff> diffs = objectMapper.readValue(
-                response.body(),
-                new TypeReference<List<GitDiff>>() {
+        final JsonNode files = objectMapper.readTree(response.body()).path("files");
+        return objectMapper.convertValue(files, new TypeReference<List<GitDiff>>() {
+        });
+    }
+
+    /**
+     * Starts fetching the installation token, head SHA, changed files and
+     * review threads of a pull request in the background. As soon as the token
+     * is available, one GraphQL query (SHA and threads) and the REST files
+     * request are sent in parallel.
+     *
+     * @return the in-flight lookups
+     */
+    public PullRequestPrefetch prefetch(final String owner, final String repo, final int pullNumber) {
+        final CompletableFuture<String> token = this.gitHubAppTokenService.getInstallationTokenAsync(owner, repo);
+        final CompletableFuture<PullRequestSnapshot> snapshot = token
+                .thenCompose(t -> this.gitHubGraphQlService.fetchPullRequest(t, owner, repo, pullNumber));
+        final CompletableFuture<List<GitDiff>> files = token
+                .thenCompose(t -> getDiffsAsync(t, owner, repo, pullNumber));
+        final CompletableFuture<String> sha = snapshot.thenApply(PullRequestSnapshot::headSha);
+        final CompletableFuture<List<ReviewThread>> reviewThreads = snapshot
+                .thenApply(PullRequestSnapshot::reviewThreads);
+        return new PullRequestPrefetch(token, sha, files, reviewThreads);
+    }
+
+    /**
+     * Lists the changed files of a pull request with their patches. The files
+     * are fetched 100 per request, following the {@code next} link of each
+     * page, up to the {@value #MAX_PULL_REQUEST_FILES} files GitHub lists at
+     * most.
+     */
+    public CompletableFuture<List<GitDiff>> getDiffsAsync(final String token, final String owner, final String repo,
+            final int pullNumber) {
+        return getDiffPages(token, apiUrlProvider.getPullRequestFilesUrl(owner, repo, pullNumber), new ArrayList<>());
+    }
+
+    private CompletableFuture<List<GitDiff>> getDiffPages(final String token, final String url,
+            final List<GitDiff> diffs) {
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/vnd.github+json")
+                .GET()
+                .build();
+
+        return reviewTracer.sendAsync(httpClient, request, HttpResponse.BodyHandlers.ofString(), "github")
+                .thenCompose(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Failed to get Diff: " + response.body());
+                    }
+                    try {
+                        diffs.addAll(objectMapper.readValue(response.body(), new TypeReference<List<GitDiff>>() {
+                        }));
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to parse Diff: " + e.getMessage(), e);
+                    }
+                    final Optional<String> next = response.headers().firstValue("Link").flatMap(this::nextPage);
+                    if (next.isPresent() && diffs.size() >= MAX_PULL_REQUEST_FILES) {
+                        log.warn("Stopped listing files at {}: {} files.", url, diffs.size());
+                    }
+                    if (next.isEmpty() || diffs.size() >= MAX_PULL_REQUEST_FILES) {
+                        return CompletableFuture.completedFuture(diffs);
+                    }
+                    return getDiffPages(token, next.get(), diffs);
                 });
-        return diffs;
+    }
+
+    private Optional<String> nextPage(final String link) {
+        final Matcher matcher = NEXT_LINK.matcher(link);
+        return matcher.find() ? Optional.of(matcher.group(1)) : Optional.empty();
     }
 }
@@ -1,5 +1,9 @@
 package com.erik.git_bro.service.github;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.security.KeyFactory;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
@@ -7,6 +11,7 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -17,6 +22,7 @@ import org.springframework.stereotype.Service;
 
 import com.erik.git_bro.util.ApiUrlProvider;
 import com.erik.git_bro.util.GitHubRequestUtil;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.jose.jwk.RSAKey;
@@ -37,10 +43,12 @@ import okhttp3.Response;
 public class GitHubAppTokenService {
 
     private final ApiUrlProvider apiUrlProvider;
+    private final ReviewTracer reviewTracer;
     // got that here: https://github.com/settings/installations/71819645
     private final long INSTALLATION_ID = 71819645L; // TODO - Remove becuase this is my personal installation ID used
                                                     // for testing.
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
 
     @Value("${github.app.id}")
     private String appId;
@@ -212,4 +220,54 @@ public class GitHubAppTokenService {
         }
     }
 
+    /**
+     * Resolves the installation of a repository and exchanges it for an
+     * installation token without blocking the calling thread.
+     *
+     * @param owner the repository owner
+     * @param repo  the repository name
+     * @return a future completing with the installation access token
+     */
+    public CompletableFuture<String> getInstallationTokenAsync(final String owner, final String repo) {
+        final String githubToken;
+        try {
+            githubToken = createJwtToken();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final HttpRequest installationRequest = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrlProvider.getInstallationIdUrl(owner, repo)))
+                .header("Authorization", "Bearer " + githubToken)
+                .header("Accept", "application/vnd.github+json")
+                .GET()
+                .build();
+
+        return reviewTracer
+                .sendAsync(httpClient, installationRequest, HttpResponse.BodyHandlers.ofString(), "github")
+                .thenApply(response -> readField(response, "id", "Failed to get the installation ID: "))
+                .thenCompose(reviewTracer.wrap(installationId -> {
+                    final HttpRequest tokenRequest = HttpRequest.newBuilder()
+                            .uri(URI.create(apiUrlProvider.getInstallationTokenUrl(Long.parseLong(installationId))))
+                            .header("Authorization", "Bearer " + githubToken)
+                            .header("Accept", "application/vnd.github+json")
+                            .POST(HttpRequest.BodyPublishers.noBody())
+                            .build();
+                    return reviewTracer.sendAsync(httpClient, tokenRequest, HttpResponse.BodyHandlers.ofString(),
+                            "github");
+                }))
+                .thenApply(response -> readField(response, "token", "Failed to get installation token: "));
+    }
+
+    private String readField(final HttpResponse<String> response, final String field, final String errorMessage) {
+        if (response.statusCode() / 100 != 2) {
+            throw new RuntimeException(errorMessage + response.body());
+        }
+        try {
+            return objectMapper.readTree(response.body()).get(field).asText();
+        } catch (Exception e) {
+            throw new RuntimeException(errorMessage + e.getMessage(), e);
+        }
+    }
+
 }
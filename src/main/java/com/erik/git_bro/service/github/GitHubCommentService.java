@@ -11,9 +11,11 @@ import org.springframework.stereotype.Service;
 import com.erik.git_bro.dto.Issue;
 import com.erik.git_bro.util.API;
 import com.erik.git_bro.util.GitHubRequestUtil;
+import com.erik.git_bro.util.LatencyHistograms;
+import com.erik.git_bro.util.ReviewEvents;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -22,13 +24,20 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class GitHubCommentService {
 
-    private final OkHttpClient okClient = new OkHttpClient();
+    private final OkHttpClient okClient;
+    private final LatencyHistograms latencyHistograms;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    public GitHubCommentService(ReviewTracer reviewTracer, LatencyHistograms latencyHistograms) {
+        this.latencyHistograms = latencyHistograms;
+        this.okClient = new OkHttpClient.Builder()
+                .addInterceptor(reviewTracer.interceptor("github"))
+                .build();
+    }
+
     public void postBlockComments(
             String githubToken,
             String owner,
@@ -76,11 +85,24 @@ public class GitHubCommentService {
                 .post(RequestBody.create(jsonBody, MediaType.parse("application/json")))
                 .build();
 
+        ReviewEvents.CommentPost post = new ReviewEvents.CommentPost();
+        post.begin();
+        long started = System.nanoTime();
         try (Response response = okClient.newCall(request).execute()) {
+            post.status = response.code();
             if (!response.isSuccessful()) {
                 throw new IOException("GitHub comment failed: " + response.code() + " " + response.body().string());
             }
 
+        } finally {
+            latencyHistograms.recordSince(LatencyHistograms.GITHUB, LatencyHistograms.POST, started);
+            post.end();
+            if (post.shouldCommit()) {
+                post.pullRequest(ReviewTracer.pullRequestKey(owner, repo, pullNumber));
+                post.file = filePath;
+                post.line = lineNumber;
+                post.commit();
+            }
         }
     }
 
@@ -125,4 +147,26 @@ public class GitHubCommentService {
         }
     }
 
-}
\ No newline at end of file
+    public void postIssueComment(
+            String githubToken,
+            String owner,
+            String repo,
+            int issueNumber,
+            String commentBody) throws IOException {
+
+        String url = API.GIT_HUB_ISSUE_COMMENTS(owner, repo, issueNumber);
+
+        Request request = GitHubRequestUtil.withGitHubHeaders(
+                new Request.Builder().url(url), githubToken)
+                .post(RequestBody.create(objectMapper.writeValueAsString(Map.of("body", commentBody)),
+                        MediaType.parse("application/json")))
+                .build();
+
+        try (Response response = okClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("GitHub issue comment failed: " + response.code() + " " + response.body().string());
+            }
+        }
+    }
+
+}
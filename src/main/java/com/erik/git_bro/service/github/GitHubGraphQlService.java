@@ -0,0 +1,166 @@
+package com.erik.git_bro.service.github;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.dto.PullRequestSnapshot;
+import com.erik.git_bro.dto.ReviewThread;
+import com.erik.git_bro.util.ApiUrlProvider;
+import com.erik.git_bro.util.ReviewTracer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client for the GitHub GraphQL API.
+ * <p>
+ * Fetches the head commit and existing review threads of a pull request in one
+ * query instead of one REST call each, paging through the threads. Changed
+ * files are not part of the query: GraphQL does not expose their patches, so
+ * they are fetched over REST anyway.
+ * </p>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GitHubGraphQlService {
+
+    static final int PAGE_SIZE = 100;
+
+    static final String PULL_REQUEST_QUERY = """
+            query($owner: String!, $repo: String!, $number: Int!, $pageSize: Int!, $threadsCursor: String) {
+              repository(owner: $owner, name: $repo) {
+                pullRequest(number: $number) {
+                  headRefOid
+                  reviewThreads(first: $pageSize, after: $threadsCursor) {
+                    pageInfo { hasNextPage endCursor }
+                    nodes {
+                      id path line isResolved isOutdated
+                      comments(first: 1) { nodes { body } }
+                    }
+                  }
+                }
+              }
+            }
+            """;
+
+    private final ApiUrlProvider apiUrlProvider;
+    private final ReviewTracer reviewTracer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    /**
+     * Fetches the head SHA and review threads of a pull request, following
+     * pagination until the threads are exhausted.
+     *
+     * @param token      The installation access token.
+     * @param owner      The repository owner.
+     * @param repo       The repository name.
+     * @param pullNumber The pull request number.
+     * @return a future completing with the snapshot of the pull request
+     */
+    public CompletableFuture<PullRequestSnapshot> fetchPullRequest(final String token, final String owner,
+            final String repo, final int pullNumber) {
+        return fetchPage(token, owner, repo, pullNumber, new Accumulator());
+    }
+
+    private CompletableFuture<PullRequestSnapshot> fetchPage(final String token, final String owner,
+            final String repo, final int pullNumber, final Accumulator accumulator) {
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put("owner", owner);
+        variables.put("repo", repo);
+        variables.put("number", pullNumber);
+        variables.put("pageSize", PAGE_SIZE);
+        variables.put("threadsCursor", accumulator.threadsCursor);
+
+        final HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(URI.create(apiUrlProvider.getGraphQlUrl()))
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                            Map.of("query", PULL_REQUEST_QUERY, "variables", variables))))
+                    .build();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return reviewTracer.sendAsync(httpClient, request, HttpResponse.BodyHandlers.ofString(), "github")
+                .thenCompose(reviewTracer.wrap(response -> {
+                    accumulator.add(readPullRequest(response));
+                    if (accumulator.moreThreads) {
+                        return fetchPage(token, owner, repo, pullNumber, accumulator);
+                    }
+                    log.debug("Fetched PR {}/{}#{} in {} GraphQL page(s).", owner, repo, pullNumber,
+                            accumulator.pages);
+                    return CompletableFuture.completedFuture(accumulator.toSnapshot());
+                }));
+    }
+
+    private JsonNode readPullRequest(final HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new RuntimeException("GraphQL request failed: " + response.body());
+        }
+        final JsonNode root;
+        try {
+            root = objectMapper.readTree(response.body());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse GraphQL response: " + e.getMessage(), e);
+        }
+        final JsonNode errors = root.path("errors");
+        if (errors.isArray() && !errors.isEmpty()) {
+            throw new RuntimeException("GraphQL request failed: " + errors.get(0).path("message").asText());
+        }
+        final JsonNode pullRequest = root.path("data").path("repository").path("pullRequest");
+        if (pullRequest.isMissingNode() || pullRequest.isNull()) {
+            throw new RuntimeException("Pull request not found: " + response.body());
+        }
+        return pullRequest;
+    }
+
+    /**
+     * Collects the pages of review threads and tracks their cursor.
+     */
+    private static final class Accumulator {
+        private String headSha;
+        private final List<ReviewThread> threads = new ArrayList<>();
+        private String threadsCursor;
+        private boolean moreThreads = true;
+        private int pages;
+
+        private void add(final JsonNode pullRequest) {
+            pages++;
+            headSha = pullRequest.path("headRefOid").asText(null);
+
+            final JsonNode connection = pullRequest.path("reviewThreads");
+            for (JsonNode node : connection.path("nodes")) {
+                final JsonNode line = node.path("line");
+                threads.add(new ReviewThread(
+                        node.path("id").asText(),
+                        node.path("path").asText(),
+                        line.isNumber() ? line.asInt() : null,
+                        node.path("isResolved").asBoolean(),
+                        node.path("isOutdated").asBoolean(),
+                        node.path("comments").path("nodes").path(0).path("body").asText("")));
+            }
+            moreThreads = connection.path("pageInfo").path("hasNextPage").asBoolean(false);
+            threadsCursor = connection.path("pageInfo").path("endCursor").asText(null);
+        }
+
+        private PullRequestSnapshot toSnapshot() {
+            return new PullRequestSnapshot(headSha, List.copyOf(threads));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.erik.git_bro.service.github;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.erik.git_bro.config.AiProviderProperties;
+import com.erik.git_bro.dto.ReviewJobRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles the GitHub side of webhook ingestion: signature verification and
+ * translation of {@code pull_request} payloads into review jobs. Delivery
+ * de-duplication is enforced by the unique delivery ID of the job queue.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GitHubWebhookService {
+
+    private static final String SIGNATURE_PREFIX = "sha256=";
+    private static final Set<String> REVIEWABLE_ACTIONS = Set.of("opened", "synchronize", "reopened");
+
+    private final AiProviderProperties aiProviderProperties;
+
+    @Value("${github.webhook.secret:}")
+    private String webhookSecret;
+
+    /**
+     * Verifies the {@code X-Hub-Signature-256} header against the raw payload
+     * using the configured webhook secret. Fails closed when no secret is set.
+     *
+     * @param payload         the raw request body, exactly as received
+     * @param signatureHeader the value of the {@code X-Hub-Signature-256} header
+     * @return true if the signature matches, false otherwise
+     */
+    public boolean isValidSignature(byte[] payload, String signatureHeader) {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            log.warn("Rejecting webhook: github.webhook.secret is not configured.");
+            return false;
+        }
+        if (signatureHeader == null || !signatureHeader.startsWith(SIGNATURE_PREFIX)) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(payload);
+            byte[] provided = HexFormat.of().parseHex(signatureHeader.substring(SIGNATURE_PREFIX.length()));
+            // Constant-time comparison so the signature cannot be guessed byte by byte
+            return MessageDigest.isEqual(expected, provided);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejecting webhook: malformed signature header.");
+            return false;
+        } catch (Exception e) {
+            log.error("Could not compute webhook signature", e);
+            return false;
+        }
+    }
+
+    /**
+     * Translates a {@code pull_request} event payload into a review job.
+     *
+     * @param deliveryId the delivery ID of the event
+     * @param payload    the parsed event payload
+     * @return the review job, or empty if the action does not warrant a review
+     */
+    public Optional<ReviewJobRequest> toReviewJob(String deliveryId, JsonNode payload) {
+        String action = payload.path("action").asText();
+        if (!REVIEWABLE_ACTIONS.contains(action)) {
+            log.info("Ignoring pull_request action '{}' for delivery {}", action, deliveryId);
+            return Optional.empty();
+        }
+
+        JsonNode pullRequest = payload.path("pull_request");
+        JsonNode repository = payload.path("repository");
+        JsonNode installation = payload.path("installation");
+
+        return Optional.of(new ReviewJobRequest(
+                deliveryId,
+                installation.hasNonNull("id") ? installation.get("id").asLong() : null,
+                repository.path("owner").path("login").asText(),
+                repository.path("name").asText(),
+                payload.path("number").asInt(),
+                pullRequest.path("head").path("sha").asText(),
+                pullRequest.path("html_url").asText(),
+                pullRequest.path("user").path("login").asText(),
+                aiProviderProperties.getAiProvider()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.erik.git_bro.service.github;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.dto.ReviewThread;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the review comments that already exist on a pull request,
+ * keyed by (path, line, normalized body hash).
+ * <p>
+ * The fingerprint check in the {@code review} table only knows about comments
+ * this instance persisted. The index is seeded from the review threads GitHub
+ * reports for the PR and updated after every successful POST, so identical
+ * comments are skipped even after a database reset or when another node
+ * already posted them. Entries stay warm across iterations of the same PR and
+ * are dropped after a period without use.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ReviewThreadIndex {
+
+    record Key(String path, int line, String bodyHash) {
+    }
+
+    private static final class Entry {
+        private final Set<Key> keys = ConcurrentHashMap.newKeySet();
+        private volatile Instant lastUsed;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    @Value("${app.review.thread-index-ttl:24h}")
+    private Duration ttl = Duration.ofHours(24);
+
+    public ReviewThreadIndex() {
+        this(Clock.systemUTC());
+    }
+
+    ReviewThreadIndex(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Adds the existing review threads of a pull request to its index. Threads
+     * that no longer map to a line (outdated) are ignored.
+     */
+    public void load(String owner, String repo, int pullNumber, List<ReviewThread> threads) {
+        evictExpired();
+        Entry entry = entry(owner, repo, pullNumber);
+        for (ReviewThread thread : threads) {
+            if (thread.line() != null) {
+                entry.keys.add(key(thread.path(), thread.line(), thread.body()));
+            }
+        }
+        log.debug("Review thread index for {}/{}#{} holds {} comments.", owner, repo, pullNumber, entry.keys.size());
+    }
+
+    /**
+     * Tells whether an equivalent comment already exists at the given line.
+     */
+    public boolean contains(String owner, String repo, int pullNumber, String path, int line, String body) {
+        Entry entry = entries.get(prKey(owner, repo, pullNumber));
+        return entry != null && entry.keys.contains(key(path, line, body));
+    }
+
+    /**
+     * Records a comment that was just posted, so later iterations skip it
+     * before GitHub reports it back as a thread.
+     */
+    public void record(String owner, String repo, int pullNumber, String path, int line, String body) {
+        entry(owner, repo, pullNumber).keys.add(key(path, line, body));
+    }
+
+    private Entry entry(String owner, String repo, int pullNumber) {
+        Entry entry = entries.computeIfAbsent(prKey(owner, repo, pullNumber), k -> new Entry());
+        entry.lastUsed = clock.instant();
+        return entry;
+    }
+
+    private void evictExpired() {
+        Instant cutoff = clock.instant().minus(ttl);
+        entries.values().removeIf(entry -> entry.lastUsed.isBefore(cutoff));
+    }
+
+    private static String prKey(String owner, String repo, int pullNumber) {
+        return (owner + "/" + repo + "#" + pullNumber).toLowerCase(Locale.ROOT);
+    }
+
+    static Key key(String path, int line, String body) {
+        String normalizedPath = path == null ? "" : path.trim().replace("\\", "/").replaceFirst("^\\./", "");
+        return new Key(normalizedPath, line, hash(normalizeBody(body)));
+    }
+
+    static String normalizeBody(String body) {
+        return body == null ? "" : body.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String hash(String normalizedBody) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizedBody.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -18,6 +18,11 @@ public class API {
                 "https://api.github.com/repos/%s/%s/pulls/%d/reviews", owner, repo, pullNumber);
     }
 
+    public static String GIT_HUB_ISSUE_COMMENTS(final String owner, final String repo, final int issueNumber) {
+        return String.format(
+                "https://api.github.com/repos/%s/%s/issues/%d/comments", owner, repo, issueNumber);
+    }
+
     public static String GEMINI_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-pro:generateContent";
 
 }
@@ -0,0 +1,242 @@
+package com.erik.git_bro.util;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.AdmissionProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control for reviews started through the API.
+ * <p>
+ * Every admitted review holds a slot until its future completes. When all
+ * slots are taken, requests wait in a bounded FIFO queue for at most
+ * {@code app.review.admission.max-wait}; a full queue or an expired wait fails
+ * the request with a {@link Rejected} that carries a {@code Retry-After} hint,
+ * so a burst of PR events turns into quick 429s instead of unbounded futures,
+ * HTTP client queues and heap growth.
+ * </p>
+ * <p>
+ * In {@code fixed} mode the limit is {@code app.review.admission.limit}. In
+ * {@code adaptive} mode it follows AIMD: it grows by one per window of
+ * successful reviews while the limit is actually in use, and is multiplied by
+ * {@code backoff-ratio} when a review is slower than {@code target-latency} or
+ * fails with a timeout or rejection further down (model, GitHub, database
+ * bulkhead).
+ * </p>
+ * <p>
+ * Metrics: {@code review.admission.inflight}, {@code review.admission.queued},
+ * {@code review.admission.limit}, {@code review.admission.wait} and
+ * {@code review.admission.rejected} (tagged with the reason).
+ * </p>
+ */
+@Component
+@Slf4j
+public class AdmissionLimiter {
+
+    /**
+     * Raised when a request is not admitted.
+     */
+    public static class Rejected extends RejectedExecutionException {
+        private final Duration retryAfter;
+
+        public Rejected(String message, Duration retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration retryAfter() {
+            return retryAfter;
+        }
+    }
+
+    private final AdmissionProperties properties;
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private final Timer waitTimer;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    private int inFlight;
+    private double limit;
+    private double averageLatencyNanos;
+
+    public AdmissionLimiter(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = properties.getMode() == AdmissionProperties.Mode.ADAPTIVE
+                ? clamp(properties.getLimit())
+                : properties.getLimit();
+        this.waitTimer = Timer.builder("review.admission.wait")
+                .description("Time a review waited for an admission slot")
+                .register(meterRegistry);
+        this.queueFull = Counter.builder("review.admission.rejected").tag("reason", "queue-full")
+                .description("Reviews rejected by admission control")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("review.admission.rejected").tag("reason", "timeout")
+                .description("Reviews rejected by admission control")
+                .register(meterRegistry);
+        Gauge.builder("review.admission.inflight", this, AdmissionLimiter::inFlight).register(meterRegistry);
+        Gauge.builder("review.admission.queued", this, AdmissionLimiter::queued).register(meterRegistry);
+        Gauge.builder("review.admission.limit", this, AdmissionLimiter::limit).register(meterRegistry);
+        log.info("Review admission: {} mode, limit {}, queue {}.", properties.getMode(), properties.getLimit(),
+                properties.getQueueSize());
+    }
+
+    /**
+     * Starts {@code review} once a slot is free and holds the slot until the
+     * returned future completes.
+     *
+     * @return the review's future, or a future failed with {@link Rejected}
+     *         when the request was not admitted
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> review) {
+        long queuedAt = System.nanoTime();
+        return acquire().thenCompose(admitted -> {
+            long start = System.nanoTime();
+            waitTimer.record(start - queuedAt, TimeUnit.NANOSECONDS);
+            CompletableFuture<T> result;
+            try {
+                result = review.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, failure) -> release(System.nanoTime() - start, failure));
+        });
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return waiting.size();
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    private CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        synchronized (this) {
+            if (inFlight < (int) limit && waiting.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiting.size() >= properties.getQueueSize()) {
+                queueFull.increment();
+                return CompletableFuture.failedFuture(rejected("Review queue is full"));
+            }
+            waiting.addLast(slot);
+        }
+        CompletableFuture.delayedExecutor(properties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS)
+                .execute(() -> expire(slot));
+        return slot;
+    }
+
+    private void expire(CompletableFuture<Void> slot) {
+        Rejected rejected;
+        synchronized (this) {
+            if (!waiting.remove(slot)) {
+                return;
+            }
+            rejected = rejected("No review slot within " + properties.getMaxWait());
+        }
+        timedOut.increment();
+        slot.completeExceptionally(rejected);
+    }
+
+    private void release(long latencyNanos, Throwable failure) {
+        synchronized (this) {
+            inFlight--;
+            record(latencyNanos, failure);
+        }
+        dispatch();
+    }
+
+    /**
+     * Hands free slots to waiting requests. Slots are granted outside the
+     * lock, since completing a waiter starts its review on this thread.
+     */
+    private void dispatch() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                if (inFlight >= (int) limit || waiting.isEmpty()) {
+                    return;
+                }
+                next = waiting.pollFirst();
+                inFlight++;
+            }
+            next.complete(null);
+        }
+    }
+
+    private void record(long latencyNanos, Throwable failure) {
+        averageLatencyNanos = averageLatencyNanos == 0
+                ? latencyNanos
+                : averageLatencyNanos * 0.8 + latencyNanos * 0.2;
+        if (properties.getMode() != AdmissionProperties.Mode.ADAPTIVE) {
+            return;
+        }
+        double previous = limit;
+        if (isOverload(failure) || latencyNanos > properties.getTargetLatency().toNanos()) {
+            limit = clamp(limit * properties.getBackoffRatio());
+        } else if (failure == null && inFlight + 1 >= limit / 2) {
+            // Only grow while the limit is actually in use, or it drifts up while idle
+            limit = clamp(limit + 1 / limit);
+        }
+        if ((int) limit != (int) previous) {
+            log.debug("Review admission limit {} -> {}.", (int) previous, (int) limit);
+        }
+    }
+
+    private Rejected rejected(String message) {
+        return new Rejected(message + " (" + inFlight + " in flight, " + waiting.size() + " waiting)",
+                retryAfter());
+    }
+
+    /**
+     * Roughly how long until the current queue drains: one average review per
+     * batch of {@code limit} waiters, at least one second.
+     */
+    private Duration retryAfter() {
+        double batches = Math.floor((double) waiting.size() / Math.max(1, (int) limit)) + 1;
+        long nanos = (long) (averageLatencyNanos * batches);
+        Duration estimate = Duration.ofNanos(nanos);
+        if (estimate.compareTo(Duration.ofSeconds(1)) < 0) {
+            return Duration.ofSeconds(1);
+        }
+        return estimate.compareTo(properties.getMaxRetryAfter()) > 0 ? properties.getMaxRetryAfter() : estimate;
+    }
+
+    private double clamp(double value) {
+        return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), value));
+    }
+
+    private static boolean isOverload(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof TimeoutException
+                || cause instanceof HttpTimeoutException
+                || cause instanceof RejectedExecutionException;
+    }
+}
@@ -19,10 +19,19 @@ public class ApiUrlProvider {
         return String.format("%s/repos/%s/%s/pulls/%s/comments", githubApiBaseUrl, owner, repo, pullNumber);
     }
 
+    // 100 is the largest page GitHub serves; later pages come from the Link header
+    public String getPullRequestFilesUrl(String owner, String repo, int pullNumber) {
+        return String.format("%s/repos/%s/%s/pulls/%d/files?per_page=100", githubApiBaseUrl, owner, repo, pullNumber);
+    }
+
     public String getInstallationIdUrl(String owner, String repo) {
         return String.format("%s/repos/%s/%s/installation",githubApiBaseUrl, owner, repo);
     }
 
+    public String getGraphQlUrl() {
+        return String.format("%s/graphql", githubApiBaseUrl);
+    }
+
     public String getGeminiUrl() {
         return geminiBaseUrl;
     }
@@ -0,0 +1,114 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounds how many review tasks use the database at once.
+ * <p>
+ * Analyses run on virtual threads, so thousands of them can reach the
+ * persistence step together while the Hikari pool only has a handful of
+ * connections. Without a limit they all queue inside the pool and fail with
+ * connection timeouts. The bulkhead is a fair semaphore sized from the pool:
+ * waiting tasks are admitted in arrival order, a task that waits longer than
+ * {@code app.db.bulkhead.max-wait} is rejected with a
+ * {@link RejectedExecutionException}, and a few connections stay reserved for
+ * background work (write-behind flushes, the job queue, retention) that does
+ * not go through the bulkhead.
+ * </p>
+ * <p>
+ * Metrics: {@code db.bulkhead.wait} (time to get a permit),
+ * {@code db.bulkhead.rejected}, {@code db.bulkhead.available} and
+ * {@code db.bulkhead.queued}.
+ * </p>
+ */
+@Component
+@Slf4j
+public class DbBulkhead {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final Semaphore permits;
+    private final int size;
+    private final Duration maxWait;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public DbBulkhead(DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${app.db.bulkhead.permits:0}") int configuredPermits,
+            @Value("${app.db.bulkhead.reserved:1}") int reserved,
+            @Value("${app.db.bulkhead.max-wait:10s}") Duration maxWait) {
+        this.size = configuredPermits > 0 ? configuredPermits : Math.max(1, poolSize(dataSource) - reserved);
+        this.permits = new Semaphore(size, true);
+        this.maxWait = maxWait;
+        this.waitTimer = Timer.builder("db.bulkhead.wait")
+                .description("Time spent waiting for a database permit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("db.bulkhead.rejected")
+                .description("Tasks rejected because no database permit became free in time")
+                .register(meterRegistry);
+        Gauge.builder("db.bulkhead.available", permits, Semaphore::availablePermits).register(meterRegistry);
+        Gauge.builder("db.bulkhead.queued", permits, Semaphore::getQueueLength).register(meterRegistry);
+        log.info("Database bulkhead admits {} concurrent tasks.", size);
+    }
+
+    /**
+     * Runs {@code work} once a permit is free.
+     *
+     * @throws RejectedExecutionException if no permit became free within the
+     *                                    configured wait
+     */
+    public <T> T call(Supplier<T> work) {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a database permit", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new RejectedExecutionException("No database permit within " + maxWait + " (" + size
+                    + " permits, " + permits.getQueueLength() + " waiting)");
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (Exception e) {
+            log.debug("Could not read the connection pool size: {}", e.getMessage());
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
@@ -0,0 +1,220 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.LatencyProperties;
+import com.erik.git_bro.dto.LatencyPercentiles;
+import com.erik.git_bro.dto.StageLatency;
+
+/**
+ * Rolling latency histograms per provider and pipeline stage.
+ * <p>
+ * Each provider and stage has an HdrHistogram {@link Recorder}, so recording
+ * a latency is wait-free on the recording thread and never contends with
+ * readers. Every {@code app.latency.interval} the recorder's interval
+ * histogram is moved into a ring holding the longest configured window;
+ * percentiles over a window add up its most recent intervals. Values
+ * recorded since the last rotation are not visible yet, so a window lags by
+ * at most one interval.
+ * </p>
+ * <p>
+ * Besides the latency endpoint, {@link #percentiles} and
+ * {@link #valueAtPercentile} are meant for routing and hedging decisions,
+ * e.g. hedging a model call once it runs past that model's recent p99.
+ * </p>
+ */
+@Component
+public class LatencyHistograms {
+
+    public static final String PROMPT = "prompt";
+    public static final String MODEL = "model";
+    /**
+     * Model calls cancelled before they answered, by the review deadline or a
+     * newer push. They are counted under {@link #MODEL} as well, with the time
+     * they ran until cancelled, which is a lower bound of their latency.
+     */
+    public static final String MODEL_TIMEOUT = "model.timeout";
+    public static final String PARSE = "parse";
+    public static final String FLUSH = "flush";
+    public static final String POST = "post";
+
+    public static final String DATABASE = "database";
+    public static final String GITHUB = "github";
+
+    private record Key(String provider, String stage) {
+    }
+
+    private final LatencyProperties properties;
+    private final Duration interval;
+    private final int slots;
+    private final Map<Key, Intervals> histograms = new ConcurrentHashMap<>();
+
+    public LatencyHistograms(LatencyProperties properties) {
+        this.properties = properties;
+        this.interval = properties.getInterval();
+        Duration longest = properties.getWindows().stream()
+                .max(Comparator.naturalOrder())
+                .orElse(interval);
+        this.slots = intervalsIn(longest);
+    }
+
+    /**
+     * Records how long a stage took for a provider.
+     */
+    public void record(String provider, String stage, long nanos) {
+        if (!properties.isEnabled() || nanos < 0) {
+            return;
+        }
+        histograms.computeIfAbsent(new Key(provider, stage), key -> new Intervals())
+                .record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void record(String provider, String stage, Duration duration) {
+        record(provider, stage, duration.toNanos());
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading.
+     */
+    public void recordSince(String provider, String stage, long startNanos) {
+        record(provider, stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Moves every recorder on to a new interval.
+     */
+    @Scheduled(fixedRateString = "${app.latency.interval:10s}")
+    public void rotate() {
+        histograms.values().forEach(Intervals::rotate);
+    }
+
+    /**
+     * Percentiles of a stage over the most recent {@code window}, or empty if
+     * nothing was recorded in it.
+     */
+    public Optional<LatencyPercentiles> percentiles(String provider, String stage, Duration window) {
+        return histogram(provider, stage, window).map(LatencyHistograms::percentiles);
+    }
+
+    /**
+     * A single percentile of a stage over the most recent {@code window}, or
+     * empty if nothing was recorded in it.
+     */
+    public Optional<Duration> valueAtPercentile(String provider, String stage, Duration window, double percentile) {
+        return histogram(provider, stage, window)
+                .map(histogram -> Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(histogram.getValueAtPercentile(percentile))));
+    }
+
+    /**
+     * Percentiles over every configured window for the stages matching the
+     * given provider and stage; {@code null} matches any.
+     */
+    public List<StageLatency> snapshot(String provider, String stage) {
+        List<StageLatency> stages = new ArrayList<>();
+        histograms.keySet().stream()
+                .filter(key -> provider == null || key.provider().equalsIgnoreCase(provider))
+                .filter(key -> stage == null || key.stage().equalsIgnoreCase(stage))
+                .sorted(Comparator.comparing(Key::provider).thenComparing(Key::stage))
+                .forEach(key -> {
+                    Map<String, LatencyPercentiles> windows = new LinkedHashMap<>();
+                    for (Duration window : properties.getWindows()) {
+                        percentiles(key.provider(), key.stage(), window)
+                                .ifPresent(percentiles -> windows.put(label(window), percentiles));
+                    }
+                    if (!windows.isEmpty()) {
+                        stages.add(new StageLatency(key.provider(), key.stage(), windows));
+                    }
+                });
+        return stages;
+    }
+
+    private Optional<Histogram> histogram(String provider, String stage, Duration window) {
+        Intervals intervals = histograms.get(new Key(provider, stage));
+        if (intervals == null) {
+            return Optional.empty();
+        }
+        Histogram histogram = intervals.latest(intervalsIn(window));
+        return histogram == null || histogram.getTotalCount() == 0 ? Optional.empty() : Optional.of(histogram);
+    }
+
+    private int intervalsIn(Duration window) {
+        long intervalMillis = Math.max(1, interval.toMillis());
+        return (int) Math.max(1, (window.toMillis() + intervalMillis - 1) / intervalMillis);
+    }
+
+    private static LatencyPercentiles percentiles(Histogram histogram) {
+        return new LatencyPercentiles(
+                histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    static String label(Duration window) {
+        long seconds = window.toSeconds();
+        if (seconds > 0 && seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds > 0 && seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+
+    /**
+     * The recorder of one provider and stage and its ring of past intervals,
+     * newest last. Only rotation and reads lock; recording goes straight to
+     * the recorder.
+     */
+    private final class Intervals {
+
+        private final Recorder recorder = new Recorder(properties.getSignificantDigits(), true);
+        private final Histogram[] ring = new Histogram[slots];
+        private int next;
+
+        void record(long micros) {
+            recorder.recordValue(micros);
+        }
+
+        synchronized void rotate() {
+            // The interval falling out of the ring is recycled for the new one
+            ring[next] = recorder.getIntervalHistogram(ring[next]);
+            next = (next + 1) % ring.length;
+        }
+
+        synchronized Histogram latest(int count) {
+            Histogram sum = null;
+            for (int i = 1; i <= Math.min(count, ring.length); i++) {
+                Histogram interval = ring[Math.floorMod(next - i, ring.length)];
+                if (interval == null) {
+                    break;
+                }
+                if (sum == null) {
+                    sum = interval.copy();
+                } else {
+                    sum.add(interval);
+                }
+            }
+            return sum;
+        }
+    }
+}
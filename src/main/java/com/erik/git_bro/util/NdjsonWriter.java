@@ -0,0 +1,77 @@
+package com.erik.git_bro.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.temporal.TemporalAccessor;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes newline-delimited JSON, one object per line, straight to an output
+ * stream without buffering the whole result.
+ */
+public class NdjsonWriter implements Closeable {
+
+    private static final byte[] NEWLINE = { '\n' };
+
+    private final OutputStream out;
+    private final ObjectMapper objectMapper;
+
+    public NdjsonWriter(OutputStream out, ObjectMapper objectMapper) {
+        this.out = out;
+        this.objectMapper = objectMapper.copy().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public void write(Object value) throws IOException {
+        objectMapper.writeValue(out, value);
+        out.write(NEWLINE);
+    }
+
+    /**
+     * Writes the current row of a result set as an object keyed by column
+     * label. Timestamps are written as ISO-8601 instants and binary columns as
+     * Base64.
+     */
+    public void writeRow(ResultSet resultSet) throws IOException, SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            row.put(metaData.getColumnLabel(i), toJsonValue(resultSet.getObject(i)));
+        }
+        write(row);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static Object toJsonValue(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant().toString();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof TemporalAccessor || value instanceof java.util.UUID) {
+            return value.toString();
+        }
+        if (value instanceof byte[] bytes) {
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        return value;
+    }
+}
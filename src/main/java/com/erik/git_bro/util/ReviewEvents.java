@@ -0,0 +1,124 @@
+package com.erik.git_bro.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the review stages.
+ * <p>
+ * Each stage of a review commits one event: building the prompt, waiting on
+ * the model, parsing its answer, flushing the reviews to the database and
+ * posting a comment. They are cheap enough to stay enabled, and
+ * {@link ReviewFlightRecorder} records them together with the JDK's virtual
+ * thread pinning events, so a slow review shows up next to the pinned
+ * carrier threads behind it. Every event names the repository and pull
+ * request it was committed for, if known.
+ * </p>
+ */
+public final class ReviewEvents {
+
+    private ReviewEvents() {
+    }
+
+    @Category({ "Git Bro", "Review" })
+    @StackTrace(false)
+    public abstract static class ReviewEvent extends Event {
+
+        @Label("Repository")
+        String repository;
+
+        @Label("Pull Request")
+        String pullRequest;
+
+        /**
+         * Sets the repository and pull request from a key as built by
+         * {@link ReviewTracer#pullRequestKey}.
+         */
+        public void pullRequest(String key) {
+            if (key == null) {
+                return;
+            }
+            int number = key.lastIndexOf('#');
+            pullRequest = key;
+            repository = number < 0 ? key : key.substring(0, number);
+        }
+    }
+
+    @Name("com.erik.git_bro.PromptBuilt")
+    @Label("Prompt Built")
+    @Description("A review prompt was built for a file")
+    public static class PromptBuilt extends ReviewEvent {
+
+        @Label("File")
+        public String file;
+
+        @Label("Prompt Length")
+        @Description("Characters sent to the model, diff included")
+        public int promptLength;
+    }
+
+    @Name("com.erik.git_bro.ModelCall")
+    @Label("Model Call")
+    @Description("Waiting on the answer of a model")
+    public static class ModelCall extends ReviewEvent {
+
+        @Label("Model")
+        public String model;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.erik.git_bro.FeedbackParsed")
+    @Label("Feedback Parsed")
+    @Description("The JSON answer of a model was parsed into issues")
+    public static class FeedbackParsed extends ReviewEvent {
+
+        @Label("Feedback Length")
+        @Description("Characters of the model's answer")
+        public int feedbackLength;
+
+        @Label("Issues")
+        public int issues;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.erik.git_bro.ReviewFlush")
+    @Label("Review Flush")
+    @Description("Review iterations and their reviews were committed to the database")
+    public static class ReviewFlush extends ReviewEvent {
+
+        @Label("Writes")
+        public int writes;
+
+        @Label("Reviews")
+        public int reviews;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.erik.git_bro.CommentPost")
+    @Label("Comment Post")
+    @Description("An inline comment was posted to GitHub")
+    public static class CommentPost extends ReviewEvent {
+
+        @Label("File")
+        public String file;
+
+        @Label("Line")
+        public int line;
+
+        @Label("Status")
+        public int status;
+    }
+}
@@ -0,0 +1,133 @@
+package com.erik.git_bro.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.FlightRecorderProperties;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records the {@link ReviewEvents} with the JDK Flight Recorder.
+ * <p>
+ * An always-on recording keeps the review events and the virtual thread
+ * pinned and submit-failed events of the last {@code app.jfr.max-age}, to be
+ * dumped with {@code jcmd <pid> JFR.dump name=git-bro}. On-demand recordings
+ * add the JDK's default settings for a given time and are returned as a
+ * {@code .jfr} file; only one runs at a time.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ReviewFlightRecorder implements SmartLifecycle {
+
+    /**
+     * Thrown when an on-demand recording is asked for while another one runs.
+     */
+    public static class RecordingInProgress extends IllegalStateException {
+        public RecordingInProgress() {
+            super("An on-demand recording is already running");
+        }
+    }
+
+    static final String RECORDING_NAME = "git-bro";
+
+    static final List<Class<? extends Event>> EVENTS = List.of(
+            ReviewEvents.PromptBuilt.class,
+            ReviewEvents.ModelCall.class,
+            ReviewEvents.FeedbackParsed.class,
+            ReviewEvents.ReviewFlush.class,
+            ReviewEvents.CommentPost.class);
+
+    private final FlightRecorderProperties properties;
+    private final AtomicBoolean onDemand = new AtomicBoolean();
+    private Recording continuous;
+
+    public ReviewFlightRecorder(FlightRecorderProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!properties.isEnabled() || continuous != null) {
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("JDK Flight Recorder is not available, review events are not recorded.");
+            return;
+        }
+        Recording recording = configure(new Recording());
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(properties.getMaxAge());
+        recording.setMaxSize(properties.getMaxSize().toBytes());
+        recording.start();
+        continuous = recording;
+        log.info("Recording review events with JFR, keeping the last {}.", properties.getMaxAge());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (continuous != null) {
+            continuous.close();
+            continuous = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return continuous != null;
+    }
+
+    /**
+     * Records for the given time, at most {@code app.jfr.max-duration}, and
+     * returns the recording. Blocks the calling thread meanwhile.
+     *
+     * @throws RecordingInProgress if another on-demand recording is running
+     */
+    public byte[] record(Duration duration) throws IOException, InterruptedException {
+        Duration bounded = duration.compareTo(properties.getMaxDuration()) > 0 ? properties.getMaxDuration()
+                : duration;
+        if (!onDemand.compareAndSet(false, true)) {
+            throw new RecordingInProgress();
+        }
+        Path file = null;
+        try (Recording recording = configure(new Recording(Configuration.getConfiguration("default")))) {
+            file = Files.createTempFile(RECORDING_NAME + "-", ".jfr");
+            recording.setName(RECORDING_NAME + "-on-demand");
+            recording.setToDisk(true);
+            recording.start();
+            log.info("Recording JFR events for {}.", bounded);
+            Thread.sleep(Math.max(0, bounded.toMillis()));
+            recording.stop();
+            recording.dump(file);
+            return Files.readAllBytes(file);
+        } catch (ParseException e) {
+            throw new IOException("Unreadable JFR configuration", e);
+        } finally {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            onDemand.set(false);
+        }
+    }
+
+    private Recording configure(Recording recording) {
+        EVENTS.forEach(recording::enable);
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(properties.getPinnedThreshold()).withStackTrace();
+        recording.enable("jdk.VirtualThreadSubmitFailed").withStackTrace();
+        return recording;
+    }
+}
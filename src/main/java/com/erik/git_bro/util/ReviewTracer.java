@@ -0,0 +1,262 @@
+package com.erik.git_bro.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Carries the current observation of a review across the threads it runs on.
+ * <p>
+ * Observations only follow the work on the thread they were opened on. A
+ * review hops from the servlet or worker thread to the scheduler, virtual
+ * threads and the HTTP clients' own threads, so every hop captures the
+ * current observation with one of the {@code wrap} methods and reopens it
+ * where the work continues. Stages that complete a future are observed with
+ * {@link #observeAsync}, which keeps the observation running until the future
+ * completes rather than until the method returns.
+ * </p>
+ * <p>
+ * Outbound calls to GitHub and the models are observed as
+ * {@code http.client.requests}, tagged with the client and the status, both
+ * for OkHttp (see {@link #interceptor}) and for {@link HttpClient} (see
+ * {@link #send} and {@link #sendAsync}).
+ * </p>
+ */
+@Component
+public class ReviewTracer {
+
+    /**
+     * High cardinality key naming the pull request a review observation
+     * belongs to, see {@link #pullRequestKey}.
+     */
+    public static final String PULL_REQUEST = "review.pr";
+
+    static final String HTTP_CLIENT_REQUESTS = "http.client.requests";
+
+    private final ObservationRegistry observationRegistry;
+
+    public ReviewTracer(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Returns the observation in scope on this thread, or {@code null}.
+     */
+    public Observation current() {
+        return observationRegistry.getCurrentObservation();
+    }
+
+    /**
+     * Creates an observation that is a child of the current one.
+     */
+    public Observation observation(String name) {
+        return Observation.createNotStarted(name, observationRegistry);
+    }
+
+    /**
+     * Creates an observation of a review stage, tagged with its pull request.
+     */
+    public Observation review(String name, String owner, String repo, int pullNumber) {
+        return observation(name).highCardinalityKeyValue(PULL_REQUEST, pullRequestKey(owner, repo, pullNumber));
+    }
+
+    /**
+     * Returns the pull request the current observation belongs to, taken from
+     * the closest observation tagged with {@value #PULL_REQUEST}, or
+     * {@code null} outside of a review.
+     */
+    public String pullRequest() {
+        for (ObservationView view = current(); view != null; view = view.getContextView().getParentObservation()) {
+            KeyValue pullRequest = view.getContextView().getHighCardinalityKeyValue(PULL_REQUEST);
+            if (pullRequest != null) {
+                return pullRequest.getValue();
+            }
+        }
+        return null;
+    }
+
+    public static String pullRequestKey(String owner, String repo, int pullNumber) {
+        return (owner + "/" + repo).toLowerCase(Locale.ROOT) + "#" + pullNumber;
+    }
+
+    /**
+     * Starts the observation, runs {@code work} in its scope and stops it once
+     * the returned future completes.
+     */
+    public <T> CompletableFuture<T> observeAsync(Observation observation, Supplier<CompletableFuture<T>> work) {
+        observation.start();
+        final CompletableFuture<T> future;
+        try (Observation.Scope scope = observation.openScope()) {
+            future = work.get();
+        } catch (RuntimeException e) {
+            observation.error(e);
+            observation.stop();
+            throw e;
+        }
+        future.whenComplete((value, failure) -> {
+            if (failure != null) {
+                observation.error(unwrap(failure));
+            }
+            observation.stop();
+        });
+        return future;
+    }
+
+    public Runnable wrap(Runnable task) {
+        Observation parent = current();
+        return parent == null ? task : () -> parent.scoped(task);
+    }
+
+    public <T> Supplier<T> wrap(Supplier<T> task) {
+        Observation parent = current();
+        return parent == null ? task : () -> parent.scoped(task);
+    }
+
+    public <T, R> Function<T, R> wrap(Function<T, R> function) {
+        Observation parent = current();
+        return parent == null ? function : value -> parent.scoped(() -> function.apply(value));
+    }
+
+    public <T, U, R> BiFunction<T, U, R> wrap(BiFunction<T, U, R> function) {
+        Observation parent = current();
+        return parent == null ? function : (first, second) -> parent.scoped(() -> function.apply(first, second));
+    }
+
+    /**
+     * Wraps an executor so its tasks run in the observation that was current
+     * when they were submitted.
+     */
+    public Executor wrapExecutor(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * Observes the calls of an OkHttp client. Requests enqueued from another
+     * thread than the caller's carry their parent as the
+     * {@code Observation.class} tag, see {@link #tag}.
+     *
+     * @param client The client tag, e.g. {@code github} or {@code openai}.
+     */
+    public Interceptor interceptor(String client) {
+        return chain -> {
+            Request request = chain.request();
+            Observation parent = request.tag(Observation.class);
+            Observation observation = http(request.method(), request.url().host(), request.url().encodedPath(),
+                    client, parent != null ? parent : current()).start();
+            try (Observation.Scope scope = observation.openScope()) {
+                Response response = chain.proceed(request);
+                observation.lowCardinalityKeyValue("status", String.valueOf(response.code()));
+                return response;
+            } catch (IOException | RuntimeException e) {
+                observation.lowCardinalityKeyValue("status", "CLIENT_ERROR");
+                observation.error(e);
+                throw e;
+            } finally {
+                observation.stop();
+            }
+        };
+    }
+
+    /**
+     * Wraps the callback of an enqueued OkHttp call so it runs in the
+     * observation the request was tagged with. OkHttp calls it on its own
+     * threads after the interceptor's scope has closed.
+     */
+    public Callback wrap(Callback callback) {
+        return new Callback() {
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Observation parent = call.request().tag(Observation.class);
+                if (parent == null) {
+                    callback.onFailure(call, e);
+                } else {
+                    parent.scoped(() -> callback.onFailure(call, e));
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                Observation parent = call.request().tag(Observation.class);
+                if (parent == null) {
+                    callback.onResponse(call, response);
+                } else {
+                    parent.scopedChecked(() -> callback.onResponse(call, response));
+                }
+            }
+        };
+    }
+
+    /**
+     * Tags a request with the current observation, so an asynchronous call is
+     * recorded below it.
+     */
+    public Request.Builder tag(Request.Builder request) {
+        Observation current = current();
+        return current == null ? request : request.tag(Observation.class, current);
+    }
+
+    public <T> HttpResponse<T> send(HttpClient httpClient, HttpRequest request,
+            HttpResponse.BodyHandler<T> handler, String client) throws IOException, InterruptedException {
+        Observation observation = http(request, client).start();
+        try (Observation.Scope scope = observation.openScope()) {
+            HttpResponse<T> response = httpClient.send(request, handler);
+            observation.lowCardinalityKeyValue("status", String.valueOf(response.statusCode()));
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            observation.lowCardinalityKeyValue("status", "CLIENT_ERROR");
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient httpClient, HttpRequest request,
+            HttpResponse.BodyHandler<T> handler, String client) {
+        Observation observation = http(request, client);
+        return observeAsync(observation, () -> httpClient.sendAsync(request, handler)
+                .whenComplete((response, failure) -> observation.lowCardinalityKeyValue("status",
+                        response != null ? String.valueOf(response.statusCode()) : "CLIENT_ERROR")));
+    }
+
+    private Observation http(HttpRequest request, String client) {
+        URI uri = request.uri();
+        return http(request.method(), uri.getHost(), uri.getRawPath(), client, current());
+    }
+
+    private Observation http(String method, String host, String path, String client, Observation parent) {
+        // Only host and path: the query of a model call carries its API key
+        return Observation.createNotStarted(HTTP_CLIENT_REQUESTS, observationRegistry)
+                .parentObservation(parent)
+                .contextualName(method + " " + host)
+                .lowCardinalityKeyValue("client.name", client)
+                .lowCardinalityKeyValue("method", method)
+                .highCardinalityKeyValue("http.url", host + path);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
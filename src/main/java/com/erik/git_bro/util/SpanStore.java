@@ -0,0 +1,248 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+import com.erik.git_bro.config.TracingProperties;
+import com.erik.git_bro.dto.TraceSpan;
+import com.erik.git_bro.dto.TraceSummary;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns observations into spans and keeps the recent ones in memory.
+ * <p>
+ * Every observation gets a span id, and the trace id of its parent
+ * observation, or a new one if it has none. While an observation is in scope
+ * on a thread, its ids are in the MDC as {@code traceId} and {@code spanId},
+ * so log lines of one review can be correlated across the servlet, worker,
+ * virtual and OkHttp threads it hops between (see {@link ReviewTracer} for
+ * how the observation follows the work).
+ * </p>
+ * <p>
+ * Finished spans are kept per trace, up to {@code app.tracing.max-traces}
+ * traces, and traces carrying a {@value ReviewTracer#PULL_REQUEST} tag are
+ * indexed by pull request. Only traces of reviews are kept, i.e. traces with
+ * a {@code review.*} observation; spans of other traces, such as scheduled
+ * tasks or health probes, still get ids for the logs but are not stored, so
+ * they do not push reviews out of the store. A request that starts a review
+ * is kept from the first review stage on, including its root. The store only lives in this node's memory; it is
+ * meant for finding the slow stage of one review, not as a tracing backend.
+ * </p>
+ */
+@Component
+@Slf4j
+public class SpanStore implements ObservationHandler<Observation.Context> {
+
+    public static final String TRACE_ID = "traceId";
+    public static final String SPAN_ID = "spanId";
+
+    static final String REVIEW_PREFIX = "review.";
+
+    /**
+     * Ids of a running span, kept in its observation's context.
+     *
+     * @param review Shared by the spans of a trace; set once any of them is a review stage.
+     */
+    public record SpanIds(String traceId, String spanId, String parentId, Instant start, long startNanos,
+            AtomicBoolean review) {
+    }
+
+    private final TracingProperties properties;
+    private final Map<String, List<TraceSpan>> traces;
+    private final Map<String, Deque<String>> byPullRequest;
+    // MDC values to restore when a scope closes; scopes nest per thread
+    private final ThreadLocal<Deque<String[]>> previousIds = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public SpanStore(TracingProperties properties) {
+        this.properties = properties;
+        this.traces = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<TraceSpan>> eldest) {
+                return size() > Math.max(1, properties.getMaxTraces());
+            }
+        };
+        this.byPullRequest = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<String>> eldest) {
+                return size() > Math.max(1, properties.getMaxTraces());
+            }
+        };
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        SpanIds parent = ids(context.getParentObservation());
+        AtomicBoolean review = parent != null ? parent.review() : new AtomicBoolean();
+        if (context.getName() != null && context.getName().startsWith(REVIEW_PREFIX)) {
+            review.set(true);
+        }
+        context.put(SpanIds.class, new SpanIds(parent != null ? parent.traceId() : newId(16), newId(8),
+                parent != null ? parent.spanId() : null, Instant.now(), System.nanoTime(), review));
+    }
+
+    @Override
+    public void onScopeOpened(Observation.Context context) {
+        SpanIds ids = context.get(SpanIds.class);
+        if (ids == null) {
+            return;
+        }
+        previousIds.get().push(new String[] { MDC.get(TRACE_ID), MDC.get(SPAN_ID) });
+        MDC.put(TRACE_ID, ids.traceId());
+        MDC.put(SPAN_ID, ids.spanId());
+    }
+
+    @Override
+    public void onScopeClosed(Observation.Context context) {
+        if (context.get(SpanIds.class) == null) {
+            return;
+        }
+        String[] previous = previousIds.get().poll();
+        restore(TRACE_ID, previous != null ? previous[0] : null);
+        restore(SPAN_ID, previous != null ? previous[1] : null);
+    }
+
+    @Override
+    public void onScopeReset(Observation.Context context) {
+        previousIds.remove();
+        MDC.remove(TRACE_ID);
+        MDC.remove(SPAN_ID);
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        SpanIds ids = context.get(SpanIds.class);
+        if (ids == null || !properties.isEnabled() || !ids.review().get()) {
+            return;
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+            tags.put(keyValue.getKey(), keyValue.getValue());
+        }
+        Throwable error = context.getError();
+        TraceSpan span = new TraceSpan(ids.traceId(), ids.spanId(), ids.parentId(),
+                Objects.requireNonNullElse(context.getContextualName(), context.getName()), ids.start(),
+                Duration.ofNanos(System.nanoTime() - ids.startNanos()).toMillis(), Thread.currentThread().getName(),
+                tags, error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage());
+        record(span, tags.get(ReviewTracer.PULL_REQUEST));
+        if (properties.isLogSpans()) {
+            log.info("Span {} took {} ms (trace {}, span {}, parent {}){}", span.name(), span.durationMillis(),
+                    span.traceId(), span.spanId(), span.parentId(), error == null ? "" : " failed: " + span.error());
+        }
+    }
+
+    /**
+     * Returns the spans of a trace, earliest first.
+     */
+    public synchronized List<TraceSpan> trace(String traceId) {
+        List<TraceSpan> spans = new ArrayList<>(traces.getOrDefault(traceId, List.of()));
+        spans.sort(Comparator.comparing(TraceSpan::start));
+        return spans;
+    }
+
+    /**
+     * Returns the most recent traces, newest first.
+     */
+    public synchronized List<TraceSummary> recent(int limit) {
+        List<String> ids = new ArrayList<>(traces.keySet());
+        List<TraceSummary> summaries = new ArrayList<>();
+        for (int i = ids.size() - 1; i >= 0 && summaries.size() < limit; i--) {
+            summaries.add(summarize(ids.get(i), traces.get(ids.get(i))));
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns the recorded traces of a pull request, newest first.
+     *
+     * @param pullRequest The pull request key, see {@link ReviewTracer#pullRequestKey}.
+     */
+    public synchronized List<TraceSummary> forPullRequest(String pullRequest) {
+        Deque<String> ids = byPullRequest.getOrDefault(pullRequest, new ArrayDeque<>());
+        List<TraceSummary> summaries = new ArrayList<>();
+        ids.descendingIterator().forEachRemaining(traceId -> {
+            List<TraceSpan> spans = traces.get(traceId);
+            if (spans != null) {
+                summaries.add(summarize(traceId, spans));
+            }
+        });
+        return summaries;
+    }
+
+    /**
+     * The ids of an observation's span, if it was started while this store
+     * was registered.
+     */
+    public static SpanIds ids(ObservationView observation) {
+        return observation == null ? null : observation.getContextView().get(SpanIds.class);
+    }
+
+    private synchronized void record(TraceSpan span, String pullRequest) {
+        List<TraceSpan> spans = traces.computeIfAbsent(span.traceId(), id -> new ArrayList<>());
+        if (spans.size() < properties.getMaxSpansPerTrace()) {
+            spans.add(span);
+        }
+        if (pullRequest != null) {
+            Deque<String> ids = byPullRequest.computeIfAbsent(pullRequest, key -> new ArrayDeque<>());
+            if (!ids.contains(span.traceId())) {
+                ids.addLast(span.traceId());
+                while (ids.size() > Math.max(1, properties.getTracesPerPullRequest())) {
+                    ids.removeFirst();
+                }
+            }
+        }
+    }
+
+    private static TraceSummary summarize(String traceId, List<TraceSpan> spans) {
+        TraceSpan first = spans.stream().min(Comparator.comparing(TraceSpan::start)).orElseThrow();
+        Instant end = spans.stream().map(span -> span.start().plusMillis(span.durationMillis()))
+                .max(Comparator.naturalOrder()).orElse(first.start());
+        String slowest = spans.stream()
+                .filter(span -> span.parentId() != null)
+                .max(Comparator.comparingLong(TraceSpan::durationMillis))
+                .map(TraceSpan::name)
+                .orElse(null);
+        int errors = (int) spans.stream().filter(span -> span.error() != null).count();
+        return new TraceSummary(traceId, first.name(), first.start(),
+                Duration.between(first.start(), end).toMillis(), spans.size(), errors, slowest);
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            MDC.remove(key);
+        } else {
+            MDC.put(key, value);
+        }
+    }
+
+    private static String newId(int bytes) {
+        StringBuilder id = new StringBuilder(bytes * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) {
+            id.append(String.format("%02x", random.nextInt(256)));
+        }
+        return id.toString();
+    }
+}
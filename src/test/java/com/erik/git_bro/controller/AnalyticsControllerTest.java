@@ -0,0 +1,77 @@
+package com.erik.git_bro.controller;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mockito;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.erik.git_bro.dto.RollupSummary;
+import com.erik.git_bro.model.RollupDimension;
+import com.erik.git_bro.service.ReviewRollupService;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(AnalyticsController.class)
+public class AnalyticsControllerTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public ReviewRollupService reviewRollupService() {
+            return Mockito.mock(ReviewRollupService.class);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReviewRollupService reviewRollupService;
+
+    @BeforeEach
+    void resetMocks() {
+        Mockito.reset(reviewRollupService);
+    }
+
+    @Test
+    @WithMockUser
+    void top_authors_for_a_range() throws Exception {
+        when(reviewRollupService.top(eq(RollupDimension.AUTHOR), any(), any(), eq(10))).thenReturn(List.of(
+                new RollupSummary("erik", 4L, new BigDecimal("2.00"), new BigDecimal("0.90"))));
+
+        mockMvc.perform(get("/api/analytics/AUTHOR")
+                .param("from", "2025-03-01")
+                .param("to", "2025-03-31")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].groupKey").value("erik"))
+                .andExpect(jsonPath("$[0].reviewCount").value(4))
+                .andExpect(jsonPath("$[0].averageSeverity").value(0.5));
+
+        verify(reviewRollupService).top(RollupDimension.AUTHOR, LocalDate.of(2025, 3, 1),
+                LocalDate.of(2025, 3, 31), 10);
+    }
+
+    @Test
+    @WithMockUser
+    void unknown_dimension_is_rejected() throws Exception {
+        mockMvc.perform(get("/api/analytics/NOPE")).andExpect(status().isBadRequest());
+    }
+}
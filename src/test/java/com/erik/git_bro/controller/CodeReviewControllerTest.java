@@ -1,35 +1,44 @@
 package com.erik.git_bro.controller;
 
-import java.util.Collections;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
+import static org.hamcrest.Matchers.containsString;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import org.mockito.Mockito;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.erik.git_bro.dto.AnalysisRequest;
-import com.erik.git_bro.dto.InlineReviewResponse;
-import com.erik.git_bro.dto.Issue;
-import com.erik.git_bro.service.CodeAnalysisService;
-import com.erik.git_bro.service.ParsingService;
-import com.erik.git_bro.service.github.GitHubAppService;
-import com.erik.git_bro.service.github.GitHubAppTokenService;
-import com.erik.git_bro.service.github.GitHubCommentService;
+import com.erik.git_bro.service.InFlightReviews;
+import com.erik.git_bro.service.ReviewPipelineService;
+import com.erik.git_bro.util.AdmissionLimiter;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(CodeReviewController.class)
@@ -38,28 +47,18 @@ public class CodeReviewControllerTest {
     @TestConfiguration
     static class TestConfig {
         @Bean
-        public CodeAnalysisService codeAnalysisService() {
-            return Mockito.mock(CodeAnalysisService.class);
+        public ReviewPipelineService reviewPipelineService() {
+            return Mockito.mock(ReviewPipelineService.class);
         }
 
         @Bean
-        public ParsingService parsingService() {
-            return Mockito.mock(ParsingService.class);
+        public AdmissionLimiter admissionLimiter() {
+            return Mockito.mock(AdmissionLimiter.class);
         }
 
         @Bean
-        public GitHubAppService gitHubAppService() {
-            return Mockito.mock(GitHubAppService.class);
-        }
-
-        @Bean
-        public GitHubCommentService gitHubCommentService() {
-            return Mockito.mock(GitHubCommentService.class);
-        }
-
-        @Bean
-        public GitHubAppTokenService gitHubAppTokenService() {
-            return Mockito.mock(GitHubAppTokenService.class);
+        public InFlightReviews inFlightReviews() {
+            return Mockito.mock(InFlightReviews.class);
         }
     }
 
@@ -67,10 +66,21 @@ public class CodeReviewControllerTest {
     private MockMvc mockMvc;
 
     @Autowired
-    private CodeAnalysisService codeAnalysisService;
+    private ReviewPipelineService reviewPipelineService;
 
     @Autowired
-    private GitHubAppService gitHubAppService;
+    private AdmissionLimiter admissionLimiter;
+
+    @Autowired
+    private InFlightReviews inFlightReviews;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Mockito.reset(admissionLimiter, reviewPipelineService, inFlightReviews);
+        when(admissionLimiter.submit(any()))
+                .thenAnswer(invocation -> ((Supplier<CompletableFuture<?>>) invocation.getArgument(0)).get());
+    }
 
     @Test
     @WithMockUser
@@ -79,11 +89,8 @@ public class CodeReviewControllerTest {
                 "diff --git a/test.java b/test.java\n--- a/test.java\n+++ b/test.java\n@@ -1,1 +1,1 @@\n-public class Test { }\n+public class Test { public void newMethod() { } }"
                         .getBytes());
 
-        when(gitHubAppService.getSha(any(), any(), anyInt())).thenReturn("test-sha");
-        when(codeAnalysisService.analyzeDiff(any(AnalysisRequest.class), any()))
-                .thenReturn(CompletableFuture.completedFuture(new InlineReviewResponse(
-                        Collections.singletonList(new Issue("test.java", 1, 1, "Test comment")),
-                        "Test recommendation")));
+        when(reviewPipelineService.run(any(), any(), anyInt(), any(AnalysisRequest.class), any()))
+                .thenReturn(CompletableFuture.completedFuture("### 🤖 AI Review Summary\nPosted 1 inline comments."));
 
         mockMvc.perform(multipart("/api/review/analyze-file-by-line")
                 .file(file)
@@ -98,4 +105,74 @@ public class CodeReviewControllerTest {
                 .andExpect(status().isOk());
 
     }
+
+    @Test
+    @WithMockUser
+    public void testReviewPullRequest() throws Exception {
+        when(reviewPipelineService.reviewPullRequest("test-owner", "test-repo", 1, null, "http://test.url",
+                "test-author", "test-model"))
+                .thenReturn(CompletableFuture.completedFuture("### 🤖 AI Review Summary\nPosted 3 inline comments."));
+
+        MvcResult result = mockMvc.perform(post("/api/review/analyze-pr")
+                .param("owner", "test-owner")
+                .param("repo", "test-repo")
+                .param("pullNumber", "1")
+                .param("prUrl", "http://test.url")
+                .param("prAuthor", "test-author")
+                .param("modelName", "test-model")
+                .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Posted 3 inline comments.")));
+    }
+
+    @Test
+    @WithMockUser
+    public void testReviewRejectedByAdmissionControl() throws Exception {
+        Mockito.reset(admissionLimiter);
+        when(admissionLimiter.submit(any())).thenReturn(CompletableFuture.failedFuture(
+                new AdmissionLimiter.Rejected("Review queue is full", Duration.ofSeconds(42))));
+
+        MvcResult result = mockMvc.perform(post("/api/review/analyze-pr")
+                .param("owner", "test-owner")
+                .param("repo", "test-repo")
+                .param("pullNumber", "1")
+                .param("prUrl", "http://test.url")
+                .param("prAuthor", "test-author")
+                .param("modelName", "test-model")
+                .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "42"));
+        verify(reviewPipelineService, never()).reviewPullRequest(any(), any(), anyInt(), any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    public void testReviewStoppedForShutdown() throws Exception {
+        when(inFlightReviews.isAbandoning()).thenReturn(true);
+        when(reviewPipelineService.reviewPullRequest("test-owner", "test-repo", 1, null, "http://test.url",
+                "test-author", "test-model"))
+                .thenReturn(CompletableFuture.failedFuture(new CancellationException("Review was stopped")));
+
+        MvcResult result = mockMvc.perform(post("/api/review/analyze-pr")
+                .param("owner", "test-owner")
+                .param("repo", "test-repo")
+                .param("pullNumber", "1")
+                .param("prUrl", "http://test.url")
+                .param("prAuthor", "test-author")
+                .param("modelName", "test-model")
+                .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
 }
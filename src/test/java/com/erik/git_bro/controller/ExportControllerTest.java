@@ -0,0 +1,97 @@
+package com.erik.git_bro.controller;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mockito;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.erik.git_bro.dto.ExportFilter;
+import com.erik.git_bro.service.ReviewExportService;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(ExportController.class)
+public class ExportControllerTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public ReviewExportService reviewExportService() {
+            return Mockito.mock(ReviewExportService.class);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReviewExportService reviewExportService;
+
+    @BeforeEach
+    void resetMocks() {
+        Mockito.reset(reviewExportService);
+    }
+
+    @Test
+    @WithMockUser
+    void streams_reviews_as_ndjson() throws Exception {
+        UUID afterId = UUID.randomUUID();
+        ExportFilter filter = new ExportFilter("owner/repo", "7", Instant.parse("2025-01-01T00:00:00Z"),
+                Instant.parse("2025-02-01T00:00:00Z"), Instant.parse("2025-01-15T10:00:00Z"), afterId);
+        when(reviewExportService.exportReviews(eq(filter), any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/export/reviews")
+                .param("repository", "owner/repo")
+                .param("pullRequestId", "7")
+                .param("from", "2025-01-01T00:00:00Z")
+                .param("to", "2025-02-01T00:00:00Z")
+                .param("after", "2025-01-15T10:00:00Z")
+                .param("afterId", afterId.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+        verify(reviewExportService).exportReviews(eq(filter), any(OutputStream.class));
+    }
+
+    @Test
+    @WithMockUser
+    void iterations_default_to_everything_until_now() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/export/iterations"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        verify(reviewExportService).exportIterations(Mockito.argThat(filter -> filter.repository() == null
+                && Instant.EPOCH.equals(filter.from()) && !filter.to().isAfter(Instant.now())),
+                any(OutputStream.class));
+    }
+}
@@ -0,0 +1,120 @@
+package com.erik.git_bro.controller;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mockito;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.erik.git_bro.dto.ReviewJobRequest;
+import com.erik.git_bro.service.ReviewJobService;
+import com.erik.git_bro.service.github.GitHubWebhookService;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(GitHubWebhookController.class)
+public class GitHubWebhookControllerTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public GitHubWebhookService gitHubWebhookService() {
+            return Mockito.mock(GitHubWebhookService.class);
+        }
+
+        @Bean
+        public ReviewJobService reviewJobService() {
+            return Mockito.mock(ReviewJobService.class);
+        }
+    }
+
+    private static final String PAYLOAD = "{\"action\":\"opened\",\"number\":7}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GitHubWebhookService gitHubWebhookService;
+
+    @Autowired
+    private ReviewJobService reviewJobService;
+
+    @BeforeEach
+    void resetMocks() {
+        Mockito.reset(gitHubWebhookService, reviewJobService);
+    }
+
+    @Test
+    @WithMockUser
+    public void testPullRequestEventIsAccepted() throws Exception {
+        ReviewJobRequest job = new ReviewJobRequest("delivery-1", 1L, "owner", "repo", 7, "sha", "url", "author",
+                "chatgpt");
+        when(gitHubWebhookService.isValidSignature(any(), eq("sha256=abc"))).thenReturn(true);
+        when(gitHubWebhookService.toReviewJob(eq("delivery-1"), any())).thenReturn(Optional.of(job));
+        when(reviewJobService.enqueue(job)).thenReturn(true);
+
+        mockMvc.perform(post("/api/github/webhook")
+                .with(csrf())
+                .header("X-GitHub-Event", "pull_request")
+                .header("X-GitHub-Delivery", "delivery-1")
+                .header("X-Hub-Signature-256", "sha256=abc")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(PAYLOAD))
+                .andExpect(status().isAccepted());
+
+        verify(reviewJobService).enqueue(job);
+    }
+
+    @Test
+    @WithMockUser
+    public void testInvalidSignatureIsRejected() throws Exception {
+        when(gitHubWebhookService.isValidSignature(any(), any())).thenReturn(false);
+
+        mockMvc.perform(post("/api/github/webhook")
+                .with(csrf())
+                .header("X-GitHub-Event", "pull_request")
+                .header("X-GitHub-Delivery", "delivery-2")
+                .header("X-Hub-Signature-256", "sha256=bad")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(PAYLOAD))
+                .andExpect(status().isUnauthorized());
+
+        verify(gitHubWebhookService, never()).toReviewJob(any(), any());
+        verify(reviewJobService, never()).enqueue(any());
+    }
+
+    @Test
+    @WithMockUser
+    public void testDuplicateDeliveryIsAcknowledged() throws Exception {
+        ReviewJobRequest job = new ReviewJobRequest("delivery-3", 1L, "owner", "repo", 7, "sha", "url", "author",
+                "chatgpt");
+        when(gitHubWebhookService.isValidSignature(any(), any())).thenReturn(true);
+        when(gitHubWebhookService.toReviewJob(eq("delivery-3"), any())).thenReturn(Optional.of(job));
+        when(reviewJobService.enqueue(job)).thenReturn(false);
+
+        mockMvc.perform(post("/api/github/webhook")
+                .with(csrf())
+                .header("X-GitHub-Event", "pull_request")
+                .header("X-GitHub-Delivery", "delivery-3")
+                .header("X-Hub-Signature-256", "sha256=abc")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(PAYLOAD))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,75 @@
+package com.erik.git_bro.controller;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.erik.git_bro.dto.ReviewIterationDTO;
+import com.erik.git_bro.dto.ReviewSummary;
+import com.erik.git_bro.model.Category;
+import com.erik.git_bro.service.ReviewHistoryService;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(ReviewHistoryController.class)
+public class ReviewHistoryControllerTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public ReviewHistoryService reviewHistoryService() {
+            return Mockito.mock(ReviewHistoryService.class);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReviewHistoryService reviewHistoryService;
+
+    @BeforeEach
+    void resetMocks() {
+        Mockito.reset(reviewHistoryService);
+    }
+
+    @Test
+    @WithMockUser
+    void returns_iterations_with_their_reviews() throws Exception {
+        UUID iterationId = UUID.randomUUID();
+        ReviewIterationDTO iteration = new ReviewIterationDTO(iterationId, "sha-1",
+                Instant.parse("2025-03-01T12:00:00Z"), "chatgpt", null, null);
+        iteration.getReviews().add(new ReviewSummary(iterationId, UUID.randomUUID(), "A.java", 3, Category.STYLE,
+                null, "Unused field", Instant.parse("2025-03-01T12:00:00Z")));
+        when(reviewHistoryService.getHistory("7")).thenReturn(List.of(iteration));
+
+        mockMvc.perform(get("/api/review/history/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].commitSha").value("sha-1"))
+                .andExpect(jsonPath("$[0].reviews[0].feedback").value("Unused field"))
+                .andExpect(jsonPath("$[0].reviews[0].iterationId").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void unknown_pull_request_is_not_found() throws Exception {
+        when(reviewHistoryService.getHistory("8")).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/review/history/8")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,83 @@
+package com.erik.git_bro.controller;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.erik.git_bro.dto.TraceSpan;
+import com.erik.git_bro.dto.TraceSummary;
+import com.erik.git_bro.util.SpanStore;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(TraceController.class)
+public class TraceControllerTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public SpanStore spanStore() {
+            return Mockito.mock(SpanStore.class);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SpanStore spanStore;
+
+    @BeforeEach
+    void resetMocks() {
+        Mockito.reset(spanStore);
+    }
+
+    @Test
+    @WithMockUser
+    void lists_the_traces_of_a_pull_request() throws Exception {
+        when(spanStore.forPullRequest("owner/repo#7")).thenReturn(List.of(new TraceSummary("abc", "review.job",
+                Instant.parse("2025-03-01T12:00:00Z"), 4200, 9, 0, "http.client.requests")));
+
+        mockMvc.perform(get("/api/traces").param("owner", "Owner").param("repo", "repo").param("pullNumber", "7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].traceId").value("abc"))
+                .andExpect(jsonPath("$[0].slowest").value("http.client.requests"));
+    }
+
+    @Test
+    @WithMockUser
+    void returns_the_spans_of_a_trace() throws Exception {
+        when(spanStore.trace("abc")).thenReturn(List.of(new TraceSpan("abc", "01", null, "review.job",
+                Instant.parse("2025-03-01T12:00:00Z"), 4200, "review-worker-1", Map.of("review.pr", "owner/repo#7"),
+                null)));
+
+        mockMvc.perform(get("/api/traces/abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("review.job"))
+                .andExpect(jsonPath("$[0].tags['review.pr']").value("owner/repo#7"));
+    }
+
+    @Test
+    @WithMockUser
+    void unknown_trace_is_not_found() throws Exception {
+        when(spanStore.trace("missing")).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/traces/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
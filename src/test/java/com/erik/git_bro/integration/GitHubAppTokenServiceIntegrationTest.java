@@ -9,8 +9,10 @@ import org.springframework.test.util.ReflectionTestUtils;
 import com.erik.git_bro.TestUtils.DummyKeys;
 import com.erik.git_bro.service.github.GitHubAppTokenService;
 import com.erik.git_bro.util.ApiUrlProvider;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.observation.ObservationRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 
@@ -40,7 +42,8 @@ public class GitHubAppTokenServiceIntegrationTest {
             // Add other methods if needed...
         };
 
-        gitHubAppTokenService = new GitHubAppTokenService(testApiUrlProvider);
+        gitHubAppTokenService = new GitHubAppTokenService(testApiUrlProvider,
+                new ReviewTracer(ObservationRegistry.NOOP));
 
         // Set other private fields if needed
         ReflectionTestUtils.setField(gitHubAppTokenService, "objectMapper", new ObjectMapper());
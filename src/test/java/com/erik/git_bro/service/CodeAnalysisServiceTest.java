@@ -1,48 +1,68 @@
 package com.erik.git_bro.service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
+import javax.sql.DataSource;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
-import org.mockito.InjectMocks;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
 
 import com.erik.git_bro.client.ChatGPTClient;
 import com.erik.git_bro.client.GeminiClient;
+import com.erik.git_bro.config.LatencyProperties;
 import com.erik.git_bro.dto.AnalysisRequest;
 import com.erik.git_bro.dto.InlineReviewResponse;
 import com.erik.git_bro.dto.Issue;
 import com.erik.git_bro.model.Category;
-import com.erik.git_bro.model.Review;
 import com.erik.git_bro.model.ReviewIteration;
 import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.util.DbBulkhead;
+import com.erik.git_bro.util.LatencyHistograms;
+import com.erik.git_bro.util.ReviewTracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
 public class CodeAnalysisServiceTest {
 
     @Mock private ChatGPTClient chatGPTClient;
     @Mock private GeminiClient geminiClient;
     @Mock private ReviewRepository reviewRepository;
     @Mock private ReviewIterationService reviewIterationService;
+    @Mock private ReviewWriteBuffer reviewWriteBuffer;
+    @Mock private DiffBlobService diffBlobService;
     @Mock private ParsingService parsingService;
     @Mock private ObjectMapper objectMapper;
 
-    @InjectMocks private CodeAnalysisService codeAnalysisService;
+    private CodeAnalysisService codeAnalysisService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        DbBulkhead dbBulkhead = new DbBulkhead(Mockito.mock(DataSource.class), new SimpleMeterRegistry(), 2, 0,
+                Duration.ofSeconds(1));
+        codeAnalysisService = new CodeAnalysisService(chatGPTClient, geminiClient, reviewRepository,
+                reviewIterationService, reviewWriteBuffer, diffBlobService, parsingService, objectMapper, dbBulkhead,
+                new ReviewTracer(ObservationRegistry.NOOP), new LatencyHistograms(new LatencyProperties()), Runnable::run);
     }
 
     @Test
@@ -55,12 +75,13 @@ public class CodeAnalysisServiceTest {
 
         when(chatGPTClient.analyzeFileLineByLine(Mockito.anyString(), Mockito.anyString()))
             .thenReturn((CompletableFuture) CompletableFuture.completedFuture(rawFeedback));
-        when(reviewIterationService.findOrCreateIteration(Mockito.anyString(), Mockito.anyString()))
+        when(reviewIterationService.findOrCreateIteration(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
             .thenReturn(iteration);
         when(parsingService.cleanChunk(rawFeedback)).thenReturn(rawFeedback);
         when(objectMapper.readValue(rawFeedback, InlineReviewResponse.class)).thenReturn(response);
         when(parsingService.getIssueCategory("This is an issue.")).thenReturn(Category.GENERAL);
-        when(reviewRepository.existsByPullRequestIdAndFeedbackFingerprint(any(), any())).thenReturn(false);
+        when(reviewRepository.findExistingFingerprints(any(), any())).thenReturn(Set.of());
+        when(reviewWriteBuffer.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 /**
  * return (CompletableFuture<String>) chatGPTClient.analyzeFileLineByLine(request.filename(),
                     request.diffContent());
@@ -70,8 +91,8 @@ public class CodeAnalysisServiceTest {
 
         assertNotNull(result);
         assertEquals(1, result.getIssues().size());
-        verify(reviewRepository).save(any(Review.class));
-        verify(reviewIterationService).save(iteration);
+        verify(reviewWriteBuffer).submit(eq(iteration), argThat(reviews -> reviews.size() == 1));
+        assertEquals(BigDecimal.valueOf(0.2), iteration.getDerivedSeverityScore());
     }
 
     @Test
@@ -96,4 +117,49 @@ public class CodeAnalysisServiceTest {
         assertEquals(BigDecimal.valueOf(0.2), codeAnalysisService.determineSeverity(Category.GENERAL));
         assertEquals(BigDecimal.valueOf(0.1), codeAnalysisService.determineSeverity(Category.NO_FEEDBACK));
     }
-} 
+
+    @Test
+    void analyzeDiff_skips_fingerprints_that_already_exist() throws Exception {
+        AnalysisRequest request = new AnalysisRequest("file.java", "diff", "123", "sha", "pr-url", "author");
+        ReviewIteration iteration = new ReviewIteration();
+        String rawFeedback = "{}";
+        InlineReviewResponse response = new InlineReviewResponse(List.of(
+                new Issue("file.java", 1, 0, "Duplicate issue."),
+                new Issue("file.java", 1, 0, "Duplicate issue."),
+                new Issue("file.java", 2, 0, "Known issue.")), "merge");
+
+        when(chatGPTClient.analyzeFileLineByLine(Mockito.anyString(), Mockito.anyString()))
+            .thenReturn((CompletableFuture) CompletableFuture.completedFuture(rawFeedback));
+        when(reviewIterationService.findOrCreateIteration(eq("123"), eq("sha"), any())).thenReturn(iteration);
+        when(parsingService.cleanChunk(rawFeedback)).thenReturn(rawFeedback);
+        when(objectMapper.readValue(rawFeedback, InlineReviewResponse.class)).thenReturn(response);
+        when(parsingService.getIssueCategory(Mockito.anyString())).thenReturn(Category.STYLE);
+        String known = codeAnalysisService.createFingerprint("123", "file.java", "Known issue.", "STYLE");
+        when(reviewRepository.findExistingFingerprints(eq("123"), any())).thenReturn(Set.of(known));
+        when(reviewWriteBuffer.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(diffBlobService.store("diff")).thenReturn("blob-sha");
+
+        codeAnalysisService.analyzeDiff(request, "chatgpt").get();
+
+        verify(reviewRepository).findExistingFingerprints(eq("123"), argThat(fingerprints -> fingerprints.size() == 2));
+        verify(reviewWriteBuffer).submit(eq(iteration), argThat(reviews -> reviews.size() == 1
+                && reviews.get(0).getFeedback().equals("Duplicate issue.")
+                && reviews.get(0).getReviewIteration() == iteration
+                && reviews.get(0).getDiffBlobId().equals("blob-sha")));
+        verify(diffBlobService).store("diff");
+    }
+
+    @Test
+    void cancelling_the_analysis_cancels_the_model_call() {
+        AnalysisRequest request = new AnalysisRequest("A.java", "diff", "7", "sha", "url", "author");
+        CompletableFuture<String> modelCall = new CompletableFuture<>();
+        when(chatGPTClient.analyzeFileLineByLine("A.java", "diff")).thenReturn((CompletableFuture) modelCall);
+
+        CompletableFuture<InlineReviewResponse> analysis = codeAnalysisService.analyzeDiff(request, "chatgpt",
+                CompletableFuture.completedFuture("sha"));
+        analysis.cancel(true);
+
+        assertTrue(modelCall.isCancelled());
+        verify(reviewIterationService, never()).findOrCreateIteration(any(), any(), any());
+    }
+}
@@ -0,0 +1,60 @@
+package com.erik.git_bro.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.erik.git_bro.model.DiffBlob;
+import com.erik.git_bro.repository.DiffBlobRepository;
+
+public class DiffBlobServiceTest {
+
+    private static final String DIFF = "diff --git a/A.java b/A.java\n+    int a;\n".repeat(50);
+
+    private final DiffBlobRepository diffBlobRepository = mock(DiffBlobRepository.class);
+    private final DiffBlobService diffBlobService = new DiffBlobService(diffBlobRepository);
+
+    @Test
+    void stores_compressed_content_under_its_hash() {
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+
+        String sha256 = diffBlobService.store(DIFF);
+
+        verify(diffBlobRepository).insertIfAbsent(eq(sha256), content.capture(), eq(DiffBlob.GZIP),
+                eq(DIFF.getBytes(StandardCharsets.UTF_8).length), any(Instant.class));
+        assertEquals(64, sha256.length());
+        assertEquals(sha256, diffBlobService.store(DIFF));
+        assertTrue(content.getValue().length < DIFF.length() / 4);
+
+        when(diffBlobRepository.findById(sha256)).thenReturn(Optional.of(DiffBlob.builder()
+                .sha256(sha256).content(content.getValue()).compression(DiffBlob.GZIP).build()));
+        assertEquals(DIFF, diffBlobService.load(sha256).orElseThrow());
+    }
+
+    @Test
+    void reads_uncompressed_backfilled_rows() {
+        DiffBlob backfilled = DiffBlob.builder().sha256("abc")
+                .content(DIFF.getBytes(StandardCharsets.UTF_8)).compression(DiffBlob.NONE).build();
+        when(diffBlobRepository.findById("abc")).thenReturn(Optional.of(backfilled));
+
+        assertEquals(DIFF, diffBlobService.load("abc").orElseThrow());
+    }
+
+    @Test
+    void null_content_is_not_stored() {
+        assertNull(diffBlobService.store(null));
+        verifyNoInteractions(diffBlobRepository);
+    }
+}
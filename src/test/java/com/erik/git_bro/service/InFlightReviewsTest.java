@@ -0,0 +1,159 @@
+package com.erik.git_bro.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewJobRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+
+public class InFlightReviewsTest {
+
+    private final ReviewIterationRepository reviewIterationRepository = mock(ReviewIterationRepository.class);
+    private final ReviewJobRepository reviewJobRepository = mock(ReviewJobRepository.class);
+    private final GitHubAppService gitHubAppService = mock(GitHubAppService.class);
+    private final InFlightReviews inFlightReviews = new InFlightReviews(reviewIterationRepository,
+            reviewJobRepository, gitHubAppService, Runnable::run);
+
+    @Test
+    void review_of_the_head_cancels_the_older_review() {
+        InFlightReviews.Handle older = inFlightReviews.begin("owner", "repo", 7);
+        older.headSha("sha-1", "sha-1");
+        CompletableFuture<String> modelCall = older.track(new CompletableFuture<>());
+
+        InFlightReviews.Handle newer = inFlightReviews.begin("Owner", "repo", 7);
+        newer.headSha("sha-2", "sha-2");
+
+        assertTrue(modelCall.isCancelled());
+        assertTrue(older.isCancelled());
+        assertThrows(CancellationException.class, older::throwIfCancelled);
+        assertFalse(newer.isCancelled());
+        verify(reviewIterationRepository).markSuperseded("7", "sha-1");
+        // Work started after the cancellation is cancelled right away
+        assertTrue(older.track(new CompletableFuture<>()).isCancelled());
+    }
+
+    @Test
+    void same_sha_and_other_pull_requests_are_left_alone() {
+        InFlightReviews.Handle first = inFlightReviews.begin("owner", "repo", 7);
+        first.headSha("sha-1", "sha-1");
+        InFlightReviews.Handle otherRepo = inFlightReviews.begin("owner", "other", 7);
+        otherRepo.headSha("sha-9", "sha-9");
+
+        inFlightReviews.begin("owner", "repo", 7).headSha("sha-1", "sha-1");
+
+        assertFalse(first.isCancelled());
+        assertFalse(otherRepo.isCancelled());
+        verify(reviewIterationRepository, never()).markSuperseded(any(), any());
+    }
+
+    @Test
+    void review_of_a_commit_that_is_no_longer_the_head_is_cancelled_on_start() {
+        InFlightReviews.Handle newer = inFlightReviews.begin("owner", "repo", 7);
+        newer.headSha("sha-2", "sha-2");
+
+        InFlightReviews.Handle retried = inFlightReviews.begin("owner", "repo", 7);
+        retried.headSha("sha-1", "sha-2");
+
+        assertTrue(retried.isCancelled());
+        assertFalse(newer.isCancelled());
+        verify(reviewIterationRepository).markSuperseded("7", "sha-1");
+        verify(reviewIterationRepository, never()).markSuperseded("7", "sha-2");
+    }
+
+    @Test
+    void without_the_head_only_an_already_superseded_sha_is_cancelled() {
+        when(reviewIterationRepository.existsByPullRequestIdAndCommitShaAndSupersededTrue("7", "sha-1"))
+                .thenReturn(true);
+        InFlightReviews.Handle newer = inFlightReviews.begin("owner", "repo", 7);
+        newer.headSha("sha-2", null);
+
+        InFlightReviews.Handle retried = inFlightReviews.begin("owner", "repo", 7);
+        retried.headSha("sha-1", null);
+
+        assertTrue(retried.isCancelled());
+        assertFalse(newer.isCancelled());
+    }
+
+    @Test
+    void push_received_before_its_review_starts_supersedes_running_reviews() throws Exception {
+        InFlightReviews.Handle running = inFlightReviews.begin("owner", "repo", 7);
+        running.headSha("sha-1", "sha-1");
+        when(gitHubAppService.getSha("owner", "repo", 7)).thenReturn("sha-2");
+
+        inFlightReviews.newHead("owner", "repo", 7, "sha-2").join();
+
+        assertTrue(running.isCancelled());
+        running.close();
+        inFlightReviews.newHead("owner", "repo", 7, "sha-3").join();
+    }
+
+    @Test
+    void older_push_delivered_after_a_newer_one_leaves_the_head_review_alone() throws Exception {
+        InFlightReviews.Handle head = inFlightReviews.begin("owner", "repo", 7);
+        head.headSha("sha-2", "sha-2");
+        when(gitHubAppService.getSha("owner", "repo", 7)).thenReturn("sha-2");
+
+        inFlightReviews.newHead("owner", "repo", 7, "sha-1").join();
+
+        assertFalse(head.isCancelled());
+        verify(reviewIterationRepository, never()).markSuperseded(any(), any());
+    }
+
+    @Test
+    void newer_head_queued_on_another_node_supersedes_at_the_next_stage() throws Exception {
+        InFlightReviews.Handle review = inFlightReviews.begin("owner", "repo", 7);
+        review.headSha("sha-1", "sha-1");
+        CompletableFuture<String> modelCall = review.track(new CompletableFuture<>());
+        review.throwIfCancelled();
+
+        when(reviewJobRepository.existsNewerHead(eq("owner"), eq("repo"), eq(7), eq("sha-1"), any()))
+                .thenReturn(true);
+        // Checked at most once per interval
+        review.throwIfCancelled();
+        assertFalse(review.isCancelled());
+
+        // A job queued later for an older push: GitHub still has this review's commit as the head
+        when(gitHubAppService.getSha("owner", "repo", 7)).thenReturn("sha-1");
+        ReflectionTestUtils.setField(review, "nextHeadCheck", System.nanoTime());
+        review.throwIfCancelled();
+        assertFalse(review.isCancelled());
+
+        when(gitHubAppService.getSha("owner", "repo", 7)).thenReturn("sha-2");
+        ReflectionTestUtils.setField(review, "nextHeadCheck", System.nanoTime());
+        assertThrows(CancellationException.class, review::throwIfCancelled);
+        assertTrue(modelCall.isCancelled());
+        verify(reviewIterationRepository).markSuperseded("7", "sha-1");
+    }
+
+    @Test
+    void abandoning_cancels_the_reviews_of_the_commit_without_superseding_them() {
+        InFlightReviews.Handle review = inFlightReviews.begin("owner", "repo", 7);
+        review.headSha("sha-1", "sha-1");
+        CompletableFuture<String> modelCall = review.track(new CompletableFuture<>());
+        InFlightReviews.Handle other = inFlightReviews.begin("owner", "other", 7);
+        other.headSha("sha-1", "sha-1");
+
+        assertEquals(1, inFlightReviews.abandon("owner", "repo", 7, "sha-1"));
+        review.close();
+        assertFalse(other.isCancelled());
+
+        assertTrue(modelCall.isCancelled());
+        assertTrue(inFlightReviews.isAbandoning());
+        assertThrows(CancellationException.class, review::throwIfCancelled);
+        verify(reviewIterationRepository, never()).markSuperseded(any(), any());
+    }
+}
@@ -0,0 +1,86 @@
+package com.erik.git_bro.service;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.model.Category;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewIteration;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+
+@DataJpaTest
+@Import({ IncrementalReviewService.class, ParsingService.class })
+@TestPropertySource(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+public class IncrementalReviewServiceJpaTest {
+
+    // Two lines inserted at the top of A.java
+    private static final String A_PATCH = "@@ -1,2 +1,4 @@\n+import x;\n+import y;\n class A {\n     int a;";
+
+    @MockBean
+    private GitHubAppService gitHubAppService;
+
+    @Autowired
+    private IncrementalReviewService incrementalReviewService;
+
+    @Autowired
+    private ReviewIterationRepository reviewIterationRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Test
+    void pull_requests_with_the_same_number_in_two_repositories_are_kept_apart() throws Exception {
+        Review ours = review("https://github.com/owner/repo/pull/7", "ours-sha", Instant.parse("2026-01-01T00:00:00Z"));
+        // The other repository's PR #7 was pushed to more recently
+        Review theirs = review("https://github.com/other/repo/pull/7", "theirs-sha",
+                Instant.parse("2026-01-02T00:00:00Z"));
+        when(gitHubAppService.compareCommits("owner", "repo", "ours-sha", "new-sha")).thenReturn(List.of(
+                GitDiff.builder().filename("src/A.java").patch(A_PATCH).build()));
+
+        assertTrue(incrementalReviewService.hasPreviousIteration("owner", "repo", "7"));
+        assertFalse(incrementalReviewService.hasPreviousIteration("third", "repo", "7"));
+
+        AnalysisRequest delta = incrementalReviewService.narrowToDelta("owner", "repo", new AnalysisRequest(
+                "pr.diff", "diff --git a/src/A.java b/src/A.java\n", "7", "new-sha",
+                "https://github.com/owner/repo/pull/7", "author"));
+
+        assertTrue(delta.diffContent().contains("+import x;"));
+        verify(gitHubAppService, never()).compareCommits(anyString(), anyString(), eq("theirs-sha"), anyString());
+        assertEquals(4, reviewRepository.findById(ours.getId()).orElseThrow().getLine());
+        Review untouched = reviewRepository.findById(theirs.getId()).orElseThrow();
+        assertEquals(2, untouched.getLine());
+        assertNull(untouched.getLineSha());
+    }
+
+    private Review review(String prUrl, String sha, Instant pushAt) {
+        ReviewIteration iteration = reviewIterationRepository.save(ReviewIteration.builder()
+                .pullRequestId("7").prUrl(prUrl).commitSha(sha).pushAt(pushAt).build());
+        return reviewRepository.save(Review.builder()
+                .fileName("src/A.java").line(2).pullRequestId("7").prUrl(prUrl)
+                .feedbackFingerprint(prUrl).category(Category.STYLE).createdAt(pushAt)
+                .reviewIteration(iteration).build());
+    }
+}
@@ -0,0 +1,143 @@
+package com.erik.git_bro.service;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewIteration;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+
+public class IncrementalReviewServiceTest {
+
+    private static final String FULL_DIFF = """
+            diff --git a/src/A.java b/src/A.java
+            --- a/src/A.java
+            +++ b/src/A.java
+            @@ -1,3 +1,4 @@
+             class A {
+            +    int a;
+             }
+            diff --git a/src/B.java b/src/B.java
+            --- a/src/B.java
+            +++ b/src/B.java
+            @@ -1,2 +1,3 @@
+             class B {
+            +    int b;
+             }
+            """;
+
+    // Two lines inserted at the top of A.java since the last reviewed commit
+    private static final String A_PATCH = "@@ -1,2 +1,4 @@\n+import x;\n+import y;\n class A {\n     int a;";
+
+    private static final String REPOSITORY = "%/owner/repo/pull%";
+
+    @Mock private ReviewIterationRepository reviewIterationRepository;
+    @Mock private ReviewRepository reviewRepository;
+    @Mock private GitHubAppService gitHubAppService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    private IncrementalReviewService incrementalReviewService;
+
+    private final AnalysisRequest request = new AnalysisRequest("pr.diff", FULL_DIFF, "7", "new-sha", "url",
+            "author");
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        incrementalReviewService = new IncrementalReviewService(reviewIterationRepository, reviewRepository,
+                gitHubAppService, new ParsingService(), eventPublisher);
+    }
+
+    @Test
+    void first_review_uses_full_diff() throws Exception {
+        when(reviewIterationRepository.findLastReviewedBefore(REPOSITORY, "7", "new-sha", Limit.of(1)))
+                .thenReturn(List.of());
+
+        assertSame(request, incrementalReviewService.narrowToDelta("owner", "repo", request));
+        verify(gitHubAppService, never()).compareCommits(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void later_review_only_sends_changed_pr_files_and_carries_lines_forward() throws Exception {
+        Review previous = Review.builder().fileName("src/A.java").line(2).build();
+        when(reviewIterationRepository.findLastReviewedBefore(REPOSITORY, "7", "new-sha", Limit.of(1)))
+                .thenReturn(List.of(ReviewIteration.builder().commitSha("old-sha").build()));
+        when(gitHubAppService.compareCommits("owner", "repo", "old-sha", "new-sha")).thenReturn(List.of(
+                GitDiff.builder().filename("src/A.java").patch(A_PATCH).build(),
+                GitDiff.builder().filename("README.md").patch("@@ -1 +1 @@\n-a\n+b").build()));
+        when(reviewRepository.findInRepository(REPOSITORY, "7")).thenReturn(List.of(previous));
+
+        AnalysisRequest delta = incrementalReviewService.narrowToDelta("owner", "repo", request);
+
+        assertTrue(delta.diffContent().contains("+++ b/src/A.java"));
+        assertTrue(delta.diffContent().contains("+import x;"));
+        assertFalse(delta.diffContent().contains("src/B.java"), "unchanged PR files are not re-reviewed");
+        assertFalse(delta.diffContent().contains("README.md"), "base-branch changes are not part of the PR");
+        assertEquals(4, previous.getLine());
+        assertEquals("new-sha", previous.getLineSha());
+        verify(eventPublisher).publishEvent(new ReviewHistoryService.IterationsChanged(Set.of("7")));
+    }
+
+    @Test
+    void repeated_review_of_the_same_head_does_not_shift_lines_again() throws Exception {
+        Review previous = Review.builder().fileName("src/A.java").line(2).lineSha("old-sha").build();
+        Review untouched = Review.builder().fileName("src/B.java").line(9).lineSha("old-sha").build();
+        when(reviewIterationRepository.findLastReviewedBefore(REPOSITORY, "7", "new-sha", Limit.of(1)))
+                .thenReturn(List.of(ReviewIteration.builder().commitSha("old-sha").build()));
+        when(gitHubAppService.compareCommits("owner", "repo", "old-sha", "new-sha")).thenReturn(List.of(
+                GitDiff.builder().filename("src/A.java").patch(A_PATCH).build()));
+        when(reviewRepository.findInRepository(REPOSITORY, "7")).thenReturn(List.of(previous, untouched));
+
+        incrementalReviewService.narrowToDelta("owner", "repo", request);
+        // A retried job applies the same old-sha...new-sha patch again
+        incrementalReviewService.narrowToDelta("owner", "repo", request);
+
+        assertEquals(4, previous.getLine());
+        assertEquals(9, untouched.getLine());
+        assertEquals("new-sha", untouched.getLineSha());
+    }
+
+    @Test
+    void failed_compare_falls_back_to_full_diff() throws Exception {
+        when(reviewIterationRepository.findLastReviewedBefore(REPOSITORY, "7", "new-sha", Limit.of(1)))
+                .thenReturn(List.of(ReviewIteration.builder().commitSha("gone-sha").build()));
+        when(gitHubAppService.compareCommits(any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("Failed to compare commits: 404"));
+
+        assertSame(request, incrementalReviewService.narrowToDelta("owner", "repo", request));
+    }
+
+    @Test
+    void mapLineThroughPatch_shifts_untouched_and_drops_modified_lines() {
+        ParsingService parsingService = new ParsingService();
+        String patch = "@@ -3,3 +3,3 @@\n line3\n-line4\n+line4 changed\n line5\n@@ -10,2 +10,4 @@\n line10\n+added\n+added\n line11";
+
+        assertEquals(1, parsingService.mapLineThroughPatch(patch, 1));
+        assertEquals(3, parsingService.mapLineThroughPatch(patch, 3));
+        assertNull(parsingService.mapLineThroughPatch(patch, 4));
+        assertEquals(8, parsingService.mapLineThroughPatch(patch, 8));
+        assertEquals(13, parsingService.mapLineThroughPatch(patch, 11));
+        assertEquals(22, parsingService.mapLineThroughPatch(patch, 20));
+    }
+}
@@ -1,5 +1,8 @@
 package com.erik.git_bro.service;
 
+import java.util.List;
+import java.util.Map;
+
 import com.erik.git_bro.model.Category;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,4 +55,18 @@ public class ParsingServiceTest {
         assertEquals(Category.GENERAL, parsingService.getIssueCategory("general issue"));
         assertEquals(Category.NO_FEEDBACK, parsingService.getIssueCategory(""));
     }
+
+    @Test
+    public void testSplitDiffByFile() {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n@@ -1,1 +1,2 @@\n class A {\n+    int a;\n"
+                + "diff --git a/Old.java b/Old.java\ndeleted file mode 100644\n--- a/Old.java\n+++ /dev/null\n@@ -1 +0,0 @@\n-class Old {}\n"
+                + "diff --git a/b/B.java b/b/B.java\n--- a/b/B.java\n+++ b/b/B.java\n@@ -1,1 +1,2 @@\n class B {\n+    int b;\n";
+
+        Map<String, String> files = parsingService.splitDiffByFile(diff);
+
+        assertEquals(List.of("A.java", "b/B.java"), List.copyOf(files.keySet()));
+        assertTrue(files.get("A.java").startsWith("diff --git a/A.java"));
+        assertTrue(files.get("b/B.java").endsWith("+    int b;\n"));
+        assertFalse(files.get("A.java").contains("B.java"));
+    }
 }
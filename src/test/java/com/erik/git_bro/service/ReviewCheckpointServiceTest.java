@@ -0,0 +1,103 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.InlineReviewResponse;
+import com.erik.git_bro.dto.Issue;
+import com.erik.git_bro.model.ReviewCheckpoint;
+import com.erik.git_bro.repository.ReviewCheckpointRepository;
+import com.erik.git_bro.util.DbBulkhead;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ ReviewCheckpointService.class, ReviewQueueProperties.class,
+        ReviewCheckpointServiceTest.Beans.class })
+@TestPropertySource(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+public class ReviewCheckpointServiceTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        DbBulkhead dbBulkhead(DataSource dataSource) {
+            return new DbBulkhead(dataSource, new SimpleMeterRegistry(), 2, 0, Duration.ofSeconds(1));
+        }
+    }
+
+    @Autowired
+    private ReviewCheckpointService reviewCheckpointService;
+
+    @Autowired
+    private ReviewCheckpointRepository reviewCheckpointRepository;
+
+    private final AnalysisRequest file = new AnalysisRequest("A.java", "+    int a;", "7", "sha", "url", "author");
+    private final Issue issue = new Issue("A.java", 2, 1, "Unused field");
+    private final InlineReviewResponse response = new InlineReviewResponse(List.of(issue), "merge");
+
+    @Test
+    void resumes_from_the_last_completed_stage() {
+        reviewCheckpointService.analyzed("owner", "repo", 7, "sha", file, response);
+
+        ReviewCheckpointService.Resumed analyzed = reviewCheckpointService.find("owner", "repo", 7, "sha", file)
+                .orElseThrow();
+        assertEquals("merge", analyzed.response().getRecommendation());
+        assertEquals(List.of(issue), analyzed.response().getIssues());
+        assertNull(analyzed.posted());
+
+        reviewCheckpointService.posted("owner", "repo", 7, "sha", file, response, List.of(issue));
+
+        assertEquals(List.of(issue), reviewCheckpointService.find("owner", "repo", 7, "sha", file).orElseThrow()
+                .posted());
+        assertEquals(1, reviewCheckpointRepository.count());
+    }
+
+    @Test
+    void checkpoint_of_another_diff_or_commit_is_not_used() {
+        reviewCheckpointService.analyzed("owner", "repo", 7, "sha", file, response);
+
+        AnalysisRequest changed = new AnalysisRequest("A.java", "+    int b;", "7", "sha", "url", "author");
+        assertTrue(reviewCheckpointService.find("owner", "repo", 7, "sha", changed).isEmpty());
+        assertTrue(reviewCheckpointService.find("owner", "repo", 7, "other-sha", file).isEmpty());
+    }
+
+    @Test
+    void finished_and_stale_reviews_are_dropped() {
+        reviewCheckpointService.analyzed("owner", "repo", 7, "sha", file, response);
+        reviewCheckpointService.analyzed("owner", "repo", 8, "sha", file, response);
+        ReviewCheckpoint old = reviewCheckpointRepository.findByOwnerAndRepoAndPullNumberAndHeadShaAndFileName(
+                "owner", "repo", 8, "sha", "A.java").orElseThrow();
+        old.setUpdatedAt(Instant.now().minus(Duration.ofDays(30)));
+        reviewCheckpointRepository.saveAndFlush(old);
+
+        reviewCheckpointService.clear("owner", "repo", 7, "sha");
+        reviewCheckpointService.purgeStale();
+
+        assertEquals(0, reviewCheckpointRepository.count());
+    }
+}
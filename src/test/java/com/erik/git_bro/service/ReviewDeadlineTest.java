@@ -0,0 +1,41 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class ReviewDeadlineTest {
+
+    @Test
+    void stage_running_past_the_deadline_fails_and_is_cancelled() {
+        ReviewDeadline deadline = ReviewDeadline.in(Duration.ofMillis(100));
+        CompletableFuture<String> modelCall = new CompletableFuture<>();
+
+        CompletableFuture<String> bounded = deadline.bound(modelCall, "model call");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bounded.get(5, TimeUnit.SECONDS));
+        ReviewDeadline.Exceeded exceeded = assertInstanceOf(ReviewDeadline.Exceeded.class, failure.getCause());
+        assertEquals("model call", exceeded.stage());
+        assertTrue(modelCall.isCancelled());
+        assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    void stage_finishing_in_time_completes_normally() throws Exception {
+        ReviewDeadline deadline = ReviewDeadline.in(Duration.ofSeconds(5));
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+
+        CompletableFuture<String> bounded = deadline.bound(lookup, "GitHub lookups");
+        lookup.complete("sha");
+
+        assertEquals("sha", bounded.get(1, TimeUnit.SECONDS));
+        assertTrue(deadline.remaining().compareTo(Duration.ZERO) > 0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.erik.git_bro.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.erik.git_bro.dto.ExportFilter;
+import com.erik.git_bro.dto.ReviewExportRow;
+import com.erik.git_bro.model.Category;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+public class ReviewExportServiceTest {
+
+    private static final Instant FROM = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2025-02-01T00:00:00Z");
+
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final ReviewExportService reviewExportService = new ReviewExportService(reviewRepository,
+            mock(ReviewIterationRepository.class), mock(PlatformTransactionManager.class),
+            new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Test
+    void pages_through_reviews_by_keyset() throws Exception {
+        ReflectionTestUtils.setField(reviewExportService, "pageSize", 2);
+        ReviewExportRow first = row("2025-01-02T00:00:00Z");
+        ReviewExportRow second = row("2025-01-03T00:00:00Z");
+        ReviewExportRow third = row("2025-01-04T00:00:00Z");
+        when(reviewRepository.streamForExport(eq(FROM), eq(new UUID(0L, 0L)), eq(TO), eq("%/owner/repo/pull%"),
+                any(), eq(Limit.of(2)))).thenReturn(Stream.of(first, second));
+        when(reviewRepository.streamForExport(eq(second.createdAt()), eq(second.id()), eq(TO), any(), any(),
+                eq(Limit.of(2)))).thenReturn(Stream.of(third));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = reviewExportService.exportReviews(new ExportFilter("Owner/Repo", null, FROM, TO, null, null), out);
+
+        assertEquals(3, rows);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size());
+        assertEquals(third.id().toString(), new ObjectMapper().readTree(lines.get(2)).path("id").asText());
+        verify(reviewRepository).streamForExport(second.createdAt(), second.id(), TO, "%/owner/repo/pull%", null,
+                Limit.of(2));
+    }
+
+    @Test
+    void repository_pattern_escapes_like_wildcards() {
+        assertEquals("%/my\\_org/repo/pull%", ReviewExportService.repositoryPattern("my_org/repo"));
+        assertNull(ReviewExportService.repositoryPattern(" "));
+    }
+
+    private static ReviewExportRow row(String createdAt) {
+        return new ReviewExportRow(UUID.randomUUID(), Instant.parse(createdAt), "7", "https://github.com/owner/repo/pull/7",
+                "erik", "A.java", 3, Category.STYLE, null, "Unused field", "fp", null, "sha");
+    }
+}
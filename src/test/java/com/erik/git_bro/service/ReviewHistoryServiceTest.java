@@ -0,0 +1,118 @@
+package com.erik.git_bro.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.erik.git_bro.dto.ReviewIterationDTO;
+import com.erik.git_bro.dto.ReviewSummary;
+import com.erik.git_bro.model.Category;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewRepository;
+
+public class ReviewHistoryServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-01T12:00:00Z");
+
+    private final ReviewIterationRepository reviewIterationRepository = mock(ReviewIterationRepository.class);
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final MutableClock clock = new MutableClock();
+    private final ReviewHistoryService reviewHistoryService = new ReviewHistoryService(reviewIterationRepository,
+            reviewRepository, clock);
+
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    @Test
+    void groups_reviews_under_their_iterations() {
+        stubHistory();
+
+        List<ReviewIterationDTO> history = reviewHistoryService.getHistory("7");
+
+        assertEquals(2, history.size());
+        assertEquals(List.of("Unused field", "Null check"),
+                history.get(0).getReviews().stream().map(ReviewSummary::feedback).toList());
+        assertEquals(List.of("Magic number"),
+                history.get(1).getReviews().stream().map(ReviewSummary::feedback).toList());
+    }
+
+    @Test
+    void serves_from_cache_until_evicted_or_expired() {
+        stubHistory();
+
+        reviewHistoryService.getHistory("7");
+        reviewHistoryService.getHistory("7");
+        verify(reviewIterationRepository, times(1)).findHistoryByPullRequestId("7");
+
+        reviewHistoryService.onIterationsChanged(new ReviewHistoryService.IterationsChanged(Set.of("7")));
+        reviewHistoryService.getHistory("7");
+        verify(reviewIterationRepository, times(2)).findHistoryByPullRequestId("7");
+
+        clock.advance(Duration.ofMinutes(1));
+        stubHistory();
+        reviewHistoryService.getHistory("7");
+        verify(reviewIterationRepository, times(3)).findHistoryByPullRequestId("7");
+    }
+
+    @Test
+    void read_overlapping_a_write_is_not_cached() {
+        stubHistory();
+        // The write commits while the read is between its two queries
+        when(reviewRepository.findSummariesByPullRequestId("7")).thenAnswer(invocation -> {
+            reviewHistoryService.onIterationsChanged(new ReviewHistoryService.IterationsChanged(Set.of("7")));
+            return List.of(summary(first, "Unused field"));
+        });
+
+        reviewHistoryService.getHistory("7");
+        reviewHistoryService.getHistory("7");
+
+        verify(reviewIterationRepository, times(2)).findHistoryByPullRequestId("7");
+    }
+
+    private void stubHistory() {
+        // Fresh DTOs per load, like the repository returns
+        when(reviewIterationRepository.findHistoryByPullRequestId("7")).thenReturn(List.of(
+                new ReviewIterationDTO(first, "sha-1", NOW.minusSeconds(60), "chatgpt", null, null),
+                new ReviewIterationDTO(second, "sha-2", NOW, "chatgpt", null, null)));
+        when(reviewRepository.findSummariesByPullRequestId("7")).thenReturn(List.of(
+                summary(first, "Unused field"), summary(second, "Magic number"), summary(first, "Null check")));
+    }
+
+    private static ReviewSummary summary(UUID iterationId, String feedback) {
+        return new ReviewSummary(iterationId, UUID.randomUUID(), "A.java", 1, Category.STYLE, null, feedback, NOW);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = NOW;
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
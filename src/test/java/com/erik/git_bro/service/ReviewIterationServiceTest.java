@@ -11,9 +11,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -30,10 +37,41 @@ public class ReviewIterationServiceTest {
     @WithMockUser
     public void testFindOrCreateIteration() {
         when(reviewIterationRepository.findByPullRequestIdAndCommitSha(any(), any())).thenReturn(Optional.of(new ReviewIteration()));
-        reviewIterationService.findOrCreateIteration("1", "test-sha");
+        reviewIterationService.findOrCreateIteration("1", "test-sha", "url");
 
-        when(reviewIterationRepository.findByPullRequestIdAndCommitSha(any(), any())).thenReturn(Optional.empty());
-        when(reviewIterationRepository.save(any())).thenReturn(new ReviewIteration());
-        reviewIterationService.findOrCreateIteration("1", "test-sha");
+        ReviewIteration created = new ReviewIteration();
+        when(reviewIterationRepository.findByPullRequestIdAndCommitSha(any(), any()))
+                .thenReturn(Optional.empty(), Optional.of(created));
+        when(reviewIterationRepository.insertIfAbsent(any(), eq("1"), eq("url"), eq("test-sha"), any())).thenReturn(1);
+        assertSame(created, reviewIterationService.findOrCreateIteration("1", "test-sha", "url"));
+        verify(reviewIterationRepository).insertIfAbsent(any(), eq("1"), eq("url"), eq("test-sha"), any());
+    }
+
+    @Test
+    @WithMockUser
+    public void testFindOrCreateIterationLosingTheRace() {
+        // Another upload inserted the same commit between our read and our insert
+        ReviewIteration winner = new ReviewIteration();
+        when(reviewIterationRepository.findByPullRequestIdAndCommitSha("2", "test-sha"))
+                .thenReturn(Optional.empty(), Optional.of(winner));
+        when(reviewIterationRepository.insertIfAbsent(any(), eq("2"), eq("url"), eq("test-sha"), any())).thenReturn(0);
+
+        assertSame(winner, reviewIterationService.findOrCreateIteration("2", "test-sha", "url"));
+        verify(reviewIterationRepository, never()).save(any());
+    }
+
+    @Test
+    @WithMockUser
+    public void testSaveWithReviewsRaisesSeverityInSql() {
+        UUID id = UUID.randomUUID();
+        ReviewIteration low = ReviewIteration.builder().id(id).pullRequestId("3")
+                .derivedSeverityScore(new BigDecimal("0.20")).aiModel("chatgpt").build();
+        ReviewIteration high = ReviewIteration.builder().id(id).pullRequestId("3")
+                .derivedSeverityScore(new BigDecimal("0.80")).aiModel("gemini").build();
+
+        reviewIterationService.saveWithReviews(List.of(low, high), List.of());
+
+        verify(reviewIterationRepository).raiseSeverity(id, new BigDecimal("0.80"), "gemini");
+        verify(reviewIterationRepository, never()).save(any());
     }
 }
@@ -0,0 +1,161 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.dto.ReviewJobRequest;
+import com.erik.git_bro.model.ReviewJob;
+import com.erik.git_bro.model.ReviewJobStatus;
+import com.erik.git_bro.repository.ReviewJobRepository;
+
+/**
+ * Runs the queue against an embedded H2 database. H2 ignores SKIP LOCKED, but
+ * claim, retry, dead-letter and lease handling behave the same as on Postgres.
+ */
+@DataJpaTest
+@Import({ ReviewJobQueue.class, ReviewQueueProperties.class })
+@TestPropertySource(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.review-queue.max-attempts=2",
+        "app.review-queue.node-id=test-node"
+})
+public class ReviewJobQueueTest {
+
+    @Autowired
+    private ReviewJobQueue reviewJobQueue;
+
+    @Autowired
+    private ReviewJobRepository reviewJobRepository;
+
+    private ReviewJobRequest request(String deliveryId) {
+        return new ReviewJobRequest(deliveryId, 1L, "owner", "repo", 7, "sha", "url", "author", "chatgpt");
+    }
+
+    @Test
+    void enqueue_rejects_duplicate_delivery() {
+        assertTrue(reviewJobQueue.enqueue(request("delivery-1")));
+        assertFalse(reviewJobQueue.enqueue(request("delivery-1")));
+        assertEquals(1, reviewJobRepository.count());
+    }
+
+    @Test
+    void claimNext_leases_job_to_node_and_completes() {
+        reviewJobQueue.enqueue(request("delivery-2"));
+
+        ReviewJob job = reviewJobQueue.claimNext().orElseThrow();
+        assertEquals(ReviewJobStatus.RUNNING, job.getStatus());
+        assertEquals("test-node", job.getLockedBy());
+        assertEquals(1, job.getAttempts());
+        assertTrue(reviewJobQueue.claimNext().isEmpty());
+
+        reviewJobQueue.complete(job.getId());
+        assertEquals(ReviewJobStatus.SUCCEEDED, reviewJobRepository.findById(job.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void fail_retries_with_backoff_then_dead_letters() {
+        reviewJobQueue.enqueue(request("delivery-3"));
+
+        ReviewJob job = reviewJobQueue.claimNext().orElseThrow();
+        reviewJobQueue.fail(job.getId(), new RuntimeException("boom"));
+        ReviewJob retried = reviewJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(ReviewJobStatus.PENDING, retried.getStatus());
+        assertTrue(retried.getAvailableAt().isAfter(Instant.now()));
+        assertTrue(reviewJobQueue.claimNext().isEmpty(), "job must not be claimable while backing off");
+
+        retried.setAvailableAt(Instant.now().minusSeconds(1));
+        reviewJobRepository.saveAndFlush(retried);
+        reviewJobQueue.claimNext().orElseThrow();
+        reviewJobQueue.fail(job.getId(), new RuntimeException("boom again"));
+        ReviewJob dead = reviewJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(ReviewJobStatus.DEAD, dead.getStatus());
+        assertEquals("boom again", dead.getLastError());
+    }
+
+    @Test
+    void complete_and_fail_leave_a_reclaimed_job_alone() {
+        reviewJobQueue.enqueue(request("delivery-6"));
+        ReviewJob job = reviewJobQueue.claimNext().orElseThrow();
+        // The lease lapsed and another node claimed the job
+        job.setLockedBy("other-node");
+        reviewJobRepository.saveAndFlush(job);
+
+        reviewJobQueue.complete(job.getId());
+        reviewJobQueue.fail(job.getId(), new RuntimeException("late"));
+
+        ReviewJob reclaimed = reviewJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(ReviewJobStatus.RUNNING, reclaimed.getStatus());
+        assertEquals("other-node", reclaimed.getLockedBy());
+        assertEquals(1, reclaimed.getAttempts());
+    }
+
+    @Test
+    void expired_leases_are_released_and_live_ones_renewed() {
+        reviewJobQueue.enqueue(request("delivery-4"));
+        ReviewJob job = reviewJobQueue.claimNext().orElseThrow();
+
+        assertEquals(1, reviewJobQueue.renewLeases(Set.of(job.getId())));
+
+        job.setLeaseExpiresAt(Instant.now().minusSeconds(1));
+        reviewJobRepository.saveAndFlush(job);
+        assertEquals(1, reviewJobQueue.releaseExpiredLeases());
+        assertTrue(reviewJobQueue.claimNext().isPresent());
+    }
+
+    @Test
+    void requeue_returns_abandoned_jobs_for_immediate_claim() {
+        reviewJobQueue.enqueue(request("delivery-5"));
+        ReviewJob job = reviewJobQueue.claimNext().orElseThrow();
+
+        assertEquals(1, reviewJobQueue.requeue(Set.of(job.getId())));
+        assertEquals(0, reviewJobQueue.requeue(Set.of()));
+        assertTrue(reviewJobQueue.claimNext().isPresent());
+    }
+
+    @Test
+    void newer_head_is_one_queued_after_the_latest_job_of_the_sha_and_since() {
+        Instant pushed = Instant.now().minusSeconds(60);
+        queued("delivery-6", "sha-1", pushed);
+        queued("delivery-7", "sha-2", pushed.plusSeconds(10));
+
+        assertTrue(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-1", pushed.minusSeconds(1)));
+        assertFalse(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-2", pushed.minusSeconds(1)));
+        // Jobs queued before the review started, or before its head was last confirmed, do not count
+        assertFalse(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-1", pushed.plusSeconds(15)));
+        assertFalse(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-3", Instant.now()));
+        assertTrue(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-3", pushed));
+        assertFalse(reviewJobRepository.existsNewerHead("owner", "repo", 8, "sha-1", pushed));
+
+        // Force-pushed back to the first commit
+        queued("delivery-8", "sha-1", pushed.plusSeconds(20));
+        assertFalse(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-1", pushed.minusSeconds(1)));
+        assertTrue(reviewJobRepository.existsNewerHead("owner", "repo", 7, "sha-2", pushed.minusSeconds(1)));
+    }
+
+    private void queued(String deliveryId, String headSha, Instant createdAt) {
+        // created_at is not updatable, so the job is stored as queued at that time
+        reviewJobRepository.saveAndFlush(ReviewJob.builder().deliveryId(deliveryId).installationId(1L)
+                .owner("owner").repo("repo").pullNumber(7).headSha(headSha).prUrl("url").author("author")
+                .modelName("chatgpt").status(ReviewJobStatus.PENDING).attempts(0).availableAt(createdAt)
+                .createdAt(createdAt).build());
+    }
+
+    @Test
+    void backoff_doubles_and_is_capped() {
+        assertEquals(Duration.ofSeconds(30), reviewJobQueue.backoff(1));
+        assertEquals(Duration.ofSeconds(60), reviewJobQueue.backoff(2));
+        assertEquals(Duration.ofMinutes(30), reviewJobQueue.backoff(50));
+    }
+}
@@ -0,0 +1,73 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.erik.git_bro.config.ReviewQueueProperties;
+import com.erik.git_bro.model.ReviewJob;
+import com.erik.git_bro.util.ReviewTracer;
+
+import io.micrometer.observation.ObservationRegistry;
+
+public class ReviewJobWorkerTest {
+
+    private final ReviewJobQueue reviewJobQueue = mock(ReviewJobQueue.class);
+    private final ReviewJobService reviewJobService = mock(ReviewJobService.class);
+    private final InFlightReviews inFlightReviews = mock(InFlightReviews.class);
+    private final ReviewQueueProperties properties = new ReviewQueueProperties();
+    private final ReviewJobWorker worker = new ReviewJobWorker(reviewJobQueue, reviewJobService, properties,
+            inFlightReviews, new ReviewTracer(ObservationRegistry.NOOP));
+
+    private final ReviewJob job = ReviewJob.builder().id(UUID.randomUUID()).owner("owner").repo("repo")
+            .pullNumber(7).headSha("sha").attempts(1).build();
+
+    @Test
+    void job_finishing_within_the_grace_period_completes() throws Exception {
+        properties.setShutdownGrace(Duration.ofSeconds(5));
+        CompletableFuture<Void> review = new CompletableFuture<>();
+        doAnswer(invocation -> review.join()).when(reviewJobService).process(any());
+        Thread running = Thread.ofVirtual().start(() -> worker.runJob(job));
+        verify(reviewJobService, timeout(5000)).process(any());
+
+        Thread drain = Thread.ofVirtual().start(() -> worker.drain(List.of(running)));
+        review.complete(null);
+        drain.join(5000);
+
+        verify(reviewJobQueue).complete(job.getId());
+        verify(inFlightReviews, never()).abandon(any(), any(), anyInt(), any());
+        verify(reviewJobQueue, never()).requeue(any());
+    }
+
+    @Test
+    void job_still_running_after_the_grace_period_is_abandoned_and_requeued() throws Exception {
+        properties.setShutdownGrace(Duration.ofMillis(100));
+        CompletableFuture<Void> review = new CompletableFuture<>();
+        doAnswer(invocation -> review.join()).when(reviewJobService).process(any());
+        when(inFlightReviews.abandon("owner", "repo", 7, "sha")).thenAnswer(invocation -> {
+            review.completeExceptionally(new CancellationException("stopped for shutdown"));
+            return 1;
+        });
+        Thread running = Thread.ofVirtual().start(() -> worker.runJob(job));
+        verify(reviewJobService, timeout(5000)).process(any());
+
+        worker.drain(List.of(running));
+
+        verify(reviewJobQueue).requeue(Set.of(job.getId()));
+        verify(reviewJobQueue, never()).fail(any(), any());
+        verify(reviewJobQueue, never()).complete(any());
+    }
+}
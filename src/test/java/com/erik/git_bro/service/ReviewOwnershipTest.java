@@ -0,0 +1,109 @@
+package com.erik.git_bro.service;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest
+public class ReviewOwnershipTest {
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void only_one_node_owns_a_review_until_it_is_released() {
+        ReviewOwnership nodeA = new ReviewOwnership(dataSourceProperties);
+        ReviewOwnership nodeB = new ReviewOwnership(dataSourceProperties);
+        try {
+            Optional<ReviewOwnership.Lease> lease = nodeA.tryAcquire("Owner", "repo", 7, "abc");
+            assertTrue(lease.isPresent());
+            assertTrue(nodeB.tryAcquire("owner", "repo", 7, "abc").isEmpty());
+            assertTrue(nodeA.tryAcquire("owner", "repo", 7, "abc").isEmpty());
+            // Another commit of the same PR is a different review
+            nodeB.tryAcquire("owner", "repo", 7, "def").orElseThrow().close();
+
+            lease.get().close();
+            nodeA.heartbeat();
+
+            Optional<ReviewOwnership.Lease> taken = nodeB.tryAcquire("owner", "repo", 7, "abc");
+            assertTrue(taken.isPresent());
+            taken.get().close();
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    @Test
+    void lease_is_lost_when_another_node_takes_over_after_a_disconnect() {
+        ReviewOwnership nodeA = new ReviewOwnership(dataSourceProperties);
+        ReviewOwnership nodeB = new ReviewOwnership(dataSourceProperties);
+        try {
+            ReviewOwnership.Lease lease = nodeA.tryAcquire("owner", "repo", 8, "abc").orElseThrow();
+            // Simulate node A's lock connection dropping
+            jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_locks"
+                    + " WHERE locktype = 'advisory' AND pid <> pg_backend_pid()");
+
+            ReviewOwnership.Lease takeover = nodeB.tryAcquire("owner", "repo", 8, "abc").orElseThrow();
+            nodeA.heartbeat();
+            nodeA.heartbeat();
+
+            assertFalse(lease.isHeld());
+            assertTrue(takeover.isHeld());
+            takeover.close();
+            lease.close();
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    @Test
+    void lock_released_with_its_connection_is_taken_again_before_posting() {
+        ReviewOwnership nodeA = new ReviewOwnership(dataSourceProperties);
+        ReviewOwnership nodeB = new ReviewOwnership(dataSourceProperties);
+        try {
+            ReviewOwnership.Lease lease = nodeA.tryAcquire("owner", "repo", 9, "abc").orElseThrow();
+            jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_locks"
+                    + " WHERE locktype = 'advisory' AND pid <> pg_backend_pid()");
+
+            // No heartbeat yet: confirming relocks right away and keeps node B out
+            assertTrue(lease.confirm());
+            assertTrue(nodeB.tryAcquire("owner", "repo", 9, "abc").isEmpty());
+
+            jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_locks"
+                    + " WHERE locktype = 'advisory' AND pid <> pg_backend_pid()");
+            ReviewOwnership.Lease takeover = nodeB.tryAcquire("owner", "repo", 9, "abc").orElseThrow();
+
+            assertFalse(lease.confirm());
+            assertFalse(lease.isHeld());
+            takeover.close();
+            lease.close();
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    @Test
+    void no_review_is_owned_when_the_database_is_unreachable() {
+        ReviewOwnership ownership = new ReviewOwnership(() -> {
+            throw new SQLException("connection refused");
+        });
+
+        assertThrows(IllegalStateException.class, () -> ownership.tryAcquire("owner", "repo", 7, "abc"));
+        // The failed attempt leaves nothing behind that would block the retry
+        assertThrows(IllegalStateException.class, () -> ownership.tryAcquire("owner", "repo", 7, "abc"));
+    }
+}
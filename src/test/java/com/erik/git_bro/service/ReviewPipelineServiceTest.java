@@ -0,0 +1,428 @@
+package com.erik.git_bro.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mock;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.erik.git_bro.config.ReviewSchedulerProperties;
+import com.erik.git_bro.config.TracingProperties;
+import com.erik.git_bro.dto.AnalysisRequest;
+import com.erik.git_bro.dto.GitDiff;
+import com.erik.git_bro.dto.InlineReviewResponse;
+import com.erik.git_bro.dto.Issue;
+import com.erik.git_bro.dto.PullRequestPrefetch;
+import com.erik.git_bro.dto.ReviewThread;
+import com.erik.git_bro.dto.TraceSpan;
+import com.erik.git_bro.dto.TraceSummary;
+import com.erik.git_bro.repository.ReviewIterationRepository;
+import com.erik.git_bro.repository.ReviewJobRepository;
+import com.erik.git_bro.service.github.GitHubAppService;
+import com.erik.git_bro.service.github.GitHubAppTokenService;
+import com.erik.git_bro.service.github.GitHubCommentService;
+import com.erik.git_bro.service.github.ReviewThreadIndex;
+import com.erik.git_bro.util.ReviewTracer;
+import com.erik.git_bro.util.SpanStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+public class ReviewPipelineServiceTest {
+
+    private static final String PATCH = "@@ -1,1 +1,2 @@\n class A {\n+    int a;";
+
+    @Mock private CodeAnalysisService codeAnalysisService;
+    @Mock private GitHubAppService gitHubAppService;
+    @Mock private GitHubCommentService gitHubCommentService;
+    @Mock private GitHubAppTokenService gitHubAppTokenService;
+    @Mock private IncrementalReviewService incrementalReviewService;
+    @Mock private ReviewIterationRepository reviewIterationRepository;
+    @Mock private ReviewJobRepository reviewJobRepository;
+    @Mock private ReviewCheckpointService reviewCheckpointService;
+
+    private ReviewPipelineService reviewPipelineService;
+    private final ReviewOwnership reviewOwnership = new ReviewOwnership((ReviewOwnership.ConnectionSource) null);
+    private final SpanStore spanStore = new SpanStore(new TracingProperties());
+
+    private final CompletableFuture<String> token = new CompletableFuture<>();
+    private final CompletableFuture<String> sha = new CompletableFuture<>();
+    private final CompletableFuture<List<GitDiff>> files = new CompletableFuture<>();
+    private final CompletableFuture<List<ReviewThread>> threads = new CompletableFuture<>();
+
+    private final AnalysisRequest request = new AnalysisRequest("pr.diff", "diff --git a/A.java b/A.java", "7",
+            null, "url", "author");
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(spanStore);
+        reviewPipelineService = new ReviewPipelineService(codeAnalysisService, new ParsingService(),
+                gitHubAppService, gitHubCommentService, gitHubAppTokenService, incrementalReviewService,
+                new ReviewThreadIndex(), new ReviewScheduler(new ReviewSchedulerProperties(), new SimpleMeterRegistry()),
+                new InFlightReviews(reviewIterationRepository, reviewJobRepository, gitHubAppService, Runnable::run),
+                reviewOwnership, reviewCheckpointService,
+                new ReviewTracer(observationRegistry), Executors.newVirtualThreadPerTaskExecutor());
+        when(gitHubAppService.prefetch("owner", "repo", 7))
+                .thenReturn(new PullRequestPrefetch(token, sha, files, threads));
+    }
+
+    @Test
+    void model_is_called_before_github_lookups_complete() throws Exception {
+        InlineReviewResponse response = new InlineReviewResponse();
+        response.setIssues(List.of(new Issue("A.java", 2, 0, "Unused field")));
+        response.setRecommendation("Approve");
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(eq(request), eq("chatgpt"), eq(sha)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        CompletableFuture<String> summary = reviewPipelineService.run("owner", "repo", 7, request, "chatgpt");
+
+        verify(codeAnalysisService).analyzeDiff(request, "chatgpt", sha);
+        assertFalse(summary.isDone());
+
+        GitDiff diff = GitDiff.builder().filename("A.java").patch(PATCH).build();
+        token.complete("token");
+        sha.complete("head-sha");
+        files.complete(List.of(diff));
+        threads.complete(List.of());
+
+        assertTrue(summary.get().contains("Posted 1 inline comments."));
+        verify(gitHubCommentService).postBlockComments(eq("token"), eq("owner"), eq("repo"), eq(7), eq("A.java"),
+                eq(2), eq("Unused field"), eq("head-sha"), anyInt(), anyString());
+    }
+
+    @Test
+    void incremental_review_waits_for_head_sha_before_calling_model() throws Exception {
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(true);
+        when(incrementalReviewService.narrowToDelta(eq("owner"), eq("repo"), any(AnalysisRequest.class)))
+                .thenAnswer(invocation -> {
+                    AnalysisRequest withSha = invocation.getArgument(2);
+                    return new AnalysisRequest(withSha.filename(), "", withSha.pullRequestId(), withSha.sha(),
+                            withSha.prUrl(), withSha.author());
+                });
+
+        CompletableFuture<String> summary = reviewPipelineService.run("owner", "repo", 7, request, "chatgpt");
+        verify(incrementalReviewService, never()).narrowToDelta(anyString(), anyString(), any());
+
+        sha.complete("head-sha");
+
+        assertNull(summary.get());
+        verify(incrementalReviewService).narrowToDelta(eq("owner"), eq("repo"),
+                eq(new AnalysisRequest("pr.diff", "diff --git a/A.java b/A.java", "7", "head-sha", "url", "author")));
+        verify(codeAnalysisService, never()).analyzeDiff(any(), anyString(), any());
+    }
+
+    @Test
+    void comment_matching_an_existing_thread_is_not_posted() throws Exception {
+        InlineReviewResponse response = new InlineReviewResponse();
+        response.setIssues(List.of(new Issue("A.java", 2, 0, "Unused field")));
+        response.setRecommendation("Approve");
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(eq(request), eq("chatgpt"), eq(sha)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        token.complete("token");
+        sha.complete("head-sha");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build()));
+        threads.complete(List.of(new ReviewThread("T1", "A.java", 2, false, false, "  unused   FIELD\n")));
+
+        String summary = reviewPipelineService.run("owner", "repo", 7, request, "chatgpt").get();
+
+        assertTrue(summary.contains("Posted 0 inline comments."));
+        verify(gitHubCommentService, never()).postBlockComments(anyString(), anyString(), anyString(), anyInt(),
+                anyString(), anyInt(), anyString(), anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void per_file_review_posts_each_file_as_it_finishes_and_aggregates() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        AnalysisRequest pr = new AnalysisRequest("pr.diff", diff, "7", null, "url", "author");
+        CompletableFuture<InlineReviewResponse> slowB = new CompletableFuture<>();
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "A.java".equals(r.filename())),
+                eq("chatgpt"), eq(sha)))
+                .thenReturn(CompletableFuture.completedFuture(response(new Issue("A.java", 2, 0, "Unused field"),
+                        "merge")));
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "B.java".equals(r.filename())),
+                eq("chatgpt"), eq(sha)))
+                .thenReturn(slowB);
+        token.complete("token");
+        sha.complete("head-sha");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build(),
+                GitDiff.builder().filename("B.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        CompletableFuture<String> summary = reviewPipelineService.runPerFile("owner", "repo", 7, pr, "chatgpt");
+
+        // A's comment is out while B is still with the model
+        verify(gitHubCommentService, timeout(5000)).postBlockComments(eq("token"), eq("owner"), eq("repo"), eq(7),
+                eq("A.java"), eq(2), eq("Unused field"), eq("head-sha"), anyInt(), anyString());
+        assertFalse(summary.isDone());
+
+        slowB.complete(response(new Issue("B.java", 2, 0, "Magic number"), "do not merge"));
+
+        String result = summary.get(5, TimeUnit.SECONDS);
+        assertTrue(result.contains("Posted 2 inline comments."));
+        assertTrue(result.contains("**Recommendation**: do not merge"));
+    }
+
+    @Test
+    void per_file_review_lists_failed_files() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        AnalysisRequest pr = new AnalysisRequest("pr.diff", diff, "7", "head-sha", "url", "author");
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "A.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.completedFuture(response(null, "merge")));
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "B.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("model timed out")));
+        token.complete("token");
+        files.complete(List.of());
+        threads.complete(List.of());
+
+        String result = reviewPipelineService.runPerFile("owner", "repo", 7, pr, "chatgpt").get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.contains("Posted 0 inline comments."));
+        assertTrue(result.contains("- `B.java`"));
+    }
+
+    @Test
+    void per_file_review_is_traced_as_one_trace_across_threads() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        AnalysisRequest pr = new AnalysisRequest("pr.diff", diff, "7", "head-sha", "url", "author");
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "A.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.completedFuture(response(null, "merge")));
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "B.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("model timed out")));
+        token.complete("token");
+        files.complete(List.of());
+        threads.complete(List.of());
+
+        reviewPipelineService.runPerFile("owner", "repo", 7, pr, "chatgpt").get(5, TimeUnit.SECONDS);
+
+        // The root span stops right after the review future completes
+        List<TraceSummary> traces = List.of();
+        for (int i = 0; i < 50 && traces.isEmpty(); i++) {
+            traces = spanStore.forPullRequest("owner/repo#7");
+            Thread.sleep(100);
+        }
+        assertEquals(1, traces.size());
+        List<TraceSpan> spans = spanStore.trace(traces.get(0).traceId());
+        assertEquals("review.files", spans.get(0).name());
+        Set<String> spanIds = spans.stream().map(TraceSpan::spanId).collect(Collectors.toSet());
+        assertTrue(spans.stream().skip(1).allMatch(span -> spanIds.contains(span.parentId())));
+        assertEquals(2, spans.stream().filter(span -> span.name().equals("review.file")).count());
+        assertEquals(2, spans.stream().filter(span -> span.name().equals("review.model")).count());
+        assertTrue(spans.stream().anyMatch(span -> span.name().equals("review.file")
+                && "B.java".equals(span.tags().get("review.file")) && span.error() != null));
+    }
+
+    @Test
+    void newer_push_cancels_the_running_review_and_drops_its_comments() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n";
+        CompletableFuture<InlineReviewResponse> slowModel = new CompletableFuture<>();
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "sha-1".equals(r.sha())), eq("chatgpt"),
+                any())).thenReturn(slowModel);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "sha-2".equals(r.sha())), eq("chatgpt"),
+                any())).thenReturn(CompletableFuture.completedFuture(response(null, "merge")));
+        token.complete("token");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        CompletableFuture<String> older = reviewPipelineService.runPerFile("owner", "repo", 7,
+                new AnalysisRequest("pr.diff", diff, "7", "sha-1", "url", "author"), "chatgpt");
+        verify(codeAnalysisService, timeout(5000)).analyzeDiff(argThat(r -> r != null && "sha-1".equals(r.sha())),
+                eq("chatgpt"), any());
+        // GitHub reports the newer push as the head
+        sha.complete("sha-2");
+        String newer = reviewPipelineService.runPerFile("owner", "repo", 7,
+                new AnalysisRequest("pr.diff", diff, "7", "sha-2", "url", "author"), "chatgpt")
+                .get(5, TimeUnit.SECONDS);
+
+        // The head check runs on a virtual thread, so the newer review may finish first
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> older.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, failure.getCause());
+        assertTrue(slowModel.isCancelled());
+        assertTrue(newer.contains("Posted 0 inline comments."));
+        verify(reviewIterationRepository, timeout(5000).atLeastOnce()).markSuperseded("7", "sha-1");
+    }
+
+    @Test
+    void review_of_a_commit_already_being_reviewed_is_refused() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n";
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(any(), eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.completedFuture(response(new Issue("A.java", 2, 0, "Unused field"),
+                        "merge")));
+        token.complete("token");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        try (ReviewOwnership.Lease held = reviewOwnership.tryAcquire("owner", "repo", 7, "sha-1").orElseThrow()) {
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> reviewPipelineService.runPerFile("owner", "repo", 7,
+                            new AnalysisRequest("pr.diff", diff, "7", "sha-1", "url", "author"), "chatgpt")
+                            .get(5, TimeUnit.SECONDS));
+            assertInstanceOf(ReviewOwnership.AlreadyOwned.class, failure.getCause());
+        }
+        verify(gitHubCommentService, never()).postBlockComments(anyString(), anyString(), anyString(), anyInt(),
+                anyString(), anyInt(), anyString(), anyString(), anyInt(), anyString());
+
+        assertTrue(reviewPipelineService.runPerFile("owner", "repo", 7,
+                new AnalysisRequest("pr.diff", diff, "7", "sha-1", "url", "author"), "chatgpt")
+                .get(5, TimeUnit.SECONDS).contains("Posted 1 inline comments."));
+    }
+
+    @Test
+    void deadline_posts_the_files_reviewed_in_time_and_lists_the_rest() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        AnalysisRequest pr = new AnalysisRequest("pr.diff", diff, "7", "head-sha", "url", "author");
+        CompletableFuture<InlineReviewResponse> stuckB = new CompletableFuture<>();
+        ReflectionTestUtils.setField(reviewPipelineService, "reviewDeadline", Duration.ofMillis(300));
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "A.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.completedFuture(response(new Issue("A.java", 2, 0, "Unused field"),
+                        "merge")));
+        when(codeAnalysisService.analyzeDiff(argThat(r -> r != null && "B.java".equals(r.filename())),
+                eq("chatgpt"), any()))
+                .thenReturn(stuckB);
+        token.complete("token");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build(),
+                GitDiff.builder().filename("B.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        String result = reviewPipelineService.runPerFile("owner", "repo", 7, pr, "chatgpt").get(5, TimeUnit.SECONDS);
+
+        verify(gitHubCommentService).postBlockComments(eq("token"), eq("owner"), eq("repo"), eq(7), eq("A.java"),
+                eq(2), eq("Unused field"), eq("head-sha"), anyInt(), anyString());
+        assertTrue(result.contains("Posted 1 inline comments."));
+        assertTrue(result.contains("**Partial review**"));
+        assertTrue(result.contains("- `B.java`"));
+        assertFalse(result.contains("**Not reviewed**"));
+        assertTrue(stuckB.isCancelled());
+    }
+
+    @Test
+    void single_diff_review_posts_nothing_when_the_github_lookups_miss_the_deadline() throws Exception {
+        ReflectionTestUtils.setField(reviewPipelineService, "reviewDeadline", Duration.ofMillis(300));
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(eq(request), eq("chatgpt"), eq(sha)))
+                .thenReturn(CompletableFuture.completedFuture(response(new Issue("A.java", 2, 0, "Unused field"),
+                        "merge")));
+        token.complete("token");
+        sha.complete("head-sha");
+        threads.complete(List.of());
+
+        CompletableFuture<String> summary = reviewPipelineService.run("owner", "repo", 7, request, "chatgpt");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> summary.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ReviewDeadline.Exceeded.class, failure.getCause());
+        assertEquals("GitHub lookups", ((ReviewDeadline.Exceeded) failure.getCause()).stage());
+        verify(gitHubCommentService, never()).postBlockComments(any(), any(), any(), anyInt(), any(), anyInt(),
+                any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void rerun_resumes_files_from_their_checkpoints() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        AnalysisRequest pr = new AnalysisRequest("pr.diff", diff, "7", "head-sha", "url", "author");
+        Issue postedBefore = new Issue("A.java", 2, 0, "Unused field");
+        Issue notPostedYet = new Issue("B.java", 2, 0, "Magic number");
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(reviewCheckpointService.find(eq("owner"), eq("repo"), eq(7), eq("head-sha"),
+                argThat(r -> r != null && "A.java".equals(r.filename()))))
+                .thenReturn(Optional.of(new ReviewCheckpointService.Resumed(response(postedBefore, "merge"),
+                        List.of(postedBefore))));
+        when(reviewCheckpointService.find(eq("owner"), eq("repo"), eq(7), eq("head-sha"),
+                argThat(r -> r != null && "B.java".equals(r.filename()))))
+                .thenReturn(Optional.of(new ReviewCheckpointService.Resumed(response(notPostedYet, "do not merge"),
+                        null)));
+        token.complete("token");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build(),
+                GitDiff.builder().filename("B.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        String result = reviewPipelineService.runPerFile("owner", "repo", 7, pr, "chatgpt").get(5, TimeUnit.SECONDS);
+
+        verify(codeAnalysisService, never()).analyzeDiff(any(), any(), any());
+        verify(gitHubCommentService, never()).postBlockComments(any(), any(), any(), anyInt(), eq("A.java"),
+                anyInt(), any(), any(), anyInt(), any());
+        verify(gitHubCommentService).postBlockComments(eq("token"), eq("owner"), eq("repo"), eq(7), eq("B.java"),
+                eq(2), eq("Magic number"), eq("head-sha"), anyInt(), anyString());
+        verify(reviewCheckpointService).posted(eq("owner"), eq("repo"), eq(7), eq("head-sha"),
+                argThat(r -> r != null && "B.java".equals(r.filename())), any(), any());
+        assertTrue(result.contains("Posted 2 inline comments."));
+        assertTrue(result.contains("**Recommendation**: do not merge"));
+    }
+
+    @Test
+    void review_whose_ownership_was_lost_posts_nothing() throws Exception {
+        String diff = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n" + PATCH + "\n"
+                + "diff --git a/B.java b/B.java\n--- a/B.java\n+++ b/B.java\n" + PATCH + "\n";
+        ReviewOwnership.Lease lost = mock(ReviewOwnership.Lease.class);
+        when(lost.confirm()).thenReturn(false);
+        when(gitHubAppService.getPullRequestDiff("owner", "repo", 7)).thenReturn(diff);
+        when(incrementalReviewService.hasPreviousIteration("owner", "repo", "7")).thenReturn(false);
+        when(codeAnalysisService.analyzeDiff(any(), eq("chatgpt"), any()))
+                .thenReturn(CompletableFuture.completedFuture(response(new Issue("A.java", 2, 0, "Unused field"),
+                        "merge")));
+        token.complete("token");
+        files.complete(List.of(GitDiff.builder().filename("A.java").patch(PATCH).build(),
+                GitDiff.builder().filename("B.java").patch(PATCH).build()));
+        threads.complete(List.of());
+
+        CompletableFuture<String> summary = reviewPipelineService.reviewPullRequest("owner", "repo", 7, "head-sha",
+                "url", "author", "chatgpt", lost);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> summary.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ReviewOwnership.Lost.class, failure.getCause());
+        verify(gitHubCommentService, never()).postBlockComments(any(), any(), any(), anyInt(), any(), anyInt(),
+                any(), any(), anyInt(), any());
+    }
+
+    private static InlineReviewResponse response(Issue issue, String recommendation) {
+        InlineReviewResponse response = new InlineReviewResponse();
+        response.setIssues(issue == null ? List.of() : List.of(issue));
+        response.setRecommendation(recommendation);
+        return response;
+    }
+}
@@ -0,0 +1,49 @@
+package com.erik.git_bro.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.config.RetentionProperties;
+import com.erik.git_bro.util.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ReviewRetentionServiceTest {
+
+    @Test
+    void only_partitions_ending_before_the_cutoff_expire() {
+        List<String> partitions = List.of("review_p2025_03", "review_p2025_01", "review_p2025_02", "review_default",
+                "review_p2025_04");
+
+        List<String> expired = ReviewRetentionService.expiredPartitions(partitions,
+                Instant.parse("2025-03-01T00:00:00Z"));
+
+        assertEquals(List.of("review_p2025_01", "review_p2025_02"), expired);
+    }
+
+    @Test
+    void longest_retention_covers_repository_overrides() {
+        RetentionProperties properties = new RetentionProperties();
+        properties.setDefaultRetention(Duration.ofDays(90));
+        properties.setRepositories(Map.of("owner/short", Duration.ofDays(30), "owner/audit", Duration.ofDays(730)));
+
+        assertEquals(Duration.ofDays(730), properties.getLongestRetention());
+    }
+
+    @Test
+    void ndjson_writer_writes_one_object_per_line() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NdjsonWriter writer = new NdjsonWriter(out, new ObjectMapper())) {
+            writer.write(Map.of("id", 1));
+            writer.write(Map.of("id", 2));
+        }
+
+        assertEquals("{\"id\":1}\n{\"id\":2}\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+package com.erik.git_bro.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.erik.git_bro.model.Category;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.repository.ReviewRollupRepository;
+
+public class ReviewRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    private final ReviewRollupRepository reviewRollupRepository = mock(ReviewRollupRepository.class);
+    private final ReviewRollupService reviewRollupService = new ReviewRollupService(reviewRollupRepository);
+
+    @Test
+    void folds_reviews_into_one_upsert_per_group_and_day() {
+        Review security = review(Category.SECURITY, "0.90");
+        Review style = review(Category.STYLE, "0.30");
+
+        reviewRollupService.record(List.of(security, style));
+
+        verify(reviewRollupRepository).upsert("PULL_REQUEST", "emikac123-hub/git-bro#7", DAY, 2, new BigDecimal("1.20"),
+                new BigDecimal("0.90"));
+        verify(reviewRollupRepository).upsert("AUTHOR", "erik", DAY, 2, new BigDecimal("1.20"),
+                new BigDecimal("0.90"));
+        verify(reviewRollupRepository).upsert("REPOSITORY", "emikac123-hub/git-bro", DAY, 2,
+                new BigDecimal("1.20"), new BigDecimal("0.90"));
+        verify(reviewRollupRepository).upsert("CATEGORY", "SECURITY", DAY, 1, new BigDecimal("0.90"),
+                new BigDecimal("0.90"));
+        verify(reviewRollupRepository).upsert("REPOSITORY_CATEGORY", "emikac123-hub/git-bro|STYLE", DAY, 1,
+                new BigDecimal("0.30"), new BigDecimal("0.30"));
+        verify(reviewRollupRepository).upsert("DAY", "all", DAY, 2, new BigDecimal("1.20"),
+                new BigDecimal("0.90"));
+        // PR, author, repo, day + 2 categories + 2 repo categories
+        verify(reviewRollupRepository, times(8)).upsert(anyString(), anyString(), any(), anyLong(), any(), any());
+    }
+
+    @Test
+    void same_pr_number_in_two_repositories_is_two_groups() {
+        Review other = review(Category.STYLE, "0.30");
+        other.setPrUrl("https://github.com/someone/else/pull/7");
+
+        reviewRollupService.record(List.of(review(Category.SECURITY, "0.90"), other));
+
+        verify(reviewRollupRepository).upsert("PULL_REQUEST", "emikac123-hub/git-bro#7", DAY, 1,
+                new BigDecimal("0.90"), new BigDecimal("0.90"));
+        verify(reviewRollupRepository).upsert("PULL_REQUEST", "someone/else#7", DAY, 1, new BigDecimal("0.30"),
+                new BigDecimal("0.30"));
+    }
+
+    @Test
+    void no_reviews_no_writes() {
+        reviewRollupService.record(List.of());
+        verifyNoInteractions(reviewRollupRepository);
+    }
+
+    @Test
+    void repository_is_parsed_from_html_and_api_urls() {
+        assertEquals("owner/repo", ReviewRollupService.repositoryOf("https://github.com/Owner/repo/pull/3"));
+        assertEquals("owner/repo", ReviewRollupService.repositoryOf("https://api.github.com/repos/owner/repo/pulls/3"));
+        assertEquals("unknown", ReviewRollupService.repositoryOf("not a url"));
+        assertEquals("unknown", ReviewRollupService.repositoryOf(null));
+    }
+
+    private Review review(Category category, String severity) {
+        return Review.builder()
+                .pullRequestId("7")
+                .userId("erik")
+                .prUrl("https://github.com/emikac123-hub/git-bro/pull/7")
+                .category(category)
+                .severityScore(new BigDecimal(severity))
+                .createdAt(Instant.parse("2025-03-01T23:59:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.erik.git_bro.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.config.ReviewSchedulerProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ReviewSchedulerTest {
+
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @Test
+    void small_pr_from_another_repo_jumps_ahead_of_a_giant_one() {
+        ReviewScheduler scheduler = scheduler(Map.of());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit("acme", "monorepo", 1, () -> blocker);
+
+        for (int i = 0; i < 3; i++) {
+            submit(scheduler, "acme", "monorepo", 1000, "giant-" + i);
+        }
+        submit(scheduler, "other", "service", 20, "small-0");
+        submit(scheduler, "other", "service", 20, "small-1");
+        assertEquals(3 + 2, scheduler.queued());
+
+        blocker.complete("done");
+
+        assertEquals(List.of("small-0", "small-1", "giant-0", "giant-1", "giant-2"), started);
+        assertEquals(0, scheduler.running());
+    }
+
+    @Test
+    void installations_are_served_in_proportion_to_their_weight() {
+        ReviewScheduler scheduler = scheduler(Map.of("Heavy", 2));
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit("x", "y", 1, () -> blocker);
+
+        for (int i = 0; i < 4; i++) {
+            submit(scheduler, "heavy", "a", 100, "heavy");
+            submit(scheduler, "light", "b", 100, "light");
+        }
+        blocker.complete("done");
+
+        assertEquals(List.of("heavy", "heavy", "light", "heavy", "heavy", "light"), started.subList(0, 6));
+    }
+
+    @Test
+    void repositories_of_one_installation_share_its_turn() {
+        ReviewScheduler scheduler = scheduler(Map.of());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit("x", "y", 1, () -> blocker);
+
+        submit(scheduler, "acme", "a", 100, "acme/a");
+        submit(scheduler, "acme", "a", 100, "acme/a");
+        submit(scheduler, "acme", "b", 100, "acme/b");
+        submit(scheduler, "solo", "c", 100, "solo/c");
+        submit(scheduler, "solo", "c", 100, "solo/c");
+        blocker.complete("done");
+
+        assertEquals(List.of("acme/a", "solo/c", "acme/b", "solo/c", "acme/a"), started);
+    }
+
+    private ReviewScheduler scheduler(Map<String, Integer> weights) {
+        ReviewSchedulerProperties properties = new ReviewSchedulerProperties();
+        properties.setConcurrency(1);
+        properties.setQuantum(100);
+        properties.setWeights(weights);
+        return new ReviewScheduler(properties, new SimpleMeterRegistry());
+    }
+
+    private void submit(ReviewScheduler scheduler, String owner, String repo, long cost, String name) {
+        scheduler.submit(owner, repo, cost, () -> {
+            started.add(name);
+            return CompletableFuture.completedFuture(name);
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package com.erik.git_bro.service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.erik.git_bro.config.LatencyProperties;
+import com.erik.git_bro.model.Review;
+import com.erik.git_bro.model.ReviewIteration;
+import com.erik.git_bro.util.LatencyHistograms;
+import com.erik.git_bro.util.ReviewTracer;
+
+import io.micrometer.observation.ObservationRegistry;
+
+public class ReviewWriteBufferTest {
+
+    private final ReviewIterationService reviewIterationService = mock(ReviewIterationService.class);
+    private ReviewWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new ReviewWriteBuffer(reviewIterationService, new ReviewTracer(ObservationRegistry.NOOP),
+                new LatencyHistograms(new LatencyProperties()));
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.stop();
+    }
+
+    @Test
+    void disabled_buffer_writes_synchronously() {
+        ReflectionTestUtils.setField(buffer, "enabled", false);
+        buffer.start();
+
+        CompletableFuture<Void> done = buffer.submit(iteration(), List.of(review("a")));
+
+        assertTrue(done.isDone());
+        verify(reviewIterationService).saveWithReviews(anyList(), anyList());
+    }
+
+    @Test
+    void writes_queued_during_a_flush_are_committed_together() throws Exception {
+        CountDownLatch firstFlushStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstFlush = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstFlushStarted.countDown();
+            releaseFirstFlush.await();
+            return null;
+        }).when(reviewIterationService).saveWithReviews(anyList(), anyList());
+        buffer.start();
+
+        CompletableFuture<Void> first = buffer.submit(iteration(), List.of(review("a")));
+        firstFlushStarted.await();
+        CompletableFuture<Void> second = buffer.submit(iteration(), List.of(review("b")));
+        CompletableFuture<Void> third = buffer.submit(iteration(), List.of(review("c")));
+        releaseFirstFlush.countDown();
+
+        CompletableFuture.allOf(first, second, third).get();
+        verify(reviewIterationService).saveWithReviews(argThat(iterations -> iterations.size() == 2),
+                argThat(reviews -> reviews.size() == 2));
+    }
+
+    @Test
+    void failed_batch_is_retried_one_write_at_a_time() throws Exception {
+        Review bad = review("bad");
+        bad.setId(UUID.randomUUID());
+        doThrow(new DataIntegrityViolationException("duplicate fingerprint"))
+                .when(reviewIterationService).saveWithReviews(anyList(), argThat(reviews -> reviews.contains(bad)));
+        CountDownLatch blockFirst = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            blockFirst.await();
+            return null;
+        }).when(reviewIterationService).saveWithReviews(anyList(),
+                argThat(reviews -> reviews.size() == 1 && "warmup".equals(reviews.get(0).getFeedback())));
+        buffer.start();
+
+        CompletableFuture<Void> warmup = buffer.submit(iteration(), List.of(review("warmup")));
+        Review good = review("good");
+        CompletableFuture<Void> goodWrite = buffer.submit(iteration(), List.of(good));
+        CompletableFuture<Void> badWrite = buffer.submit(iteration(), List.of(bad));
+        blockFirst.countDown();
+
+        warmup.get();
+        goodWrite.get();
+        assertThrows(Exception.class, badWrite::get);
+        assertNull(good.getId());
+        verify(reviewIterationService, atLeastOnce()).saveWithReviews(any(),
+                argThat(reviews -> reviews.size() == 1 && reviews.contains(good)));
+    }
+
+    private ReviewIteration iteration() {
+        return ReviewIteration.builder().id(UUID.randomUUID()).build();
+    }
+
+    private Review review(String feedback) {
+        return Review.builder().feedback(feedback).build();
+    }
+}
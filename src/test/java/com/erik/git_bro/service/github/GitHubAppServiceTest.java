@@ -1,6 +1,13 @@
 package com.erik.git_bro.service.github;
 
+import java.io.IOException;
+import java.util.List;
+
+import com.erik.git_bro.dto.GitDiff;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
@@ -8,8 +15,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -17,6 +27,19 @@ import static org.mockito.Mockito.when;
 @SpringBootTest
 public class GitHubAppServiceTest {
 
+    private static final MockWebServer github = new MockWebServer();
+
+    @DynamicPropertySource
+    static void githubApi(DynamicPropertyRegistry registry) throws IOException {
+        github.start();
+        registry.add("github.api-base-url", () -> github.url("").toString().replaceAll("/$", ""));
+    }
+
+    @AfterAll
+    static void stopGithub() throws IOException {
+        github.shutdown();
+    }
+
     @TestConfiguration
     static class TestConfig {
         @Bean
@@ -53,4 +76,20 @@ public class GitHubAppServiceTest {
         when(gitHubAppTokenService.getInstallationToken(any(Long.class))).thenReturn("test-token");
         // Mock http client
     }
+
+    @Test
+    public void changed_files_are_listed_across_pages() throws Exception {
+        String nextPage = github.url("/repositories/1/pulls/7/files?per_page=100&page=2").toString();
+        github.enqueue(new MockResponse()
+                .setBody("[{\"filename\":\"A.java\",\"patch\":\"@@ -1 +1 @@\"}]")
+                .addHeader("Link", "<" + nextPage + ">; rel=\"next\", <" + nextPage + ">; rel=\"last\""));
+        github.enqueue(new MockResponse()
+                .setBody("[{\"filename\":\"B.java\",\"patch\":\"@@ -1 +1 @@\"}]"));
+
+        List<GitDiff> files = gitHubAppService.getDiffsAsync("test-token", "owner", "repo", 7).get();
+
+        assertEquals(List.of("A.java", "B.java"), files.stream().map(GitDiff::getFilename).toList());
+        assertEquals("/repos/owner/repo/pulls/7/files?per_page=100", github.takeRequest().getPath());
+        assertEquals("/repositories/1/pulls/7/files?per_page=100&page=2", github.takeRequest().getPath());
+    }
 }
@@ -0,0 +1,107 @@
+package com.erik.git_bro.service.github;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.dto.PullRequestSnapshot;
+import com.erik.git_bro.util.ApiUrlProvider;
+import com.erik.git_bro.util.ReviewTracer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class GitHubGraphQlServiceTest {
+
+    private static final String FIRST_PAGE = """
+            {"data":{"repository":{"pullRequest":{
+              "headRefOid":"abc123",
+              "reviewThreads":{"pageInfo":{"hasNextPage":true,"endCursor":"t1"},
+                "nodes":[{"id":"T1","path":"src/A.java","line":4,"isResolved":false,"isOutdated":false,
+                  "comments":{"nodes":[{"body":"Null check missing"}]}}]}
+            }}}}
+            """;
+
+    private static final String SECOND_PAGE = """
+            {"data":{"repository":{"pullRequest":{
+              "headRefOid":"abc123",
+              "reviewThreads":{"pageInfo":{"hasNextPage":false,"endCursor":"t2"},
+                "nodes":[{"id":"T2","path":"src/B.java","line":null,"isResolved":true,"isOutdated":true,
+                  "comments":{"nodes":[{"body":"Rename this"}]}}]}
+            }}}}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockWebServer mockWebServer;
+    private GitHubGraphQlService gitHubGraphQlService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        ApiUrlProvider testApiUrlProvider = new ApiUrlProvider() {
+            @Override
+            public String getGraphQlUrl() {
+                return mockWebServer.url("/graphql").toString();
+            }
+        };
+        gitHubGraphQlService = new GitHubGraphQlService(testApiUrlProvider,
+                new ReviewTracer(ObservationRegistry.NOOP));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void fetches_sha_and_threads_across_pages() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody(FIRST_PAGE).addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse().setBody(SECOND_PAGE).addHeader("Content-Type", "application/json"));
+
+        PullRequestSnapshot snapshot = gitHubGraphQlService.fetchPullRequest("token", "owner", "repo", 7).get();
+
+        assertEquals("abc123", snapshot.headSha());
+        assertEquals(2, snapshot.reviewThreads().size());
+        assertEquals("Null check missing", snapshot.reviewThreads().get(0).body());
+        assertEquals(4, snapshot.reviewThreads().get(0).line());
+        assertNull(snapshot.reviewThreads().get(1).line());
+        assertTrue(snapshot.reviewThreads().get(1).resolved());
+
+        RecordedRequest first = mockWebServer.takeRequest();
+        assertEquals("Bearer token", first.getHeader("Authorization"));
+        JsonNode firstBody = objectMapper.readTree(first.getBody().readUtf8());
+        JsonNode firstVariables = firstBody.get("variables");
+        assertEquals(7, firstVariables.get("number").asInt());
+        assertTrue(firstVariables.get("threadsCursor").isNull());
+        assertFalse(firstBody.path("query").asText().contains("files"), "patches come from REST");
+
+        // Threads continue from their cursor
+        JsonNode secondVariables = objectMapper.readTree(mockWebServer.takeRequest().getBody().readUtf8())
+                .get("variables");
+        assertEquals("t1", secondVariables.get("threadsCursor").asText());
+    }
+
+    @Test
+    void graphql_errors_fail_the_future() {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"errors\":[{\"message\":\"Could not resolve to a PullRequest\"}]}")
+                .addHeader("Content-Type", "application/json"));
+
+        Exception e = assertThrows(Exception.class,
+                () -> gitHubGraphQlService.fetchPullRequest("token", "owner", "repo", 7).get());
+        assertTrue(e.getCause().getMessage().contains("Could not resolve to a PullRequest"));
+    }
+}
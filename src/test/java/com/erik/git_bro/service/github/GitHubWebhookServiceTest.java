@@ -0,0 +1,96 @@
+package com.erik.git_bro.service.github;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.erik.git_bro.config.AiProviderProperties;
+import com.erik.git_bro.dto.ReviewJobRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GitHubWebhookServiceTest {
+
+    private static final String SECRET = "test-secret";
+
+    private GitHubWebhookService gitHubWebhookService;
+
+    @BeforeEach
+    void setUp() {
+        AiProviderProperties properties = new AiProviderProperties();
+        properties.setAiProvider("chatgpt");
+        gitHubWebhookService = new GitHubWebhookService(properties);
+        ReflectionTestUtils.setField(gitHubWebhookService, "webhookSecret", SECRET);
+    }
+
+    @Test
+    void isValidSignature_accepts_matching_signature() throws Exception {
+        byte[] payload = "{\"action\":\"opened\"}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(gitHubWebhookService.isValidSignature(payload, sign(payload)));
+    }
+
+    @Test
+    void isValidSignature_rejects_tampered_payload_and_bad_headers() throws Exception {
+        byte[] payload = "{\"action\":\"opened\"}".getBytes(StandardCharsets.UTF_8);
+        String signature = sign(payload);
+        assertFalse(gitHubWebhookService.isValidSignature("{\"action\":\"closed\"}".getBytes(StandardCharsets.UTF_8),
+                signature));
+        assertFalse(gitHubWebhookService.isValidSignature(payload, null));
+        assertFalse(gitHubWebhookService.isValidSignature(payload, "sha256=not-hex"));
+    }
+
+    @Test
+    void isValidSignature_fails_closed_without_secret() throws Exception {
+        ReflectionTestUtils.setField(gitHubWebhookService, "webhookSecret", "");
+        byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+        assertFalse(gitHubWebhookService.isValidSignature(payload, sign(payload)));
+    }
+
+    @Test
+    void toReviewJob_maps_pull_request_payload() throws Exception {
+        String payload = """
+                {
+                  "action": "synchronize",
+                  "number": 11,
+                  "pull_request": {
+                    "html_url": "https://github.com/emikac123-hub/git-bro/pull/11",
+                    "head": { "sha": "abc123" },
+                    "user": { "login": "octocat" }
+                  },
+                  "repository": { "name": "git-bro", "owner": { "login": "emikac123-hub" } },
+                  "installation": { "id": 42 }
+                }
+                """;
+        ReviewJobRequest job = gitHubWebhookService
+                .toReviewJob("delivery-1", new ObjectMapper().readTree(payload))
+                .orElseThrow();
+
+        assertEquals("emikac123-hub", job.owner());
+        assertEquals("git-bro", job.repo());
+        assertEquals(11, job.pullNumber());
+        assertEquals("abc123", job.headSha());
+        assertEquals(42L, job.installationId());
+        assertEquals("chatgpt", job.modelName());
+    }
+
+    @Test
+    void toReviewJob_ignores_closed_action() throws Exception {
+        assertTrue(gitHubWebhookService
+                .toReviewJob("delivery-2", new ObjectMapper().readTree("{\"action\":\"closed\"}"))
+                .isEmpty());
+    }
+
+    private String sign(byte[] payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return "sha256=" + HexFormat.of().formatHex(mac.doFinal(payload));
+    }
+}
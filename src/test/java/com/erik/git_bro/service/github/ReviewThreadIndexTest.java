@@ -0,0 +1,67 @@
+package com.erik.git_bro.service.github;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.dto.ReviewThread;
+
+public class ReviewThreadIndexTest {
+
+    @Test
+    void matches_on_path_line_and_normalized_body() {
+        ReviewThreadIndex index = new ReviewThreadIndex();
+        index.load("Owner", "repo", 1, List.of(
+                new ReviewThread("T1", "src/A.java", 10, false, false, "Missing null check."),
+                new ReviewThread("T2", "src/B.java", null, false, true, "Outdated")));
+
+        assertTrue(index.contains("owner", "repo", 1, "./src/A.java", 10, "  missing NULL\ncheck. "));
+        assertFalse(index.contains("owner", "repo", 1, "src/A.java", 11, "Missing null check."));
+        assertFalse(index.contains("owner", "repo", 2, "src/A.java", 10, "Missing null check."));
+        assertFalse(index.contains("owner", "repo", 1, "src/B.java", 0, "Outdated"));
+    }
+
+    @Test
+    void recorded_comments_stay_warm_until_ttl_expires() {
+        MutableClock clock = new MutableClock();
+        ReviewThreadIndex index = new ReviewThreadIndex(clock);
+        index.record("owner", "repo", 1, "A.java", 3, "Rename this");
+
+        clock.advance(Duration.ofHours(23));
+        index.load("owner", "repo", 2, List.of());
+        assertTrue(index.contains("owner", "repo", 1, "A.java", 3, "Rename this"));
+
+        clock.advance(Duration.ofHours(2));
+        index.load("owner", "repo", 2, List.of());
+        assertFalse(index.contains("owner", "repo", 1, "A.java", 3, "Rename this"));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
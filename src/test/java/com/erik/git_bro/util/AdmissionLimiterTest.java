@@ -0,0 +1,98 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.config.AdmissionProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdmissionLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void queues_beyond_the_limit_and_rejects_when_the_queue_is_full() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setLimit(1);
+        properties.setQueueSize(1);
+        AdmissionLimiter limiter = new AdmissionLimiter(properties, meterRegistry);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        CompletableFuture<String> running = limiter.submit(() -> first);
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("second"));
+        CompletableFuture<String> overflow = limiter.submit(() -> CompletableFuture.completedFuture("third"));
+
+        assertEquals(1, limiter.inFlight());
+        assertEquals(1, limiter.queued());
+        ExecutionException failure = assertThrows(ExecutionException.class, overflow::get);
+        AdmissionLimiter.Rejected rejected = assertInstanceOf(AdmissionLimiter.Rejected.class, failure.getCause());
+        assertTrue(rejected.retryAfter().compareTo(Duration.ofSeconds(1)) >= 0);
+        assertEquals(1.0, meterRegistry.get("review.admission.rejected").tag("reason", "queue-full").counter()
+                .count());
+
+        first.complete("first");
+
+        assertEquals("first", running.get());
+        assertEquals("second", queued.get(1, TimeUnit.SECONDS));
+        assertEquals(0, limiter.inFlight());
+        assertEquals(0.0, meterRegistry.get("review.admission.queued").gauge().value());
+    }
+
+    @Test
+    void waiting_request_is_rejected_after_max_wait() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setLimit(1);
+        properties.setMaxWait(Duration.ofMillis(50));
+        AdmissionLimiter limiter = new AdmissionLimiter(properties, meterRegistry);
+        CompletableFuture<String> blocking = new CompletableFuture<>();
+        limiter.submit(() -> blocking);
+
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("late"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> queued.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(AdmissionLimiter.Rejected.class, failure.getCause());
+        assertEquals(0, limiter.queued());
+
+        blocking.complete("done");
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void adaptive_limit_backs_off_on_overload_and_grows_back() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMode(AdmissionProperties.Mode.ADAPTIVE);
+        properties.setLimit(10);
+        properties.setMinLimit(2);
+        properties.setBackoffRatio(0.5);
+        AdmissionLimiter limiter = new AdmissionLimiter(properties, meterRegistry);
+
+        CompletableFuture<String> timedOut = limiter.submit(
+                () -> CompletableFuture.failedFuture(new TimeoutException("model")));
+        assertTrue(timedOut.isCompletedExceptionally());
+        assertEquals(5, limiter.limit());
+
+        // Growth needs the limit to be in use: hold a few slots while others finish
+        CompletableFuture<String> held = new CompletableFuture<>();
+        for (int i = 0; i < 3; i++) {
+            limiter.submit(() -> held);
+        }
+        for (int i = 0; i < 10; i++) {
+            limiter.submit(() -> CompletableFuture.completedFuture("ok")).get();
+        }
+        assertTrue(limiter.limit() > 5);
+
+        held.complete("ok");
+        assertFalse(limiter.limit() > properties.getMaxLimit());
+    }
+}
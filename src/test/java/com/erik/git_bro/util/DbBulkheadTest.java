@@ -0,0 +1,60 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class DbBulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void sized_from_the_pool_minus_reserved_connections() throws Exception {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setMaximumPoolSize(8);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.isWrapperFor(HikariDataSource.class)).thenReturn(true);
+        when(dataSource.unwrap(HikariDataSource.class)).thenReturn(pool);
+
+        DbBulkhead bulkhead = new DbBulkhead(dataSource, meterRegistry, 0, 2, Duration.ofSeconds(1));
+
+        assertEquals(6, bulkhead.size());
+    }
+
+    @Test
+    void rejects_when_no_permit_frees_up_in_time() throws Exception {
+        DbBulkhead bulkhead = new DbBulkhead(mock(DataSource.class), meterRegistry, 1, 0, Duration.ofMillis(50));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> bulkhead.call(() -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holding.await();
+
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.call(() -> "late"));
+        assertEquals(1.0, meterRegistry.get("db.bulkhead.rejected").counter().count());
+
+        release.countDown();
+        holder.join();
+        assertEquals("free", bulkhead.call(() -> "free"));
+        assertEquals(1.0, meterRegistry.get("db.bulkhead.available").gauge().value());
+    }
+}
@@ -0,0 +1,75 @@
+package com.erik.git_bro.util;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.config.LatencyProperties;
+import com.erik.git_bro.dto.LatencyPercentiles;
+import com.erik.git_bro.dto.StageLatency;
+
+public class LatencyHistogramsTest {
+
+    private final LatencyProperties properties = new LatencyProperties();
+    private final LatencyHistograms histograms = new LatencyHistograms(properties);
+
+    @Test
+    void reports_percentiles_of_the_rotated_intervals() {
+        for (int millis = 1; millis <= 1000; millis++) {
+            histograms.record("gemini", LatencyHistograms.MODEL, Duration.ofMillis(millis));
+        }
+        assertTrue(histograms.percentiles("gemini", LatencyHistograms.MODEL, Duration.ofMinutes(1)).isEmpty());
+
+        histograms.rotate();
+
+        LatencyPercentiles percentiles = histograms
+                .percentiles("gemini", LatencyHistograms.MODEL, Duration.ofMinutes(1)).orElseThrow();
+        assertEquals(1000, percentiles.count());
+        assertEquals(500, percentiles.p50(), 1);
+        assertEquals(990, percentiles.p99(), 1);
+        assertEquals(1000, percentiles.max(), 1);
+        assertEquals(Duration.ofMillis(900).toMillis(), histograms
+                .valueAtPercentile("gemini", LatencyHistograms.MODEL, Duration.ofMinutes(1), 90)
+                .orElseThrow().toMillis(), 1);
+        assertTrue(histograms.percentiles("chatgpt", LatencyHistograms.MODEL, Duration.ofMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void older_intervals_fall_out_of_the_shorter_windows() {
+        histograms.record("gemini", LatencyHistograms.MODEL, Duration.ofSeconds(30));
+        histograms.rotate();
+        // One minute is six intervals of ten seconds
+        for (int i = 0; i < 6; i++) {
+            histograms.record("gemini", LatencyHistograms.MODEL, Duration.ofMillis(100));
+            histograms.rotate();
+        }
+
+        LatencyPercentiles minute = histograms
+                .percentiles("gemini", LatencyHistograms.MODEL, Duration.ofMinutes(1)).orElseThrow();
+        LatencyPercentiles hour = histograms
+                .percentiles("gemini", LatencyHistograms.MODEL, Duration.ofHours(1)).orElseThrow();
+        assertEquals(6, minute.count());
+        assertEquals(100, minute.max(), 1);
+        assertEquals(7, hour.count());
+        assertEquals(30_000, hour.max(), 30);
+    }
+
+    @Test
+    void snapshot_filters_by_provider_and_stage() {
+        histograms.record("gemini", LatencyHistograms.MODEL, Duration.ofMillis(200));
+        histograms.record("chatgpt", LatencyHistograms.MODEL, Duration.ofMillis(300));
+        histograms.record(LatencyHistograms.GITHUB, LatencyHistograms.POST, Duration.ofMillis(50));
+        histograms.rotate();
+
+        List<StageLatency> models = histograms.snapshot(null, LatencyHistograms.MODEL);
+        assertEquals(List.of("chatgpt", "gemini"), models.stream().map(StageLatency::provider).toList());
+        assertEquals(List.of("1m", "5m", "1h"), List.copyOf(models.get(0).windows().keySet()));
+
+        List<StageLatency> gemini = histograms.snapshot("Gemini", null);
+        assertEquals(1, gemini.size());
+        assertEquals(200, gemini.get(0).windows().get("5m").p50(), 1);
+    }
+}
@@ -0,0 +1,86 @@
+package com.erik.git_bro.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.erik.git_bro.config.FlightRecorderProperties;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ReviewFlightRecorderTest {
+
+    private final FlightRecorderProperties properties = new FlightRecorderProperties();
+    private final ReviewFlightRecorder recorder = new ReviewFlightRecorder(properties);
+
+    @Test
+    void on_demand_recording_contains_the_review_events() throws Exception {
+        CompletableFuture<byte[]> recording = CompletableFuture.supplyAsync(() -> {
+            try {
+                return recorder.record(Duration.ofSeconds(1));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitOnDemandRecording();
+        ReviewEvents.ModelCall modelCall = new ReviewEvents.ModelCall();
+        modelCall.begin();
+        modelCall.model = "gemini";
+        modelCall.status = 200;
+        modelCall.succeeded = true;
+        modelCall.pullRequest(ReviewTracer.pullRequestKey("Owner", "repo", 7));
+        modelCall.commit();
+
+        Path file = Files.createTempFile("review-events", ".jfr");
+        try {
+            Files.write(file, recording.get(10, TimeUnit.SECONDS));
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals("com.erik.git_bro.ModelCall"))
+                    .toList();
+            assertEquals(1, events.size());
+            assertEquals("owner/repo", events.get(0).getString("repository"));
+            assertEquals("owner/repo#7", events.get(0).getString("pullRequest"));
+            assertEquals("gemini", events.get(0).getString("model"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void only_one_on_demand_recording_runs_at_a_time() throws Exception {
+        CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return recorder.record(Duration.ofSeconds(1));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitOnDemandRecording();
+
+        assertThrows(ReviewFlightRecorder.RecordingInProgress.class, () -> recorder.record(Duration.ofSeconds(1)));
+        assertTrue(first.get(10, TimeUnit.SECONDS).length > 0);
+    }
+
+    private static void awaitOnDemandRecording() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .noneMatch(recording -> recording.getName().equals(ReviewFlightRecorder.RECORDING_NAME + "-on-demand")
+                        && recording.getState() == RecordingState.RUNNING)) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("The on-demand recording did not start");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.erik.git_bro.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import com.erik.git_bro.config.TracingProperties;
+import com.erik.git_bro.dto.TraceSpan;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class SpanStoreTest {
+
+    private final TracingProperties properties = new TracingProperties();
+    private final SpanStore spanStore = new SpanStore(properties);
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final ReviewTracer reviewTracer = new ReviewTracer(observationRegistry);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @BeforeEach
+    void setUp() {
+        observationRegistry.observationConfig().observationHandler(spanStore);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void work_handed_to_another_thread_stays_in_the_trace() throws Exception {
+        Observation review = reviewTracer.review("review.job", "Owner", "repo", 7).start();
+        String[] mdc = new String[2];
+        try (Observation.Scope scope = review.openScope()) {
+            CompletableFuture.runAsync(() -> {
+                mdc[0] = MDC.get(SpanStore.TRACE_ID);
+                reviewTracer.observation("review.file").observe(() -> mdc[1] = MDC.get(SpanStore.SPAN_ID));
+            }, reviewTracer.wrapExecutor(executor)).get(5, TimeUnit.SECONDS);
+        } finally {
+            review.stop();
+        }
+
+        List<TraceSpan> spans = spanStore.trace(spanStore.forPullRequest("owner/repo#7").get(0).traceId());
+        assertEquals(2, spans.size());
+        TraceSpan job = spans.stream().filter(span -> span.name().equals("review.job")).findFirst().orElseThrow();
+        TraceSpan file = spans.stream().filter(span -> span.name().equals("review.file")).findFirst().orElseThrow();
+        assertNull(job.parentId());
+        assertEquals(job.spanId(), file.parentId());
+        assertEquals(job.traceId(), mdc[0]);
+        assertEquals(file.spanId(), mdc[1]);
+        assertNull(MDC.get(SpanStore.TRACE_ID));
+    }
+
+    @Test
+    void asynchronous_stage_ends_when_its_future_does() throws Exception {
+        CompletableFuture<String> modelCall = new CompletableFuture<>();
+
+        CompletableFuture<String> observed = reviewTracer.observeAsync(reviewTracer.observation("review.model"),
+                () -> modelCall);
+        assertTrue(spanStore.recent(10).isEmpty());
+        modelCall.completeExceptionally(new IllegalStateException("model timed out"));
+
+        assertTrue(observed.isCompletedExceptionally());
+        List<TraceSpan> spans = spanStore.trace(spanStore.recent(10).get(0).traceId());
+        assertEquals("review.model", spans.get(0).name());
+        assertNotNull(spans.get(0).error());
+        assertTrue(spans.get(0).error().contains("model timed out"));
+    }
+
+    @Test
+    void oldest_traces_are_dropped_first() {
+        properties.setMaxTraces(2);
+
+        for (int i = 0; i < 3; i++) {
+            reviewTracer.observation("review.job").observe(() -> {
+            });
+        }
+
+        assertEquals(2, spanStore.recent(10).size());
+    }
+
+    @Test
+    void only_traces_with_a_review_stage_are_kept() {
+        reviewTracer.observation("tasks.scheduled.execution").observe(() -> {
+        });
+        assertTrue(spanStore.recent(10).isEmpty());
+
+        reviewTracer.observation("http.server.requests").observe(() -> reviewTracer
+                .review("review.pull-request", "owner", "repo", 7).observe(() -> {
+                }));
+
+        List<TraceSpan> spans = spanStore.trace(spanStore.recent(10).get(0).traceId());
+        // The request that started the review is kept as its root
+        assertEquals(List.of("http.server.requests", "review.pull-request"),
+                spans.stream().map(TraceSpan::name).sorted().toList());
+        assertEquals(1, spanStore.recent(10).size());
+    }
+
+    @Test
+    void okhttp_callback_runs_in_the_trace_of_its_request() throws Exception {
+        Observation review = reviewTracer.observation("review.model").start();
+        Call call;
+        try (Observation.Scope scope = review.openScope()) {
+            call = new OkHttpClient().newCall(reviewTracer.tag(new Request.Builder().url("http://localhost/")).build());
+        }
+        String[] traceId = new String[1];
+        Callback callback = reviewTracer.wrap(new Callback() {
+
+            @Override
+            public void onFailure(Call failed, IOException e) {
+                traceId[0] = MDC.get(SpanStore.TRACE_ID);
+            }
+
+            @Override
+            public void onResponse(Call answered, Response response) {
+            }
+        });
+
+        executor.submit(() -> callback.onFailure(call, new IOException("refused"))).get(5, TimeUnit.SECONDS);
+        review.stop();
+
+        assertEquals(SpanStore.ids(review).traceId(), traceId[0]);
+    }
+}